@@ -0,0 +1,82 @@
+package com.alten.producttrial.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Compares a JMH JSON result file with the committed baseline and fails when a benchmark got slower
+ * than the baseline by more than the given threshold.
+ * <p>
+ * Usage: {@code BenchmarkBaselineComparator <baseline.json> <result.json> [threshold-percent]}
+ * <p>
+ * Scores are only comparable between runs on the same machine: refresh the baseline by copying
+ * a result file over it when the benchmarks or the reference machine change.
+ */
+public final class BenchmarkBaselineComparator {
+
+    private BenchmarkBaselineComparator() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: BenchmarkBaselineComparator <baseline.json> <result.json> [threshold-percent]");
+            System.exit(2);
+        }
+        double threshold = args.length > 2 ? Double.parseDouble(args[2]) : 10.0;
+        Map<String, JsonNode> baseline = readScores(new File(args[0]));
+        Map<String, JsonNode> results = readScores(new File(args[1]));
+
+        int regressions = 0;
+        System.out.printf("%-70s %14s %14s %9s%n", "Benchmark", "Baseline", "Current", "Change");
+        for (Map.Entry<String, JsonNode> entry : results.entrySet()) {
+            JsonNode current = entry.getValue();
+            JsonNode reference = baseline.get(entry.getKey());
+            if (reference == null) {
+                System.out.printf("%-70s %14s %14.3f %9s%n", entry.getKey(), "-", current.get("score").asDouble(), "new");
+                continue;
+            }
+            double change = changePercent(reference, current);
+            boolean regressed = change > threshold;
+            if (regressed) {
+                regressions++;
+            }
+            System.out.printf("%-70s %14.3f %14.3f %+8.1f%%%s%n", entry.getKey(), reference.get("score").asDouble(),
+                    current.get("score").asDouble(), change, regressed ? "  REGRESSION" : "");
+        }
+
+        if (regressions > 0) {
+            System.err.printf("%d benchmark(s) regressed by more than %.1f%%%n", regressions, threshold);
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Returns how much worse the current score is than the reference, in percent: for time-based modes a
+     * higher score is worse, for throughput a lower one is.
+     */
+    private static double changePercent(JsonNode reference, JsonNode current) {
+        double referenceScore = reference.get("score").asDouble();
+        double currentScore = current.get("score").asDouble();
+        double change = (currentScore - referenceScore) / referenceScore * 100;
+        return current.get("scoreUnit").asText().startsWith("ops/") ? -change : change;
+    }
+
+    private static Map<String, JsonNode> readScores(File file) throws IOException {
+        Map<String, JsonNode> scores = new LinkedHashMap<>();
+        for (JsonNode result : new ObjectMapper().readTree(file)) {
+            String benchmark = result.get("benchmark").asText();
+            StringBuilder key = new StringBuilder(benchmark.substring(benchmark.lastIndexOf('.', benchmark.lastIndexOf('.') - 1) + 1));
+            JsonNode params = result.get("params");
+            if (params != null) {
+                params.fields().forEachRemaining(param -> key.append(' ').append(param.getKey()).append('=').append(param.getValue().asText()));
+            }
+            scores.put(key.toString(), result.get("primaryMetric"));
+        }
+        return scores;
+    }
+}
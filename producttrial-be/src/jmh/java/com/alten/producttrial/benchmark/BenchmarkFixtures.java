@@ -0,0 +1,67 @@
+package com.alten.producttrial.benchmark;
+
+import com.alten.producttrial.dto.ProductDto;
+import com.alten.producttrial.entity.Product;
+import com.alten.producttrial.enums.InventoryStatus;
+import com.alten.producttrial.mapper.ProductMapper;
+import com.alten.producttrial.mapper.ProductMapperImpl;
+
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Deterministic data shared by the benchmarks, so that every run measures the same inputs.
+ */
+final class BenchmarkFixtures {
+
+    static final long SEED = 42L;
+
+    static final ZonedDateTime REFERENCE_DATE = ZonedDateTime.of(2024, 1, 1, 0, 0, 0, 0, ZoneOffset.UTC);
+
+    static final String JWT_SECRET = "benchmark-secret-benchmark-secret-benchmark-secret-benchmark-secret";
+
+    private static final String[] CATEGORIES = {"Accessories", "Clothing", "Electronics", "Fitness"};
+
+    private BenchmarkFixtures() {
+    }
+
+    static List<Product> products(int count) {
+        return products(0, count);
+    }
+
+    /**
+     * Generates the products {@code offset + 1} to {@code offset + count}, so that a large catalog can be
+     * produced one batch at a time.
+     */
+    static List<Product> products(int offset, int count) {
+        Random random = new Random(SEED + offset);
+        InventoryStatus[] statuses = InventoryStatus.values();
+        List<Product> products = new ArrayList<>(count);
+        for (int i = offset + 1; i <= offset + count; i++) {
+            products.add(Product.builder()
+                    .id((long) i)
+                    .code("P" + i)
+                    .name("Product " + i)
+                    .description("Description of product " + i)
+                    .image("product-" + i + ".jpg")
+                    .category(CATEGORIES[random.nextInt(CATEGORIES.length)])
+                    .price(Math.round(random.nextDouble() * 100_000) / 100.0)
+                    .quantity(random.nextInt(500))
+                    .internalReference("REF-" + i)
+                    .shellId((long) random.nextInt(10))
+                    .inventoryStatus(statuses[random.nextInt(statuses.length)])
+                    .rating(random.nextInt(50) / 10.0)
+                    .createdAt(REFERENCE_DATE.plusMinutes(i))
+                    .build());
+        }
+        return products;
+    }
+
+    static List<ProductDto> productDtos(int count) {
+        ProductMapper productMapper = new ProductMapperImpl();
+        return products(count).stream().map(productMapper::toDto).toList();
+    }
+}
@@ -0,0 +1,90 @@
+package com.alten.producttrial.benchmark;
+
+import com.alten.producttrial.ProducttrialApplication;
+import com.alten.producttrial.config.UserPrincipal;
+import com.alten.producttrial.dto.CartItemDto;
+import com.alten.producttrial.entity.Product;
+import com.alten.producttrial.entity.User;
+import com.alten.producttrial.repository.ProductRepository;
+import com.alten.producttrial.repository.UserRepository;
+import com.alten.producttrial.service.CartService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cart operations through the full service and persistence stack, against the embedded H2 database.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CartServiceBenchmark {
+
+    private static final int CART_LINES = 20;
+
+    /**
+     * Stock of the products, large enough for every call of {@code addToCart} in a run to reserve one more unit.
+     */
+    private static final int STOCK = 1_000_000_000;
+
+    private ConfigurableApplicationContext context;
+
+    private CartService cartService;
+
+    private Long productId;
+
+    @Setup
+    public void setUp() {
+        context = SpringApplication.run(ProducttrialApplication.class,
+                "--server.port=0",
+                "--spring.datasource.url=jdbc:h2:mem:benchmark;DB_CLOSE_DELAY=-1",
+                "--spring.jpa.properties.hibernate.generate_statistics=false",
+                "--logging.level.root=WARN");
+        cartService = context.getBean(CartService.class);
+
+        User user = context.getBean(UserRepository.class).save(User.builder()
+                .username("benchmark")
+                .firstname("Benchmark")
+                .email("benchmark@example.com")
+                .password("password")
+                .build());
+        List<Product> products = context.getBean(ProductRepository.class).saveAll(BenchmarkFixtures.products(CART_LINES).stream()
+                .peek(product -> {
+                    product.setId(null);
+                    product.setQuantity(STOCK);
+                })
+                .toList());
+
+        // Benchmark threads are not the setup thread, so the authentication has to be visible to all of them.
+        SecurityContextHolder.setStrategyName(SecurityContextHolder.MODE_GLOBAL);
+        UserPrincipal principal = new UserPrincipal(user.getId(), user.getEmail(), List.of());
+        SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken(principal, null, List.of()));
+
+        products.forEach(product -> cartService.addToCart(product.getId()));
+        productId = products.getFirst().getId();
+    }
+
+    @TearDown
+    public void tearDown() {
+        SecurityContextHolder.clearContext();
+        context.close();
+    }
+
+    @Benchmark
+    public CartItemDto addToCart() {
+        return cartService.addToCart(productId);
+    }
+
+    @Benchmark
+    public List<CartItemDto> getCartItems() {
+        return cartService.getCartItems();
+    }
+}
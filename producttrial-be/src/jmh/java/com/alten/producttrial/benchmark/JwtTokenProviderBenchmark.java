@@ -0,0 +1,139 @@
+package com.alten.producttrial.benchmark;
+
+import com.alten.producttrial.config.JwtKeys;
+import com.alten.producttrial.config.JwtTokenProvider;
+import com.alten.producttrial.config.UserPrincipal;
+import com.github.benmanes.caffeine.cache.Cache;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwsHeader;
+import io.jsonwebtoken.JwtParser;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.SigningKeyResolverAdapter;
+import io.jsonwebtoken.security.Keys;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.security.Key;
+import java.security.KeyPair;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token generation and verification through {@link JwtTokenProvider}, with and without the verified claims cache,
+ * and the cost of the signature alone. {@code validateUncachedToken} includes emptying the cache before each
+ * verification; to compare ES256 with the former HS512 signature, {@code sign} and {@code verify} run both
+ * algorithms through the same builder and the same key resolving parser, with the claims of the provider.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JwtTokenProviderBenchmark {
+
+    private static final UserPrincipal USER = new UserPrincipal(1L, "benchmark@example.com", List.of("ROLE_ADMIN"), 0);
+
+    private static final String KEY_ID = "benchmark";
+
+    private JwtTokenProvider jwtTokenProvider;
+
+    private Cache<?, ?> verifiedClaims;
+
+    private String token;
+
+    @Setup
+    public void setUp() {
+        JwtKeys jwtKeys = new JwtKeys(TimeUnit.DAYS.toMillis(1), Duration.ofDays(1), null);
+        jwtKeys.init();
+        jwtTokenProvider = new JwtTokenProvider(jwtKeys, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(jwtTokenProvider, "expiration", TimeUnit.DAYS.toMillis(1));
+        ReflectionTestUtils.setField(jwtTokenProvider, "claimsCacheMaxSize", 10_000L);
+        jwtTokenProvider.init();
+        verifiedClaims = (Cache<?, ?>) ReflectionTestUtils.getField(jwtTokenProvider, "verifiedClaims");
+        token = jwtTokenProvider.generateToken(USER);
+    }
+
+    @Benchmark
+    public String generateToken() {
+        return jwtTokenProvider.generateToken(USER);
+    }
+
+    @Benchmark
+    public boolean validateCachedToken() {
+        return jwtTokenProvider.validateToken(token);
+    }
+
+    @Benchmark
+    public boolean validateUncachedToken() {
+        verifiedClaims.invalidateAll();
+        return jwtTokenProvider.validateToken(token);
+    }
+
+    @Benchmark
+    public String sign(Signature signature) {
+        return signature.sign();
+    }
+
+    @Benchmark
+    public Claims verify(Signature signature) {
+        return signature.parser.parseClaimsJws(signature.token).getBody();
+    }
+
+    @State(Scope.Benchmark)
+    public static class Signature {
+
+        @Param({"ES256", "HS512"})
+        private String algorithm;
+
+        private SignatureAlgorithm signatureAlgorithm;
+
+        private Key signingKey;
+
+        private JwtParser parser;
+
+        private String token;
+
+        @Setup
+        public void setUp() {
+            signatureAlgorithm = SignatureAlgorithm.forName(algorithm);
+            Key verificationKey;
+            if (signatureAlgorithm.isEllipticCurve()) {
+                KeyPair keyPair = Keys.keyPairFor(signatureAlgorithm);
+                signingKey = keyPair.getPrivate();
+                verificationKey = keyPair.getPublic();
+            } else {
+                signingKey = Keys.hmacShaKeyFor(Base64.getEncoder().encode(BenchmarkFixtures.JWT_SECRET.getBytes(StandardCharsets.UTF_8)));
+                verificationKey = signingKey;
+            }
+            parser = Jwts.parserBuilder()
+                    .setSigningKeyResolver(new SigningKeyResolverAdapter() {
+                        @Override
+                        public Key resolveSigningKey(JwsHeader header, Claims claims) {
+                            return verificationKey;
+                        }
+                    })
+                    .build();
+            token = sign();
+        }
+
+        private String sign() {
+            return Jwts.builder()
+                    .setHeaderParam(JwsHeader.KEY_ID, KEY_ID)
+                    .setSubject(USER.getEmail())
+                    .claim(JwtTokenProvider.USER_ID_CLAIM, USER.getId())
+                    .claim(JwtTokenProvider.ROLES_CLAIM, USER.getRoles())
+                    .claim(JwtTokenProvider.TOKEN_VERSION_CLAIM, USER.getTokenVersion())
+                    .setIssuedAt(new Date())
+                    .setExpiration(new Date(System.currentTimeMillis() + TimeUnit.DAYS.toMillis(1)))
+                    .signWith(signingKey, signatureAlgorithm)
+                    .compact();
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.alten.producttrial.benchmark;
+
+import com.alten.producttrial.dto.ProductDto;
+import com.alten.producttrial.entity.Product;
+import com.alten.producttrial.mapper.ProductMapper;
+import com.alten.producttrial.mapper.ProductMapperImpl;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Entity to DTO mapping of the whole catalog, as done when listing products.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ProductMapperBenchmark {
+
+    @Param({"100", "10000"})
+    private int size;
+
+    private final ProductMapper productMapper = new ProductMapperImpl();
+
+    private List<Product> products;
+
+    @Setup
+    public void setUp() {
+        products = BenchmarkFixtures.products(size);
+    }
+
+    @Benchmark
+    public List<ProductDto> toDto() {
+        return products.stream().map(productMapper::toDto).toList();
+    }
+}
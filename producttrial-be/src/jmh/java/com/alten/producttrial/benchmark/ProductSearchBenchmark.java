@@ -0,0 +1,95 @@
+package com.alten.producttrial.benchmark;
+
+import com.alten.producttrial.config.ProductSearchIndex;
+import com.alten.producttrial.dto.ProductFilter;
+import com.alten.producttrial.dto.ProductSearchResultDto;
+import com.alten.producttrial.entity.Product;
+import com.alten.producttrial.enums.InventoryStatus;
+import com.alten.producttrial.mapper.ProductMapperImpl;
+import com.alten.producttrial.repository.ProductRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Latency of the product search on a large catalog, for a full text query with facets, a typo and a
+ * filtered query. Pass {@code -Djmh.args="ProductSearchBenchmark -p size=1000000"} to measure a catalog
+ * of a million products, which needs about 2 GB of heap.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@State(Scope.Benchmark)
+public class ProductSearchBenchmark {
+
+    @Param({"100000"})
+    private int size;
+
+    private ProductSearchIndex productSearchIndex;
+
+    private ProductFilter electronicsInStock;
+
+    @Setup
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json()
+                .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .build();
+        // The catalog is generated one batch at a time, as the index reads it, so that it never has to fit in memory.
+        Iterator<List<Product>> batches = new Iterator<>() {
+            private int generated;
+
+            @Override
+            public boolean hasNext() {
+                return true;
+            }
+
+            @Override
+            public List<Product> next() {
+                int count = Math.min(1000, size - generated);
+                List<Product> batch = BenchmarkFixtures.products(generated, count);
+                generated += count;
+                return batch;
+            }
+        };
+        ProductRepository productRepository = mock(ProductRepository.class);
+        when(productRepository.findBy(any(Specification.class), any())).thenAnswer(invocation -> batches.next());
+
+        productSearchIndex = new ProductSearchIndex(productRepository, new ProductMapperImpl(), objectMapper);
+        productSearchIndex.rebuild();
+        electronicsInStock = new ProductFilter("Electronics", InventoryStatus.INSTOCK, 100.0, 500.0);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        productSearchIndex.close();
+    }
+
+    @Benchmark
+    public ProductSearchResultDto searchText() {
+        return productSearchIndex.search("product 4217", null, 0, 20);
+    }
+
+    @Benchmark
+    public ProductSearchResultDto searchWithTypo() {
+        return productSearchIndex.search("decsription", null, 0, 20);
+    }
+
+    @Benchmark
+    public ProductSearchResultDto searchFiltered() {
+        return productSearchIndex.search("product", electronicsInStock, 0, 20);
+    }
+}
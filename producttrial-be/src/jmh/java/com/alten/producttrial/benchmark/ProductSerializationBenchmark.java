@@ -0,0 +1,69 @@
+package com.alten.producttrial.benchmark;
+
+import com.alten.producttrial.config.ProductCatalogSnapshotCache;
+import com.alten.producttrial.dto.ProductCatalogSnapshot;
+import com.alten.producttrial.dto.ProductDto;
+import com.alten.producttrial.entity.Product;
+import com.alten.producttrial.mapper.ProductMapperImpl;
+import com.alten.producttrial.repository.ProductRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.ArgumentMatchers.anyIterable;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Serialization of the product list: Jackson over the whole list, as {@code GET /api/products} used to do,
+ * against rebuilding the pre-serialized catalog snapshot after a single product changed.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ProductSerializationBenchmark {
+
+    @Param({"100", "10000"})
+    private int size;
+
+    private ObjectMapper objectMapper;
+
+    private List<ProductDto> productDtos;
+
+    private ProductCatalogSnapshotCache productCatalogSnapshotCache;
+
+    @Setup
+    public void setUp() {
+        // Same settings as the ObjectMapper configured by Spring Boot.
+        objectMapper = Jackson2ObjectMapperBuilder.json()
+                .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .build();
+        productDtos = BenchmarkFixtures.productDtos(size);
+
+        List<Product> products = BenchmarkFixtures.products(size);
+        ProductRepository productRepository = mock(ProductRepository.class);
+        when(productRepository.findAll()).thenReturn(products);
+        when(productRepository.findAllById(anyIterable())).thenReturn(List.of(products.getFirst()));
+        productCatalogSnapshotCache = new ProductCatalogSnapshotCache(productRepository, new ProductMapperImpl(), objectMapper);
+        productCatalogSnapshotCache.getSnapshot();
+    }
+
+    @Benchmark
+    public byte[] serializeProductList() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(productDtos);
+    }
+
+    @Benchmark
+    public ProductCatalogSnapshot rebuildSnapshotAfterOneChange() {
+        productCatalogSnapshotCache.markChanged(1L);
+        return productCatalogSnapshotCache.getSnapshot();
+    }
+}
@@ -0,0 +1,61 @@
+package com.alten.producttrial.config;
+
+import com.alten.producttrial.dto.CartSummaryDto;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.function.Function;
+
+/**
+ * Bounded cache of {@link CartSummaryDto} keyed by user id. A summary must be invalidated whenever the cart of
+ * its user changes, and all of them whenever a product changes, since they hold product names and prices.
+ * Invalidations made in a transaction are applied once it commits, so that a summary computed meanwhile from
+ * the previous content cannot outlive the change.
+ */
+@Component
+public class CartSummaryCache {
+
+    private final Cache<Long, CartSummaryDto> cache;
+
+    public CartSummaryCache(@Value("${cart.summary-cache.max-size:10000}") long maxSize,
+                            @Value("${cart.summary-cache.ttl:10m}") Duration ttl) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .build();
+    }
+
+    /**
+     * Returns the cached summary of the user, computing it with {@code loader} if needed. An invalidation
+     * issued while the summary is being computed waits for it and then discards it.
+     */
+    public CartSummaryDto get(Long userId, Function<Long, CartSummaryDto> loader) {
+        return cache.get(userId, loader);
+    }
+
+    public void invalidate(Long userId) {
+        afterCommit(() -> cache.invalidate(userId));
+    }
+
+    public void invalidateAll() {
+        afterCommit(cache::invalidateAll);
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+}
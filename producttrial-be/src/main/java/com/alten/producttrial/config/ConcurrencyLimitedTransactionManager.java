@@ -0,0 +1,111 @@
+package com.alten.producttrial.config;
+
+import com.alten.producttrial.exception.ServerBusyException;
+import com.zaxxer.hikari.HikariDataSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.transaction.TransactionManagerCustomizers;
+import org.springframework.orm.jpa.JpaTransactionManager;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.TransactionDefinition;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bounds the number of database transactions running at the same time, by default to the size of the
+ * connection pool. With virtual threads the server accepts far more concurrent requests than there are
+ * connections; without this limit the excess would queue inside the pool and fail once the pool's connection
+ * timeout expires. Here a transaction waits for a permit before it takes a connection instead, and fails with
+ * a {@link ServerBusyException}, answered with a 503, if none becomes available within the acquire timeout.
+ * <p>
+ * The permit is held from the start of a transaction to its end only, like the connection: requests that do
+ * not use the database, and the writing of response bodies once the transaction is over, are not limited.
+ * Open session in view is off, so that the connection is released at the end of the transaction too.
+ * Joined transactions share the permit of the transaction they join. A query run outside any transaction would
+ * take its connection beside the permits, so the repositories declaring their own queries run them in a
+ * read-only transaction by default, as the inherited repository methods do. It replaces the transaction manager that
+ * Spring Boot would create, under the same name, which the repositories look up.
+ */
+@Component("transactionManager")
+public class ConcurrencyLimitedTransactionManager extends JpaTransactionManager {
+    private static final Logger log = LoggerFactory.getLogger(ConcurrencyLimitedTransactionManager.class);
+    private static final int DEFAULT_POOL_SIZE = 10;
+
+    private final boolean enabled;
+    private final int maxConcurrentTransactions;
+    private final Duration acquireTimeout;
+    private final Semaphore permits;
+
+    public ConcurrencyLimitedTransactionManager(DataSource dataSource,
+                                                ObjectProvider<TransactionManagerCustomizers> customizers,
+                                                @Value("${transaction.concurrency.enabled:true}") boolean enabled,
+                                                @Value("${transaction.concurrency.max-concurrent:0}") int maxConcurrentTransactions,
+                                                @Value("${transaction.concurrency.acquire-timeout:5s}") Duration acquireTimeout) {
+        this.enabled = enabled;
+        this.maxConcurrentTransactions = maxConcurrentTransactions > 0 ? maxConcurrentTransactions : connectionPoolSize(dataSource);
+        this.acquireTimeout = acquireTimeout;
+        this.permits = new Semaphore(this.maxConcurrentTransactions, true);
+        customizers.ifAvailable(transactionManagerCustomizers -> transactionManagerCustomizers.customize(this));
+        log.info("Concurrent database transactions limited to {}", enabled ? this.maxConcurrentTransactions : "unlimited");
+    }
+
+    public int getMaxConcurrentTransactions() {
+        return maxConcurrentTransactions;
+    }
+
+    public int getAvailablePermits() {
+        return permits.availablePermits();
+    }
+
+    @Override
+    protected void doBegin(Object transaction, TransactionDefinition definition) {
+        if (!enabled) {
+            super.doBegin(transaction, definition);
+            return;
+        }
+        acquire();
+        try {
+            super.doBegin(transaction, definition);
+        } catch (RuntimeException | Error e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    @Override
+    protected void doCleanupAfterCompletion(Object transaction) {
+        try {
+            super.doCleanupAfterCompletion(transaction);
+        } finally {
+            if (enabled) {
+                permits.release();
+            }
+        }
+    }
+
+    private void acquire() {
+        boolean acquired;
+        try {
+            acquired = permits.tryAcquire(acquireTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            acquired = false;
+        }
+        if (!acquired) {
+            throw new ServerBusyException("Too many concurrent requests, please retry later.", acquireTimeout);
+        }
+    }
+
+    private static int connectionPoolSize(DataSource dataSource) {
+        // Hikari only applies its default size when the pool starts, until then an unset size reads as -1.
+        if (dataSource instanceof HikariDataSource hikariDataSource && hikariDataSource.getMaximumPoolSize() > 0) {
+            return hikariDataSource.getMaximumPoolSize();
+        }
+        return DEFAULT_POOL_SIZE;
+    }
+}
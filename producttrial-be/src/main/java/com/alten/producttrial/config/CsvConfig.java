@@ -0,0 +1,50 @@
+package com.alten.producttrial.config;
+
+import com.alten.producttrial.dto.ProductDto;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.dataformat.csv.CsvMapper;
+import com.fasterxml.jackson.dataformat.csv.CsvParser;
+import com.fasterxml.jackson.dataformat.csv.CsvSchema;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+
+/**
+ * CSV mapping shared by the product import and export, so that an exported catalog can be imported back.
+ * <p>
+ * The mapper is not a bean: a {@link CsvMapper} is an {@code ObjectMapper} and would replace the JSON one
+ * configured by Spring Boot.
+ */
+public final class CsvConfig {
+
+    /**
+     * Columns of the product CSV files, in the order of {@link ProductDto}.
+     */
+    public static final CsvSchema PRODUCT_SCHEMA = CsvSchema.builder()
+            .addColumn("id")
+            .addColumn("code")
+            .addColumn("name")
+            .addColumn("description")
+            .addColumn("image")
+            .addColumn("category")
+            .addColumn("price", CsvSchema.ColumnType.NUMBER)
+            .addColumn("quantity", CsvSchema.ColumnType.NUMBER)
+            .addColumn("internalReference")
+            .addColumn("shellId", CsvSchema.ColumnType.NUMBER)
+            .addColumn("inventoryStatus")
+            .addColumn("rating", CsvSchema.ColumnType.NUMBER)
+            .addColumn("createdAt")
+            .addColumn("updatedAt")
+            .setUseHeader(true)
+            .build();
+
+    public static final CsvMapper CSV_MAPPER = CsvMapper.builder()
+            .enable(CsvParser.Feature.EMPTY_STRING_AS_NULL)
+            .enable(CsvParser.Feature.TRIM_SPACES)
+            .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+            .addModule(new JavaTimeModule())
+            .build();
+
+    private CsvConfig() {
+    }
+}
@@ -0,0 +1,56 @@
+package com.alten.producttrial.config;
+
+import com.github.benmanes.caffeine.jcache.configuration.CaffeineConfiguration;
+import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import javax.cache.spi.CachingProvider;
+import java.net.URI;
+import java.time.Duration;
+import java.util.OptionalLong;
+import java.util.UUID;
+
+/**
+ * Second-level cache setup: Hibernate uses a JCache {@link CacheManager} backed by Caffeine whose regions
+ * are created here, so that their size and time-to-live come from the application properties.
+ */
+@Configuration
+public class HibernateCacheConfig {
+    public static final String PRODUCT_REGION = "product";
+    public static final String QUERY_RESULTS_REGION = "default-query-results-region";
+    public static final String UPDATE_TIMESTAMPS_REGION = "default-update-timestamps-region";
+
+    @Bean(destroyMethod = "close")
+    public CacheManager hibernateCacheManager(@Value("${product.cache.max-size:10000}") long productCacheMaxSize,
+                                              @Value("${product.cache.ttl:10m}") Duration productCacheTtl) {
+        CachingProvider provider = Caching.getCachingProvider(CaffeineCachingProvider.class.getName());
+        // The provider keeps one manager per URI, so each application context gets its own: the test contexts
+        // cached side by side would otherwise share the manager and fail to create its regions a second time.
+        URI uri = URI.create("hibernate-" + UUID.randomUUID());
+        CacheManager cacheManager = provider.getCacheManager(uri, getClass().getClassLoader());
+
+        cacheManager.createCache(PRODUCT_REGION, boundedRegion(productCacheMaxSize, productCacheTtl));
+        cacheManager.createCache(QUERY_RESULTS_REGION, boundedRegion(productCacheMaxSize, productCacheTtl));
+        // Update timestamps must outlive every cached query result, so this region is never evicted.
+        cacheManager.createCache(UPDATE_TIMESTAMPS_REGION, new CaffeineConfiguration<>());
+        return cacheManager;
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer hibernateCacheManagerCustomizer(CacheManager hibernateCacheManager) {
+        return properties -> properties.put(ConfigSettings.CACHE_MANAGER, hibernateCacheManager);
+    }
+
+    private static CaffeineConfiguration<Object, Object> boundedRegion(long maxSize, Duration ttl) {
+        CaffeineConfiguration<Object, Object> configuration = new CaffeineConfiguration<>();
+        configuration.setMaximumSize(OptionalLong.of(maxSize));
+        configuration.setExpireAfterWrite(OptionalLong.of(ttl.toNanos()));
+        return configuration;
+    }
+}
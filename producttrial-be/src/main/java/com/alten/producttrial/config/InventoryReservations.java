@@ -0,0 +1,243 @@
+package com.alten.producttrial.config;
+
+import com.alten.producttrial.exception.InsufficientStockException;
+import com.alten.producttrial.exception.ResourceNotFoundException;
+import com.alten.producttrial.repository.ProductRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Holds product stock for cart lines, so that a product cannot be added to carts beyond its quantity.
+ * <p>
+ * Reservations are checked and counted in memory, with one counter per product, so that a product in high demand
+ * is only contended on its own counter and never on a database row. Every {@code inventory.reconcile-interval},
+ * the quantities reserved and released since the previous run are moved from {@code Product.quantity} to
+ * {@code Product.heldQuantity} in one JDBC batch, which also sets the inventory status, and the counters are
+ * refreshed from the database, so that restocking by an import is taken into account. {@code Product.quantity} is
+ * therefore the quantity available to sell, and lags the reservations by at most one interval. These writes keep
+ * the version of the products, so that they never make an edit of a product conflict, and only update the stock
+ * shown by the caches. Counters unused for a whole interval are dropped.
+ * <p>
+ * The counters live in this instance only: the application must run as a single instance for the holds to be
+ * enforced.
+ */
+@Component
+public class InventoryReservations {
+    private static final Logger log = LoggerFactory.getLogger(InventoryReservations.class);
+
+    private final ProductRepository productRepository;
+    private final ProductChangeListener productChangeListener;
+    private final TransactionTemplate transactionTemplate;
+    private final Duration reservationTtl;
+    private final int lowStockThreshold;
+
+    private final Map<Long, Stock> stocks = new ConcurrentHashMap<>();
+    private final ReentrantLock reconcileLock = new ReentrantLock();
+
+    public InventoryReservations(ProductRepository productRepository,
+                                 ProductChangeListener productChangeListener,
+                                 TransactionTemplate transactionTemplate,
+                                 @Value("${inventory.reservation.ttl:15m}") Duration reservationTtl,
+                                 @Value("${inventory.low-stock-threshold:10}") int lowStockThreshold) {
+        this.productRepository = productRepository;
+        this.productChangeListener = productChangeListener;
+        this.transactionTemplate = transactionTemplate;
+        this.reservationTtl = reservationTtl;
+        this.lowStockThreshold = lowStockThreshold;
+    }
+
+    /**
+     * Returns the end of a hold starting now.
+     */
+    public ZonedDateTime holdUntil() {
+        return ZonedDateTime.now().plus(reservationTtl);
+    }
+
+    /**
+     * Reserves {@code quantity} items of a product.
+     *
+     * @throws ResourceNotFoundException  if the product does not exist
+     * @throws InsufficientStockException if less than {@code quantity} items are available
+     */
+    public void reserve(Long productId, int quantity) {
+        while (true) {
+            Stock stock = stock(productId);
+            if (stock == null) {
+                throw new ResourceNotFoundException("Product not found");
+            }
+            synchronized (stock) {
+                if (stock.retired) {
+                    continue;
+                }
+                if (stock.quantity - stock.unflushed < quantity) {
+                    throw new InsufficientStockException("Not enough stock for product " + productId);
+                }
+                stock.unflushed += quantity;
+                stock.used = true;
+                return;
+            }
+        }
+    }
+
+    /**
+     * Returns {@code quantity} reserved items of a product to stock. Releases of deleted products are ignored.
+     */
+    public void release(Long productId, int quantity) {
+        while (true) {
+            Stock stock = stock(productId);
+            if (stock == null) {
+                return;
+            }
+            synchronized (stock) {
+                if (stock.retired) {
+                    continue;
+                }
+                stock.unflushed -= quantity;
+                stock.used = true;
+                return;
+            }
+        }
+    }
+
+    /**
+     * Applies the changes of the held quantity of several products as part of the current transaction: increases
+     * are reserved at once, all or none, and given back if the transaction rolls back, while decreases are only
+     * released once it commits. Without a transaction, both take effect immediately.
+     *
+     * @param changes change of the held quantity per product id
+     * @throws ResourceNotFoundException  if a product to reserve does not exist
+     * @throws InsufficientStockException if a product does not have enough items available
+     */
+    public void adjust(Map<Long, Integer> changes) {
+        Map<Long, Integer> reserved = new LinkedHashMap<>();
+        Map<Long, Integer> released = new LinkedHashMap<>();
+        try {
+            changes.forEach((productId, change) -> {
+                if (change > 0) {
+                    reserve(productId, change);
+                    reserved.put(productId, change);
+                } else if (change < 0) {
+                    released.put(productId, -change);
+                }
+            });
+        } catch (RuntimeException e) {
+            reserved.forEach(this::release);
+            throw e;
+        }
+
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            released.forEach(this::release);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                (status == STATUS_COMMITTED ? released : reserved).forEach(InventoryReservations.this::release);
+            }
+        });
+    }
+
+    /**
+     * Writes the reservations and releases counted since the previous run to the database, then refreshes the
+     * counters from it.
+     */
+    @Scheduled(fixedDelayString = "${inventory.reconcile-interval:1s}")
+    public void reconcile() {
+        reconcileLock.lock();
+        try {
+            Map<Long, Integer> written = new HashMap<>();
+            stocks.forEach((productId, stock) -> {
+                synchronized (stock) {
+                    if (stock.unflushed != 0) {
+                        written.put(productId, stock.unflushed);
+                        // Counted as written until the write fails, so that the available quantity does not change.
+                        stock.quantity -= stock.unflushed;
+                        stock.unflushed = 0;
+                    }
+                }
+            });
+            if (!written.isEmpty()) {
+                try {
+                    transactionTemplate.executeWithoutResult(status -> {
+                        productRepository.subtractQuantities(written, lowStockThreshold);
+                        productChangeListener.productsStockChanged(productRepository.findStocksByIds(written.keySet()));
+                    });
+                } catch (RuntimeException e) {
+                    log.warn("Could not write the stock of {} products, will try again", written.size(), e);
+                    written.forEach((productId, quantity) -> {
+                        Stock stock = stocks.get(productId);
+                        synchronized (stock) {
+                            stock.quantity += quantity;
+                            stock.unflushed += quantity;
+                        }
+                    });
+                    return;
+                }
+            }
+
+            // Reservations made since the write are still unflushed, so they are not counted twice.
+            Map<Long, Integer> quantities = productRepository.findQuantitiesByIds(stocks.keySet());
+            stocks.forEach((productId, stock) -> {
+                synchronized (stock) {
+                    Integer quantity = quantities.get(productId);
+                    if (quantity == null || (!stock.used && stock.unflushed == 0)) {
+                        stock.retired = true;
+                        stocks.remove(productId, stock);
+                    } else {
+                        stock.quantity = quantity;
+                        stock.used = false;
+                    }
+                }
+            });
+        } finally {
+            reconcileLock.unlock();
+        }
+    }
+
+    /**
+     * Returns the counter of a product, loading its quantity if needed, or {@code null} if the product does not exist.
+     */
+    private Stock stock(Long productId) {
+        Stock stock = stocks.get(productId);
+        if (stock != null) {
+            return stock;
+        }
+        Integer quantity = productRepository.findQuantitiesByIds(List.of(productId)).get(productId);
+        if (quantity == null) {
+            return null;
+        }
+        Stock loaded = new Stock(quantity);
+        Stock existing = stocks.putIfAbsent(productId, loaded);
+        return existing != null ? existing : loaded;
+    }
+
+    /**
+     * Stock counter of a product, guarded by its own monitor.
+     */
+    private static final class Stock {
+        // Quantity in the database, less the quantities being written.
+        private int quantity;
+        // Quantity reserved less quantity released since the last write.
+        private int unflushed;
+        // Whether a reservation or a release happened since the last run.
+        private boolean used;
+        // Removed from the counters; a fresh one must be loaded.
+        private boolean retired;
+
+        private Stock(int quantity) {
+            this.quantity = quantity;
+        }
+    }
+}
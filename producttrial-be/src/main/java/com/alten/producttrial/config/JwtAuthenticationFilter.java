@@ -1,12 +1,12 @@
 package com.alten.producttrial.config;
 
-import com.alten.producttrial.exception.UserNotFoundException;
-import com.alten.producttrial.repository.UserRepository;
+import io.jsonwebtoken.Claims;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
-import lombok.AllArgsConstructor;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
@@ -15,19 +15,32 @@ import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
-import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
 
 @Component
-@AllArgsConstructor
 public class JwtAuthenticationFilter extends OncePerRequestFilter {
-    private static final String ACCOUNT_ADMIN_EMAIL = "admin@admin.com";
 
     private final JwtTokenProvider jwtTokenProvider;
 
+    private final TokenVersions tokenVersions;
 
-    private final UserRepository userRepository;
+    private final RevokedSessions revokedSessions;
 
+    private final Counter revokedTokens;
+
+    private final Counter outdatedTokens;
+
+    public JwtAuthenticationFilter(JwtTokenProvider jwtTokenProvider,
+                                   TokenVersions tokenVersions,
+                                   RevokedSessions revokedSessions,
+                                   MeterRegistry meterRegistry) {
+        this.jwtTokenProvider = jwtTokenProvider;
+        this.tokenVersions = tokenVersions;
+        this.revokedSessions = revokedSessions;
+        this.revokedTokens = JwtTokenProvider.validationCounter(meterRegistry, "revoked");
+        this.outdatedTokens = JwtTokenProvider.validationCounter(meterRegistry, "outdated");
+    }
 
     private String resolveToken(HttpServletRequest request) {
         String bearerToken = request.getHeader("Authorization");
@@ -37,22 +50,33 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
     @Override
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
         String token = resolveToken(request);
-        if (token != null && jwtTokenProvider.validateToken(token)) {
-            String username = jwtTokenProvider.getUsernameFromToken(token);
-
-            boolean isUserExist = userRepository.existsByEmail(username);
-            if (!isUserExist) {
-                throw new UserNotFoundException("User not found");
-            }
-
-            List<GrantedAuthority> authorities = new ArrayList<>();
-
-            if (username.equals(ACCOUNT_ADMIN_EMAIL)) {
-                authorities.add(new SimpleGrantedAuthority("ROLE_ADMIN"));
-            }
-            UsernamePasswordAuthenticationToken authentication = new UsernamePasswordAuthenticationToken(username, null, authorities);
+        Optional<Claims> claims = token != null ? jwtTokenProvider.parseAndVerify(token) : Optional.empty();
+        Optional<UserPrincipal> user = claims.flatMap(this::toPrincipal);
+        // The identity and the roles are trusted as signed, no lookup is needed.
+        if (user.isPresent()) {
+            UserPrincipal principal = user.get();
+            List<GrantedAuthority> authorities = principal.getRoles().stream()
+                    .<GrantedAuthority>map(SimpleGrantedAuthority::new)
+                    .toList();
+            UsernamePasswordAuthenticationToken authentication = new UsernamePasswordAuthenticationToken(principal, null, authorities);
             SecurityContextHolder.getContext().setAuthentication(authentication);
         }
         filterChain.doFilter(request, response);
     }
+
+    /**
+     * @return the user of verified claims, or empty if their session is revoked or their roles are outdated
+     */
+    private Optional<UserPrincipal> toPrincipal(Claims claims) {
+        if (revokedSessions.isRevoked(claims.get(JwtTokenProvider.SESSION_ID_CLAIM, String.class))) {
+            revokedTokens.increment();
+            return Optional.empty();
+        }
+        Optional<UserPrincipal> user = jwtTokenProvider.getUser(claims);
+        if (user.isPresent() && !tokenVersions.isCurrent(user.get().getId(), user.get().getTokenVersion())) {
+            outdatedTokens.increment();
+            return Optional.empty();
+        }
+        return user;
+    }
 }
@@ -0,0 +1,347 @@
+package com.alten.producttrial.config;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwsHeader;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.SigningKeyResolverAdapter;
+import io.jsonwebtoken.UnsupportedJwtException;
+import io.jsonwebtoken.security.Keys;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.math.BigInteger;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.security.KeyFactory;
+import java.security.KeyPair;
+import java.security.PrivateKey;
+import java.security.interfaces.ECPublicKey;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.security.spec.X509EncodedKeySpec;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * ES256 key pairs that access tokens are signed with, identified by the {@code kid} header of the tokens.
+ * <p>
+ * Only the private key of the current pair signs; the public keys of every active pair verify, so that a node
+ * that only checks tokens needs the key set served by {@code GET /api/token/keys} and never a secret. Each pair
+ * signs during one slot of {@code jwt.key-rotation.interval}, aligned on the epoch so that every node switches
+ * pairs at the same time. The pair of the next slot is published one interval in advance, so that the nodes
+ * caching the key set already know it, and the former pair stays active for one access token lifetime, until the
+ * tokens it signed have expired. No token is rejected by a rotation.
+ * <p>
+ * With {@code jwt.key-store.directory} set, each pair is saved there in a file named after its slot, readable by
+ * the owner only, and the pairs already saved are used rather than generated: nodes sharing the directory sign and
+ * verify with the same pairs, and a restart keeps the tokens issued before it valid. The first node to create the
+ * file of a slot wins; the others read it. A token naming an unknown pair reloads the directory, at most once a
+ * second. Without a directory the pairs live in memory, and a restart rejects the access tokens issued before it.
+ */
+@Component
+public class JwtKeys {
+    private static final Logger log = LoggerFactory.getLogger(JwtKeys.class);
+    private static final SignatureAlgorithm ALGORITHM = SignatureAlgorithm.ES256;
+    private static final int COORDINATE_BYTES = 32;
+    private static final String KEY_FILE_SUFFIX = ".properties";
+    private static final Duration MIN_RELOAD_INTERVAL = Duration.ofSeconds(1);
+
+    private final Duration accessTokenLifetime;
+    private final Duration rotationInterval;
+    private final Path directory;
+    private Clock clock = Clock.systemUTC();
+
+    // Active pairs by the start of the slot they sign in, and by kid for the verification.
+    private final NavigableMap<Instant, SigningKey> keysBySlot = new TreeMap<>();
+    private final Map<String, SigningKey> keys = new ConcurrentHashMap<>();
+    private volatile SigningKey current;
+    private volatile Instant currentUntil = Instant.MIN;
+    private volatile Map<String, Object> keySet;
+    private volatile Instant lastReload = Instant.MIN;
+
+    public JwtKeys(@Value("${jwt.expiration}") long accessTokenLifetimeMillis,
+                   @Value("${jwt.key-rotation.interval:1d}") Duration rotationInterval,
+                   @Value("${jwt.key-store.directory:}") String directory) {
+        this.accessTokenLifetime = Duration.ofMillis(accessTokenLifetimeMillis);
+        this.rotationInterval = rotationInterval;
+        this.directory = directory == null || directory.isBlank() ? null : Path.of(directory);
+    }
+
+    @PostConstruct
+    public void init() {
+        if (directory != null) {
+            try {
+                Files.createDirectories(directory);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot create the JWT key store " + directory, e);
+            }
+        }
+        rotate();
+        log.info("JWT signing keys {}", directory != null ? "stored in " + directory.toAbsolutePath() : "kept in memory");
+    }
+
+    /**
+     * Loads the pairs saved by the other nodes, makes the pair of the current slot the signing one, makes sure the
+     * pair of the next slot exists and retires the pairs whose tokens have all expired. Signing and publishing the
+     * key set call it as soon as a slot ends, so that the switch does not wait for the schedule.
+     */
+    @Scheduled(fixedDelayString = "${jwt.key-rotation.interval:1d}", initialDelayString = "${jwt.key-rotation.interval:1d}")
+    public synchronized void rotate() {
+        Instant now = clock.instant();
+        load(now);
+        Instant currentSlot = slotStart(now);
+        Instant nextSlot = currentSlot.plus(rotationInterval);
+        SigningKey former = current;
+        current = obtain(currentSlot);
+        obtain(nextSlot);
+        currentUntil = nextSlot;
+        retire(now);
+        keySet = buildKeySet();
+        if (former != null && !former.kid().equals(current.kid())) {
+            log.info("Rotated the JWT signing key from {} to {}, {} active keys", former.kid(), current.kid(), keys.size());
+        }
+    }
+
+    public String currentKeyId() {
+        return currentKey().kid();
+    }
+
+    public SignatureAlgorithm algorithm() {
+        return ALGORITHM;
+    }
+
+    /**
+     * @return the key id and the private key to sign with, read together so that a rotation cannot split them
+     */
+    public Map.Entry<String, PrivateKey> signingKey() {
+        SigningKey key = currentKey();
+        return Map.entry(key.kid(), key.keyPair().getPrivate());
+    }
+
+    /**
+     * Resolves the public key of a token from its {@code kid} header; tokens of unknown or retired keys are rejected.
+     */
+    public SigningKeyResolverAdapter resolver() {
+        return new SigningKeyResolverAdapter() {
+            @Override
+            public Key resolveSigningKey(JwsHeader header, Claims claims) {
+                String kid = header.getKeyId();
+                SigningKey key = kid != null ? keys.get(kid) : null;
+                if (key == null && kid != null && reloadAllowed()) {
+                    rotate();
+                    key = keys.get(kid);
+                }
+                if (key == null) {
+                    throw new UnsupportedJwtException("Unknown signing key: " + kid);
+                }
+                return key.keyPair().getPublic();
+            }
+        };
+    }
+
+    /**
+     * @return the active public keys as a JSON Web Key Set, rebuilt only on rotation
+     */
+    public Map<String, Object> keySet() {
+        currentKey();
+        return keySet;
+    }
+
+    private SigningKey currentKey() {
+        if (!clock.instant().isBefore(currentUntil)) {
+            rotate();
+        }
+        return current;
+    }
+
+    private Instant slotStart(Instant now) {
+        long interval = rotationInterval.toMillis();
+        return Instant.ofEpochMilli(Math.floorDiv(now.toEpochMilli(), interval) * interval);
+    }
+
+    private boolean reloadAllowed() {
+        if (directory == null) {
+            return false;
+        }
+        Instant now = clock.instant();
+        if (now.isBefore(lastReload.plus(MIN_RELOAD_INTERVAL))) {
+            return false;
+        }
+        lastReload = now;
+        return true;
+    }
+
+    private SigningKey obtain(Instant slot) {
+        SigningKey key = keysBySlot.get(slot);
+        if (key == null) {
+            key = generate(slot);
+            if (directory != null) {
+                key = save(key);
+            }
+            add(key);
+        }
+        return key;
+    }
+
+    private void add(SigningKey key) {
+        keysBySlot.put(key.slot(), key);
+        keys.put(key.kid(), key);
+    }
+
+    /**
+     * Retires the pairs of the slots that ended more than one access token lifetime ago.
+     */
+    private void retire(Instant now) {
+        Instant retiredBefore = now.minus(accessTokenLifetime);
+        Iterator<Map.Entry<Instant, SigningKey>> iterator = keysBySlot.entrySet().iterator();
+        while (iterator.hasNext()) {
+            SigningKey key = iterator.next().getValue();
+            Instant successor = keysBySlot.higherKey(key.slot());
+            if (successor == null || !successor.isBefore(retiredBefore)) {
+                break;
+            }
+            iterator.remove();
+            keys.remove(key.kid());
+            if (directory != null) {
+                try {
+                    Files.deleteIfExists(keyFile(key.slot()));
+                } catch (IOException e) {
+                    log.warn("Cannot delete the retired JWT key file of {}", key.kid(), e);
+                }
+            }
+        }
+    }
+
+    private void load(Instant now) {
+        if (directory == null) {
+            return;
+        }
+        lastReload = now;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + KEY_FILE_SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                Instant slot;
+                try {
+                    slot = Instant.ofEpochMilli(Long.parseLong(name.substring(0, name.length() - KEY_FILE_SUFFIX.length())));
+                } catch (NumberFormatException e) {
+                    continue;
+                }
+                if (!keysBySlot.containsKey(slot)) {
+                    read(file, slot).ifPresent(this::add);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read the JWT key store " + directory, e);
+        }
+    }
+
+    /**
+     * Saves a new pair, unless another node saved the pair of the same slot first, in which case that one is returned.
+     * The file is written aside and then linked under its name, so that it is never read half written.
+     */
+    private SigningKey save(SigningKey key) {
+        Path file = keyFile(key.slot());
+        Path temporary = null;
+        try {
+            // Temporary files are created readable by their owner only.
+            temporary = Files.createTempFile(directory, "jwt-key-", ".tmp");
+            Properties properties = new Properties();
+            properties.setProperty("kid", key.kid());
+            properties.setProperty("private", Base64.getEncoder().encodeToString(key.keyPair().getPrivate().getEncoded()));
+            properties.setProperty("public", Base64.getEncoder().encodeToString(key.keyPair().getPublic().getEncoded()));
+            try (Writer writer = Files.newBufferedWriter(temporary)) {
+                properties.store(writer, "JWT signing key from " + key.slot());
+            }
+            Files.createLink(file, temporary);
+            return key;
+        } catch (FileAlreadyExistsException e) {
+            return read(file, key.slot())
+                    .orElseThrow(() -> new IllegalStateException("Unreadable JWT key file " + file));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot save the JWT key " + key.kid() + " in " + directory, e);
+        } finally {
+            if (temporary != null) {
+                try {
+                    Files.deleteIfExists(temporary);
+                } catch (IOException e) {
+                    log.warn("Cannot delete the temporary JWT key file {}", temporary, e);
+                }
+            }
+        }
+    }
+
+    private static Optional<SigningKey> read(Path file, Instant slot) {
+        try (Reader reader = Files.newBufferedReader(file)) {
+            Properties properties = new Properties();
+            properties.load(reader);
+            KeyFactory keyFactory = KeyFactory.getInstance("EC");
+            PrivateKey privateKey = keyFactory.generatePrivate(
+                    new PKCS8EncodedKeySpec(Base64.getDecoder().decode(properties.getProperty("private"))));
+            ECPublicKey publicKey = (ECPublicKey) keyFactory.generatePublic(
+                    new X509EncodedKeySpec(Base64.getDecoder().decode(properties.getProperty("public"))));
+            return Optional.of(new SigningKey(properties.getProperty("kid"), new KeyPair(publicKey, privateKey), slot));
+        } catch (IOException | GeneralSecurityException | RuntimeException e) {
+            log.warn("Ignoring the unreadable JWT key file {}", file, e);
+            return Optional.empty();
+        }
+    }
+
+    private Path keyFile(Instant slot) {
+        return directory.resolve(slot.toEpochMilli() + KEY_FILE_SUFFIX);
+    }
+
+    private Map<String, Object> buildKeySet() {
+        List<Map<String, Object>> jwks = keysBySlot.values().stream()
+                .map(JwtKeys::toJwk)
+                .toList();
+        return Map.of("keys", jwks);
+    }
+
+    private static Map<String, Object> toJwk(SigningKey key) {
+        ECPublicKey publicKey = (ECPublicKey) key.keyPair().getPublic();
+        Map<String, Object> jwk = new LinkedHashMap<>();
+        jwk.put("kty", "EC");
+        jwk.put("crv", "P-256");
+        jwk.put("kid", key.kid());
+        jwk.put("use", "sig");
+        jwk.put("alg", ALGORITHM.getValue());
+        jwk.put("x", coordinate(publicKey.getW().getAffineX()));
+        jwk.put("y", coordinate(publicKey.getW().getAffineY()));
+        return jwk;
+    }
+
+    /**
+     * Encodes a curve coordinate as the fixed-length, unsigned, big-endian base64url value required by RFC 7518.
+     */
+    private static String coordinate(BigInteger value) {
+        byte[] bytes = value.toByteArray();
+        byte[] padded = new byte[COORDINATE_BYTES];
+        int length = Math.min(bytes.length, COORDINATE_BYTES);
+        System.arraycopy(bytes, bytes.length - length, padded, COORDINATE_BYTES - length, length);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(padded);
+    }
+
+    private static SigningKey generate(Instant slot) {
+        return new SigningKey(UUID.randomUUID().toString(), Keys.keyPairFor(ALGORITHM), slot);
+    }
+
+    /**
+     * @param slot the start of the slot during which the pair signs
+     */
+    private record SigningKey(String kid, KeyPair keyPair, Instant slot) {
+    }
+}
@@ -1,66 +1,224 @@
 package com.alten.producttrial.config;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
 import io.jsonwebtoken.*;
-import io.jsonwebtoken.security.Keys;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
 import jakarta.annotation.PostConstruct;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
-import javax.crypto.SecretKey;
-import java.util.Base64;
-import java.util.Date;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.PrivateKey;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
 
 @Component
 public class JwtTokenProvider {
     private static final Logger log = LoggerFactory.getLogger(JwtTokenProvider.class);
 
-    @Value("${jwt.secret}")
-    private String secret;
+    /**
+     * Claim holding the session of the refresh token that the access token was issued with.
+     */
+    public static final String SESSION_ID_CLAIM = "sid";
+
+    /**
+     * Claims holding the id, the authorities and the token version of the user, read by
+     * {@link JwtAuthenticationFilter} instead of looking the user up.
+     */
+    public static final String USER_ID_CLAIM = "uid";
+    public static final String ROLES_CLAIM = "roles";
+    public static final String TOKEN_VERSION_CLAIM = "ver";
+
+    /**
+     * Counter of the validated tokens, tagged by result: {@code cached}, {@code verified}, {@code expired} or
+     * {@code invalid}; {@link JwtAuthenticationFilter} adds the valid tokens it rejects.
+     */
+    public static final String VALIDATION_COUNTER = "jwt.validation";
+
+    private final JwtKeys jwtKeys;
+
+    private final MeterRegistry meterRegistry;
+
+    private final Counter cachedTokens;
+    private final Counter verifiedTokens;
+    private final Counter expiredTokens;
+    private final Counter invalidTokens;
 
     @Value("${jwt.expiration}")
     private Long expiration;
 
-    private SecretKey secretKey;
+    @Value("${jwt.claims-cache.max-size:10000}")
+    private long claimsCacheMaxSize;
+
+    private JwtParser parser;
+
+    /**
+     * Claims of already verified tokens, keyed by the SHA-256 digest of the token.
+     * Each entry expires when the token itself expires, so a cache hit is always a valid token.
+     */
+    private Cache<String, Claims> verifiedClaims;
+
+
+    public JwtTokenProvider(JwtKeys jwtKeys, MeterRegistry meterRegistry) {
+        this.jwtKeys = jwtKeys;
+        this.meterRegistry = meterRegistry;
+        this.cachedTokens = validationCounter(meterRegistry, "cached");
+        this.verifiedTokens = validationCounter(meterRegistry, "verified");
+        this.expiredTokens = validationCounter(meterRegistry, "expired");
+        this.invalidTokens = validationCounter(meterRegistry, "invalid");
+    }
 
+    static Counter validationCounter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder(VALIDATION_COUNTER)
+                .description("Access tokens validated, by result")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
 
     @PostConstruct
     public void init() {
-        byte[] keyBytes = Base64.getEncoder().encode(secret.getBytes());
-        this.secretKey = Keys.hmacShaKeyFor(keyBytes);
+        this.parser = Jwts.parserBuilder().setSigningKeyResolver(jwtKeys.resolver()).build();
+        this.verifiedClaims = Caffeine.newBuilder()
+                .maximumSize(claimsCacheMaxSize)
+                .expireAfter(new Expiry<String, Claims>() {
+                    @Override
+                    public long expireAfterCreate(String key, Claims claims, long currentTime) {
+                        return TimeUnit.MILLISECONDS.toNanos(Math.max(0, claims.getExpiration().getTime() - System.currentTimeMillis()));
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String key, Claims claims, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
 
+                    @Override
+                    public long expireAfterRead(String key, Claims claims, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, verifiedClaims, "jwt.claims");
     }
 
-    public String generateToken(String username) {
+    public String generateToken(UserPrincipal user) {
+        return generateToken(user, null);
+    }
 
-        return Jwts.builder()
-                .setSubject(username)
+    /**
+     * Issues an access token valid for {@code jwt.expiration} milliseconds, carrying the identity and the roles of
+     * the user, signed with the current key of {@link JwtKeys}.
+     *
+     * @param sessionId session to revoke the token with, or {@code null} for a token that can only expire
+     */
+    public String generateToken(UserPrincipal user, String sessionId) {
+        Map.Entry<String, PrivateKey> signingKey = jwtKeys.signingKey();
+        JwtBuilder builder = Jwts.builder()
+                .setHeaderParam(JwsHeader.KEY_ID, signingKey.getKey())
+                .setSubject(user.getEmail())
+                .claim(USER_ID_CLAIM, user.getId())
+                .claim(ROLES_CLAIM, user.getRoles())
+                .claim(TOKEN_VERSION_CLAIM, user.getTokenVersion())
                 .setIssuedAt(new Date())
-                .setExpiration(new Date(System.currentTimeMillis() + expiration))
-                .signWith(SignatureAlgorithm.HS512, secretKey)
-                .compact();
-
+                .setExpiration(new Date(System.currentTimeMillis() + expiration));
+        if (sessionId != null) {
+            builder.claim(SESSION_ID_CLAIM, sessionId);
+        }
+        return builder.signWith(signingKey.getValue(), jwtKeys.algorithm()).compact();
     }
 
-    public String getUsernameFromToken(String token) {
-        return Jwts.parser()
-                .setSigningKey(secretKey)
-                .parseClaimsJws(token)
-                .getBody()
-                .getSubject();
+    /**
+     * @return the lifetime of access tokens, in milliseconds
+     */
+    public long getExpiration() {
+        return expiration;
     }
 
-    public boolean validateToken(String token) {
+    /**
+     * Verifies the signature and expiration of a token and returns its claims.
+     * Tokens that were already verified are served from the claims cache without being parsed again.
+     *
+     * @param token the compact JWT
+     * @return the verified claims, or empty if the token is malformed, tampered with or expired
+     */
+    public Optional<Claims> parseAndVerify(String token) {
+        if (token == null || token.isBlank()) {
+            invalidTokens.increment();
+            return Optional.empty();
+        }
+        String digest = digest(token);
+        Claims cached = verifiedClaims.getIfPresent(digest);
+        if (cached != null) {
+            cachedTokens.increment();
+            return Optional.of(cached);
+        }
         try {
-            Jws<Claims> claims = Jwts.parser().setSigningKey(this.secretKey).parseClaimsJws(token);
             // parseClaimsJws will check expiration date. No need do here.
-            log.info("expiration date: {}", claims.getBody().getExpiration());
-            return true;
+            Claims claims = parser.parseClaimsJws(token).getBody();
+            if (claims.getExpiration() != null) {
+                verifiedClaims.put(digest, claims);
+            }
+            verifiedTokens.increment();
+            return Optional.of(claims);
+        } catch (ExpiredJwtException e) {
+            expiredTokens.increment();
+            log.debug("Expired JWT token: {}", e.getMessage());
         } catch (JwtException | IllegalArgumentException e) {
-            log.info("Invalid JWT token: {}", e.getMessage());
+            invalidTokens.increment();
+            log.debug("Invalid JWT token: {}", e.getMessage());
             log.trace("Invalid JWT token trace.", e);
         }
-        return false;
+        return Optional.empty();
+    }
+
+    /**
+     * Reads the user from verified claims.
+     *
+     * @return the user, or empty if the claims lack the identity claims
+     */
+    public Optional<UserPrincipal> getUser(Claims claims) {
+        Long userId = claims.get(USER_ID_CLAIM, Long.class);
+        Integer tokenVersion = claims.get(TOKEN_VERSION_CLAIM, Integer.class);
+        List<?> roles = claims.get(ROLES_CLAIM, List.class);
+        if (userId == null || tokenVersion == null || roles == null || claims.getSubject() == null) {
+            return Optional.empty();
+        }
+        List<String> authorities = roles.stream().map(String::valueOf).toList();
+        return Optional.of(new UserPrincipal(userId, claims.getSubject(), authorities, tokenVersion));
+    }
+
+    public String getUsernameFromToken(String token) {
+        return parseAndVerify(token)
+                .map(Claims::getSubject)
+                .orElseThrow(() -> new MalformedJwtException("Invalid JWT token"));
+    }
+
+    public boolean validateToken(String token) {
+        return parseAndVerify(token).isPresent();
+    }
+
+    public long getClaimsCacheHitCount() {
+        return verifiedClaims.stats().hitCount();
+    }
+
+    public long getClaimsCacheMissCount() {
+        return verifiedClaims.stats().missCount();
+    }
+
+    private static String digest(String token) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.US_ASCII));
+            return Base64.getEncoder().encodeToString(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
     }
 }
@@ -0,0 +1,22 @@
+package com.alten.producttrial.config;
+
+import io.micrometer.core.aop.TimedAspect;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Times the methods of the classes annotated with {@link io.micrometer.core.annotation.Timed}, which are the
+ * services, under the {@value #SERVICE_TIMER} timer tagged by class, method and exception. The endpoints are timed
+ * by Spring MVC under {@code http.server.requests}; both publish the histogram
+ * buckets that Prometheus computes percentiles from, see the application properties.
+ */
+@Configuration
+public class MetricsConfig {
+    public static final String SERVICE_TIMER = "service.calls";
+
+    @Bean
+    public TimedAspect timedAspect(MeterRegistry meterRegistry) {
+        return new TimedAspect(meterRegistry);
+    }
+}
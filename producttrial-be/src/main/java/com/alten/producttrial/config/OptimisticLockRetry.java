@@ -0,0 +1,85 @@
+package com.alten.producttrial.config;
+
+import com.alten.producttrial.exception.ConflictException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+
+/**
+ * Runs writes that may fail on an optimistic lock, retrying them a bounded number of times with an exponential,
+ * randomized backoff. Each attempt must run in its own transaction, so that it reads the current state again.
+ * <p>
+ * Conflicts are counted per operation in {@code optimistic.lock.conflicts}, retries in {@code optimistic.lock.retries}
+ * and operations given up in {@code optimistic.lock.failures}.
+ */
+@Component
+public class OptimisticLockRetry {
+
+    private final MeterRegistry meterRegistry;
+    private final int maxAttempts;
+    private final Duration initialBackoff;
+
+    public OptimisticLockRetry(MeterRegistry meterRegistry,
+                               @Value("${optimistic-lock.retry.max-attempts:3}") int maxAttempts,
+                               @Value("${optimistic-lock.retry.initial-backoff:10ms}") Duration initialBackoff) {
+        this.meterRegistry = meterRegistry;
+        this.maxAttempts = maxAttempts;
+        this.initialBackoff = initialBackoff;
+    }
+
+    /**
+     * Runs the action, up to {@code optimistic-lock.retry.max-attempts} times.
+     *
+     * @param operation name of the operation in the metrics, such as {@code cart.batch}
+     * @throws ConflictException if the last attempt still conflicts
+     */
+    public <T> T execute(String operation, Supplier<T> action) {
+        return execute(operation, maxAttempts, action);
+    }
+
+    /**
+     * Runs the action, up to {@code maxAttempts} times; with a single attempt, conflicts are only counted and
+     * reported as {@link ConflictException}.
+     *
+     * @throws ConflictException if the last attempt still conflicts
+     */
+    public <T> T execute(String operation, int maxAttempts, Supplier<T> action) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return action.get();
+            } catch (OptimisticLockingFailureException e) {
+                counter("optimistic.lock.conflicts", operation).increment();
+                if (attempt >= maxAttempts) {
+                    counter("optimistic.lock.failures", operation).increment();
+                    throw new ConflictException("The resource was modified concurrently, reload it and try again", e);
+                }
+                counter("optimistic.lock.retries", operation).increment();
+                pause(attempt);
+            }
+        }
+    }
+
+    /**
+     * Waits between half and all of {@code initialBackoff * 2^(attempt - 1)}, so that the conflicting requests do
+     * not retry in step.
+     */
+    private void pause(int attempt) {
+        long backoff = initialBackoff.toNanos() << Math.min(attempt - 1, 16);
+        try {
+            Thread.sleep(Duration.ofNanos(ThreadLocalRandom.current().nextLong(backoff / 2, backoff + 1)));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ConflictException("Interrupted while waiting to retry after a concurrent modification", e);
+        }
+    }
+
+    private Counter counter(String name, String operation) {
+        return meterRegistry.counter(name, "operation", operation);
+    }
+}
@@ -0,0 +1,185 @@
+package com.alten.producttrial.config;
+
+import com.alten.producttrial.dto.ProductCatalogSnapshot;
+import com.alten.producttrial.dto.ProductStockDto;
+import com.alten.producttrial.entity.Product;
+import com.alten.producttrial.mapper.ProductMapper;
+import com.alten.producttrial.repository.ProductRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Keeps the product catalog pre-serialized so that listing all products does not run Jackson over every
+ * product on each request. Each product is serialized once into its own JSON fragment; when products are
+ * written, only their fragments are read back from the database, and the catalog is re-assembled from the
+ * fragments on the next read. When only their stock changed, their fragments are updated in place instead.
+ */
+@Component
+@RequiredArgsConstructor
+public class ProductCatalogSnapshotCache {
+
+    private final ProductRepository productRepository;
+    private final ProductMapper productMapper;
+    private final ObjectMapper objectMapper;
+
+    private final Set<Long> changedProductIds = ConcurrentHashMap.newKeySet();
+    private final Map<Long, ProductStockDto> changedStocks = new ConcurrentHashMap<>();
+    private volatile boolean reloadRequired = true;
+    private volatile ProductCatalogSnapshot snapshot;
+
+    // Guarded by this: only touched while building a snapshot.
+    private final NavigableMap<Long, byte[]> fragments = new TreeMap<>();
+    private long version;
+
+    /**
+     * Returns the current catalog snapshot, rebuilding it first if products changed since it was built.
+     */
+    public ProductCatalogSnapshot getSnapshot() {
+        ProductCatalogSnapshot current = snapshot;
+        if (current != null && !reloadRequired && changedProductIds.isEmpty() && changedStocks.isEmpty()) {
+            return current;
+        }
+        synchronized (this) {
+            if (snapshot == null || reloadRequired || !changedProductIds.isEmpty() || !changedStocks.isEmpty()) {
+                refreshFragments();
+                snapshot = assemble();
+            }
+            return snapshot;
+        }
+    }
+
+    /**
+     * Records that a product was created, updated or deleted. Must be called once the change is committed,
+     * since the product is read back from the database on the next snapshot build.
+     */
+    public void markChanged(Long productId) {
+        changedProductIds.add(productId);
+    }
+
+    /**
+     * Records the new quantity and inventory status of a product, which are set in its fragment without reading
+     * it back. Must be called once the change is committed.
+     */
+    public void stockChanged(ProductStockDto stock) {
+        changedStocks.put(stock.getProductId(), stock);
+    }
+
+    /**
+     * Forces the whole catalog to be reloaded on the next read, for writes that bypass the entity lifecycle.
+     */
+    public void invalidateAll() {
+        reloadRequired = true;
+    }
+
+    private void refreshFragments() {
+        if (reloadRequired) {
+            reloadRequired = false;
+            changedProductIds.clear();
+            changedStocks.clear();
+            fragments.clear();
+            productRepository.findAll().forEach(product -> fragments.put(product.getId(), serialize(product)));
+            return;
+        }
+
+        // Ids marked while the products are being read stay in the set and trigger another refresh.
+        List<Long> productIds = new ArrayList<>();
+        for (Iterator<Long> iterator = changedProductIds.iterator(); iterator.hasNext(); ) {
+            productIds.add(iterator.next());
+            iterator.remove();
+        }
+        List<ProductStockDto> stocks = takeChangedStocks(changedStocks);
+        productIds.forEach(fragments::remove);
+        productRepository.findAllById(productIds).forEach(product -> fragments.put(product.getId(), serialize(product)));
+        // Products read back above already have their latest stock.
+        stocks.stream()
+                .filter(stock -> !productIds.contains(stock.getProductId()))
+                .forEach(stock -> fragments.computeIfPresent(stock.getProductId(),
+                        (productId, fragment) -> withStock(objectMapper, fragment, stock)));
+    }
+
+    /**
+     * Removes and returns the pending stock changes; the ones recorded after a product was taken stay pending.
+     */
+    static List<ProductStockDto> takeChangedStocks(Map<Long, ProductStockDto> changedStocks) {
+        List<ProductStockDto> stocks = new ArrayList<>();
+        for (Long productId : changedStocks.keySet()) {
+            ProductStockDto stock = changedStocks.remove(productId);
+            if (stock != null) {
+                stocks.add(stock);
+            }
+        }
+        return stocks;
+    }
+
+    /**
+     * Returns a serialized product with the quantity and inventory status of the given stock, leaving the other
+     * properties as they were serialized.
+     */
+    static byte[] withStock(ObjectMapper objectMapper, byte[] product, ProductStockDto stock) {
+        try {
+            ObjectNode node = (ObjectNode) objectMapper.readTree(product);
+            node.put("quantity", stock.getQuantity());
+            node.put("inventoryStatus", stock.getInventoryStatus() != null ? stock.getInventoryStatus().name() : null);
+            return objectMapper.writeValueAsBytes(node);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private ProductCatalogSnapshot assemble() {
+        ByteArrayOutputStream json = new ByteArrayOutputStream();
+        json.write('[');
+        boolean first = true;
+        for (byte[] fragment : fragments.values()) {
+            if (!first) {
+                json.write(',');
+            }
+            json.writeBytes(fragment);
+            first = false;
+        }
+        json.write(']');
+
+        byte[] jsonBytes = json.toByteArray();
+        String etag = digest(jsonBytes);
+        return new ProductCatalogSnapshot(++version, etag, jsonBytes, etag + "-gzip", gzip(jsonBytes));
+    }
+
+    private byte[] serialize(Product product) {
+        try {
+            return objectMapper.writeValueAsBytes(productMapper.toDto(product));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Unable to serialize product " + product.getId(), e);
+        }
+    }
+
+    private static byte[] gzip(byte[] bytes) {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(bytes.length / 4 + 64);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+            gzip.write(bytes);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return compressed.toByteArray();
+    }
+
+    private static String digest(byte[] bytes) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(bytes);
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.alten.producttrial.config;
+
+import com.alten.producttrial.dto.ProductStockDto;
+import com.alten.producttrial.entity.Product;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import lombok.AllArgsConstructor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Marks a product as changed in the in-memory views of the catalog, the {@link ProductCatalogSnapshotCache},
+ * the {@link ProductSearchIndex} and the {@link ProductSuggester}, once the transaction that created, updated
+ * or deleted it commits, whichever code path performs the write. The {@link CartSummaryCache} is emptied as
+ * well, since cart summaries hold product names and prices. As for the user identity cache, the views are
+ * looked up lazily to avoid a cycle with the entity manager factory.
+ */
+@Component
+@AllArgsConstructor
+public class ProductChangeListener {
+
+    private final ObjectProvider<ProductCatalogSnapshotCache> productCatalogSnapshotCache;
+
+    private final ObjectProvider<ProductSearchIndex> productSearchIndex;
+
+    private final ObjectProvider<ProductSuggester> productSuggester;
+
+    private final ObjectProvider<CartSummaryCache> cartSummaryCache;
+
+    private final ObjectProvider<EntityManagerFactory> entityManagerFactory;
+
+    @PostPersist
+    @PostUpdate
+    @PostRemove
+    public void productChanged(Product product) {
+        Long productId = product.getId();
+        afterCommit(() -> markChanged(productId));
+        cartSummaryCache.getObject().invalidateAll();
+    }
+
+    /**
+     * Reports products written without Hibernate, such as by {@link com.alten.producttrial.repository.ProductBulkOperations}.
+     * Once the current transaction commits, they are also evicted from the second-level cache, together with the
+     * cached query results, which Hibernate would otherwise keep serving.
+     */
+    public void productsChanged(Collection<Long> productIds) {
+        List<Long> changedIds = List.copyOf(productIds);
+        afterCommit(() -> {
+            org.hibernate.Cache cache = hibernateCache();
+            changedIds.forEach(productId -> cache.evictEntityData(Product.class, productId));
+            cache.evictDefaultQueryRegion();
+            changedIds.forEach(this::markChanged);
+        });
+        cartSummaryCache.getObject().invalidateAll();
+    }
+
+    /**
+     * Reports products of which only the quantity and the inventory status were written without Hibernate, by
+     * the stock reconciliation every second. Once the current transaction commits, they are evicted from the
+     * second-level cache and their new stock is set in the catalog snapshot and the search index, without reading
+     * them back. The cached query results, the suggestions and the cart summaries do not show the stock and are
+     * kept, so that the reconciliation does not empty them every second.
+     */
+    public void productsStockChanged(Collection<ProductStockDto> stocks) {
+        List<ProductStockDto> changedStocks = List.copyOf(stocks);
+        afterCommit(() -> {
+            org.hibernate.Cache cache = hibernateCache();
+            changedStocks.forEach(stock -> cache.evictEntityData(Product.class, stock.getProductId()));
+            changedStocks.forEach(stock -> {
+                productCatalogSnapshotCache.getObject().stockChanged(stock);
+                productSearchIndex.getObject().stockChanged(stock);
+            });
+        });
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    private org.hibernate.Cache hibernateCache() {
+        return entityManagerFactory.getObject().getCache().unwrap(org.hibernate.Cache.class);
+    }
+
+    private void markChanged(Long productId) {
+        productCatalogSnapshotCache.getObject().markChanged(productId);
+        productSearchIndex.getObject().markChanged(productId);
+        productSuggester.getObject().invalidate();
+    }
+}
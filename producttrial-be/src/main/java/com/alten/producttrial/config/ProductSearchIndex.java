@@ -0,0 +1,414 @@
+package com.alten.producttrial.config;
+
+import com.alten.producttrial.dto.PriceRangeFacetDto;
+import com.alten.producttrial.dto.ProductDto;
+import com.alten.producttrial.dto.ProductFilter;
+import com.alten.producttrial.dto.ProductSearchResultDto;
+import com.alten.producttrial.dto.ProductStockDto;
+import com.alten.producttrial.entity.Product;
+import com.alten.producttrial.mapper.ProductMapper;
+import com.alten.producttrial.repository.ProductRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.document.*;
+import org.apache.lucene.facet.FacetResult;
+import org.apache.lucene.facet.FacetsCollector;
+import org.apache.lucene.facet.FacetsCollectorManager;
+import org.apache.lucene.facet.LabelAndValue;
+import org.apache.lucene.facet.StringDocValuesReaderState;
+import org.apache.lucene.facet.StringValueFacetCounts;
+import org.apache.lucene.facet.range.DoubleRange;
+import org.apache.lucene.facet.range.DoubleRangeFacetCounts;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.StoredFields;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.*;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.apache.lucene.util.BytesRef;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static com.alten.producttrial.repository.ProductSpecifications.idGreaterThan;
+
+/**
+ * In-memory Lucene index of the product catalog, searched on code, name, category and description with
+ * BM25 ranking, prefix and fuzzy matching, and category and price range facets.
+ * <p>
+ * The index is built when the application starts and then kept up to date like the catalog snapshot:
+ * products are marked as changed once their transaction commits and are read back from the database
+ * before the next search. Each document stores the serialized product, so that search results are
+ * returned without querying the database, and so that a product of which only the stock changed is
+ * re-indexed from it rather than read back.
+ */
+@Component
+public class ProductSearchIndex {
+    private static final Logger log = LoggerFactory.getLogger(ProductSearchIndex.class);
+
+    private static final String ID = "id";
+    private static final String CODE = "code";
+    private static final String NAME = "name";
+    private static final String CATEGORY = "category";
+    private static final String DESCRIPTION = "description";
+    private static final String ALL_TEXT = "all_text";
+    private static final String CATEGORY_FACET = "category_facet";
+    private static final String INVENTORY_STATUS = "inventory_status";
+    private static final String PRICE = "price";
+    private static final String SOURCE = "source";
+
+    private static final Map<String, Float> FIELD_BOOSTS = Map.of(CODE, 4f, NAME, 3f, CATEGORY, 2f, DESCRIPTION, 1f);
+    private static final float PREFIX_WEIGHT = 0.5f;
+    private static final float FUZZY_WEIGHT = 0.3f;
+    private static final int MIN_PREFIX_LENGTH = 2;
+    private static final int REBUILD_BATCH_SIZE = 1000;
+
+    private static final List<DoubleRange> PRICE_RANGES = List.of(
+            new DoubleRange("0-10", 0, true, 10, false),
+            new DoubleRange("10-50", 10, true, 50, false),
+            new DoubleRange("50-100", 50, true, 100, false),
+            new DoubleRange("100-500", 100, true, 500, false),
+            new DoubleRange("500+", 500, true, Double.POSITIVE_INFINITY, true));
+
+    private final ProductRepository productRepository;
+    private final ProductMapper productMapper;
+    private final ObjectMapper objectMapper;
+
+    private final Analyzer analyzer = new StandardAnalyzer();
+    private final IndexWriter indexWriter;
+    private final SearcherManager searcherManager;
+    private final Set<Long> changedProductIds = ConcurrentHashMap.newKeySet();
+    private final Map<Long, ProductStockDto> changedStocks = new ConcurrentHashMap<>();
+
+    public ProductSearchIndex(ProductRepository productRepository, ProductMapper productMapper, ObjectMapper objectMapper) {
+        this.productRepository = productRepository;
+        this.productMapper = productMapper;
+        this.objectMapper = objectMapper;
+        try {
+            this.indexWriter = new IndexWriter(new ByteBuffersDirectory(), new IndexWriterConfig(analyzer));
+            this.searcherManager = new SearcherManager(indexWriter, new SearcherFactory() {
+                @Override
+                public IndexSearcher newSearcher(IndexReader reader, IndexReader previousReader) throws IOException {
+                    return new ProductIndexSearcher(reader);
+                }
+            });
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Indexes the whole catalog, reading it from the database in batches.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void rebuild() {
+        try {
+            indexWriter.deleteAll();
+            Long lastId = null;
+            List<Product> batch;
+            int count = 0;
+            do {
+                batch = productRepository.findBy(idGreaterThan(lastId),
+                        query -> query.sortBy(Sort.by("id")).limit(REBUILD_BATCH_SIZE).all());
+                for (Product product : batch) {
+                    indexWriter.updateDocument(idTerm(product.getId()), toDocument(product));
+                }
+                if (!batch.isEmpty()) {
+                    lastId = batch.getLast().getId();
+                    count += batch.size();
+                }
+            } while (batch.size() == REBUILD_BATCH_SIZE);
+            // Prefix and fuzzy queries are expanded per segment, so a single segment keeps them cheap.
+            indexWriter.forceMerge(1);
+            searcherManager.maybeRefreshBlocking();
+            log.info("Indexed {} products for search", count);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Records that a product was created, updated or deleted. Must be called once the change is committed,
+     * since the product is read back from the database before the next search.
+     */
+    public void markChanged(Long productId) {
+        changedProductIds.add(productId);
+    }
+
+    /**
+     * Records the new quantity and inventory status of a product, which are set in its document without reading
+     * it back. Must be called once the change is committed.
+     */
+    public void stockChanged(ProductStockDto stock) {
+        changedStocks.put(stock.getProductId(), stock);
+    }
+
+    /**
+     * Searches the catalog. All the words of the text must match, each either exactly, as a prefix or with
+     * a typo, in the code, name, category or description; exact matches and matches in the code and name
+     * rank higher. A blank text matches every product, so that the filters and facets can be used alone.
+     *
+     * @param text   words to search for
+     * @param filter optional filters on category, inventory status and price range
+     * @param page   zero-based page number
+     * @param size   number of products per page
+     * @return the requested page of products and the category and price facets of all the matches
+     */
+    public ProductSearchResultDto search(String text, ProductFilter filter, int page, int size) {
+        applyPendingChanges();
+        Query query = buildQuery(text, filter);
+        ProductIndexSearcher searcher = (ProductIndexSearcher) acquireSearcher();
+        try {
+            FacetsCollectorManager.FacetsResult result = FacetsCollectorManager.search(searcher, query, (page + 1) * size, new FacetsCollectorManager());
+            ScoreDoc[] hits = result.topDocs().scoreDocs;
+            StoredFields storedFields = searcher.storedFields();
+            List<ProductDto> content = new ArrayList<>(size);
+            for (int i = page * size; i < hits.length; i++) {
+                BytesRef source = storedFields.document(hits[i].doc).getBinaryValue(SOURCE);
+                content.add(objectMapper.readValue(source.bytes, source.offset, source.length, ProductDto.class));
+            }
+            return new ProductSearchResultDto(content, result.topDocs().totalHits.value,
+                    categoryCounts(searcher, result.facetsCollector()), priceRangeCounts(result.facetsCollector()));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            releaseSearcher(searcher);
+        }
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        searcherManager.close();
+        indexWriter.close();
+    }
+
+    private void applyPendingChanges() {
+        if (changedProductIds.isEmpty() && changedStocks.isEmpty()) {
+            return;
+        }
+        synchronized (this) {
+            // Ids marked while the products are being read stay in the set and are applied by the next search.
+            List<Long> productIds = new ArrayList<>();
+            for (Iterator<Long> iterator = changedProductIds.iterator(); iterator.hasNext(); ) {
+                productIds.add(iterator.next());
+                iterator.remove();
+            }
+            List<ProductStockDto> stocks = ProductCatalogSnapshotCache.takeChangedStocks(changedStocks);
+            if (productIds.isEmpty() && stocks.isEmpty()) {
+                return;
+            }
+            Map<Long, Product> products = productIds.isEmpty() ? Map.of() : productRepository.findAllById(productIds).stream()
+                    .collect(Collectors.toMap(Product::getId, Function.identity()));
+            try {
+                for (Long productId : productIds) {
+                    Product product = products.get(productId);
+                    if (product != null) {
+                        indexWriter.updateDocument(idTerm(productId), toDocument(product));
+                    } else {
+                        indexWriter.deleteDocuments(idTerm(productId));
+                    }
+                }
+                // Products read back above already have their latest stock.
+                stocks.removeIf(stock -> productIds.contains(stock.getProductId()));
+                if (!stocks.isEmpty()) {
+                    applyStocks(stocks);
+                }
+                searcherManager.maybeRefreshBlocking();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /**
+     * Re-indexes products with a new stock from the product stored in their document.
+     */
+    private void applyStocks(List<ProductStockDto> stocks) throws IOException {
+        searcherManager.maybeRefreshBlocking();
+        IndexSearcher searcher = acquireSearcher();
+        try {
+            StoredFields storedFields = searcher.storedFields();
+            for (ProductStockDto stock : stocks) {
+                TopDocs hits = searcher.search(new TermQuery(idTerm(stock.getProductId())), 1);
+                if (hits.scoreDocs.length == 0) {
+                    continue;
+                }
+                BytesRef source = storedFields.document(hits.scoreDocs[0].doc).getBinaryValue(SOURCE);
+                byte[] updated = ProductCatalogSnapshotCache.withStock(objectMapper,
+                        Arrays.copyOfRange(source.bytes, source.offset, source.offset + source.length), stock);
+                indexWriter.updateDocument(idTerm(stock.getProductId()),
+                        toDocument(objectMapper.readValue(updated, ProductDto.class), updated));
+            }
+        } finally {
+            releaseSearcher(searcher);
+        }
+    }
+
+    private Document toDocument(Product product) throws IOException {
+        ProductDto dto = productMapper.toDto(product);
+        return toDocument(dto, objectMapper.writeValueAsBytes(dto));
+    }
+
+    private Document toDocument(ProductDto product, byte[] source) {
+        Document document = new Document();
+        document.add(new StringField(ID, String.valueOf(product.getId()), Field.Store.NO));
+        document.add(new TextField(CODE, product.getCode(), Field.Store.NO));
+        document.add(new TextField(NAME, product.getName(), Field.Store.NO));
+        document.add(new TextField(CATEGORY, product.getCategory(), Field.Store.NO));
+        document.add(new TextField(ALL_TEXT, product.getCode(), Field.Store.NO));
+        document.add(new TextField(ALL_TEXT, product.getName(), Field.Store.NO));
+        document.add(new TextField(ALL_TEXT, product.getCategory(), Field.Store.NO));
+        if (product.getDescription() != null) {
+            document.add(new TextField(DESCRIPTION, product.getDescription(), Field.Store.NO));
+            document.add(new TextField(ALL_TEXT, product.getDescription(), Field.Store.NO));
+        }
+        document.add(new StringField(CATEGORY_FACET, product.getCategory(), Field.Store.NO));
+        document.add(new SortedDocValuesField(CATEGORY_FACET, new BytesRef(product.getCategory())));
+        if (product.getInventoryStatus() != null) {
+            document.add(new StringField(INVENTORY_STATUS, product.getInventoryStatus().name(), Field.Store.NO));
+        }
+        document.add(new DoublePoint(PRICE, product.getPrice()));
+        document.add(new DoubleDocValuesField(PRICE, product.getPrice()));
+        document.add(new StoredField(SOURCE, source));
+        return document;
+    }
+
+    private Query buildQuery(String text, ProductFilter filter) {
+        BooleanQuery.Builder query = new BooleanQuery.Builder();
+        List<String> terms = analyze(text);
+        if (terms.isEmpty()) {
+            query.add(new MatchAllDocsQuery(), BooleanClause.Occur.MUST);
+        }
+        for (String term : terms) {
+            query.add(termQuery(term), BooleanClause.Occur.MUST);
+        }
+
+        if (filter != null) {
+            if (filter.getCategory() != null) {
+                query.add(new TermQuery(new Term(CATEGORY_FACET, filter.getCategory())), BooleanClause.Occur.FILTER);
+            }
+            if (filter.getInventoryStatus() != null) {
+                query.add(new TermQuery(new Term(INVENTORY_STATUS, filter.getInventoryStatus().name())), BooleanClause.Occur.FILTER);
+            }
+            if (filter.getMinPrice() != null || filter.getMaxPrice() != null) {
+                double min = filter.getMinPrice() != null ? filter.getMinPrice() : Double.NEGATIVE_INFINITY;
+                double max = filter.getMaxPrice() != null ? filter.getMaxPrice() : Double.POSITIVE_INFINITY;
+                query.add(DoublePoint.newRangeQuery(PRICE, min, max), BooleanClause.Occur.FILTER);
+            }
+        }
+        return query.build();
+    }
+
+    /**
+     * Matches one word in any of the searched fields, exactly, as a prefix or with up to one typo
+     * (two for long words). Exact matches are weighted by field; prefixes and typos are looked up in a
+     * single field holding all the searched text, which keeps the number of clauses, and so the cost of
+     * a query, low on large catalogs.
+     */
+    private static Query termQuery(String term) {
+        BooleanQuery.Builder anyField = new BooleanQuery.Builder();
+        FIELD_BOOSTS.forEach((field, boost) ->
+                anyField.add(new BoostQuery(new TermQuery(new Term(field, term)), boost), BooleanClause.Occur.SHOULD));
+        if (term.length() >= MIN_PREFIX_LENGTH) {
+            anyField.add(new BoostQuery(new PrefixQuery(new Term(ALL_TEXT, term)), PREFIX_WEIGHT), BooleanClause.Occur.SHOULD);
+        }
+        int maxEdits = term.length() >= 8 ? 2 : term.length() >= 4 ? 1 : 0;
+        if (maxEdits > 0) {
+            anyField.add(new BoostQuery(new FuzzyQuery(new Term(ALL_TEXT, term), maxEdits, 1), FUZZY_WEIGHT), BooleanClause.Occur.SHOULD);
+        }
+        return anyField.build();
+    }
+
+    private List<String> analyze(String text) {
+        if (text == null || text.isBlank()) {
+            return List.of();
+        }
+        List<String> terms = new ArrayList<>();
+        try (TokenStream tokens = analyzer.tokenStream(NAME, text)) {
+            CharTermAttribute term = tokens.addAttribute(CharTermAttribute.class);
+            tokens.reset();
+            while (tokens.incrementToken()) {
+                terms.add(term.toString());
+            }
+            tokens.end();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return terms;
+    }
+
+    private static Map<String, Long> categoryCounts(ProductIndexSearcher searcher, FacetsCollector facetsCollector) throws IOException {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        if (searcher.categoryState == null) {
+            return counts;
+        }
+        FacetResult result = new StringValueFacetCounts(searcher.categoryState, facetsCollector).getTopChildren(Integer.MAX_VALUE, CATEGORY_FACET);
+        if (result != null) {
+            for (LabelAndValue labelAndValue : result.labelValues) {
+                counts.put(labelAndValue.label, labelAndValue.value.longValue());
+            }
+        }
+        return counts;
+    }
+
+    private static List<PriceRangeFacetDto> priceRangeCounts(FacetsCollector facetsCollector) throws IOException {
+        FacetResult result = new DoubleRangeFacetCounts(PRICE, facetsCollector, PRICE_RANGES.toArray(DoubleRange[]::new))
+                .getAllChildren(PRICE);
+        List<PriceRangeFacetDto> counts = new ArrayList<>(PRICE_RANGES.size());
+        for (int i = 0; i < PRICE_RANGES.size(); i++) {
+            DoubleRange range = PRICE_RANGES.get(i);
+            Double max = Double.isInfinite(range.max) ? null : range.max;
+            counts.add(new PriceRangeFacetDto(range.label, range.min, max, result.labelValues[i].value.longValue()));
+        }
+        return counts;
+    }
+
+    private IndexSearcher acquireSearcher() {
+        try {
+            return searcherManager.acquire();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void releaseSearcher(IndexSearcher searcher) {
+        try {
+            searcherManager.release(searcher);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static Term idTerm(Long productId) {
+        return new Term(ID, String.valueOf(productId));
+    }
+
+    /**
+     * Searcher that also holds the category doc values ordinals of its reader, which the category facet
+     * needs and which would be too costly to compute on each search.
+     */
+    private static final class ProductIndexSearcher extends IndexSearcher {
+
+        private final StringDocValuesReaderState categoryState;
+
+        private ProductIndexSearcher(IndexReader reader) throws IOException {
+            super(reader);
+            this.categoryState = reader.numDocs() > 0 ? new StringDocValuesReaderState(reader, CATEGORY_FACET) : null;
+        }
+    }
+}
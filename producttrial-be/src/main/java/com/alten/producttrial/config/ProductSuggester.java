@@ -0,0 +1,246 @@
+package com.alten.producttrial.config;
+
+import com.alten.producttrial.dto.ProductSuggestionDto;
+import com.alten.producttrial.entity.Product;
+import com.alten.producttrial.repository.ProductRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.search.suggest.InputIterator;
+import org.apache.lucene.search.suggest.Lookup;
+import org.apache.lucene.search.suggest.analyzing.AnalyzingSuggester;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.apache.lucene.util.BytesRef;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static com.alten.producttrial.repository.ProductSpecifications.idGreaterThan;
+
+/**
+ * Typeahead suggestions on product names and codes, ranked by rating.
+ * <p>
+ * The suggestions are looked up in a Lucene FST built from the whole catalog, in which each product is
+ * reachable from its name, its code and every later word of its name, and carries its suggestion as payload.
+ * An FST cannot be modified, so product writes only mark it as stale and it is rebuilt by the next lookup;
+ * meanwhile the other lookups keep using the previous one. The size of the FST is published as the
+ * {@code product.suggest.memory} gauge, next to the configured {@code product.suggest.memory.budget}.
+ */
+@Component
+public class ProductSuggester {
+    private static final Logger log = LoggerFactory.getLogger(ProductSuggester.class);
+
+    private static final int REBUILD_BATCH_SIZE = 1000;
+    private static final int MAX_NAME_SUFFIXES = 3;
+    // Reserved by the suggester to separate the key from its payload.
+    private static final char UNIT_SEPARATOR = '\u001F';
+
+    private final ProductRepository productRepository;
+    private final ObjectMapper objectMapper;
+    private final DataSize memoryBudget;
+
+    private final Analyzer analyzer = new StandardAnalyzer();
+    private final ReentrantLock rebuildLock = new ReentrantLock();
+    private final AtomicBoolean stale = new AtomicBoolean(true);
+    private volatile AnalyzingSuggester suggester;
+
+    public ProductSuggester(ProductRepository productRepository,
+                            ObjectMapper objectMapper,
+                            MeterRegistry meterRegistry,
+                            @Value("${product.suggest.memory-budget:64MB}") DataSize memoryBudget) {
+        this.productRepository = productRepository;
+        this.objectMapper = objectMapper;
+        this.memoryBudget = memoryBudget;
+
+        Gauge.builder("product.suggest.memory", this, ProductSuggester::getMemoryUsed)
+                .description("Memory used by the product suggestions FST")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("product.suggest.memory.budget", memoryBudget, DataSize::toBytes)
+                .description("Memory budget of the product suggestions FST")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("product.suggest.entries", this, ProductSuggester::getEntryCount)
+                .description("Number of keys in the product suggestions FST")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Records that the catalog changed, so that the suggestions are rebuilt by the next lookup.
+     * Must be called once the change is committed.
+     */
+    public void invalidate() {
+        stale.set(true);
+    }
+
+    /**
+     * Returns the products whose name, code or a word of the name starts with the given prefix, best rated first.
+     *
+     * @param prefix what the user typed so far
+     * @param limit  maximum number of suggestions
+     * @return at most {@code limit} suggestions, each product at most once
+     */
+    public List<ProductSuggestionDto> suggest(String prefix, int limit) {
+        if (stale.get()) {
+            rebuild();
+        }
+        try {
+            // A product can match on several keys, so more results than needed are requested and deduplicated.
+            List<Lookup.LookupResult> results = suggester.lookup(prefix, false, limit * (MAX_NAME_SUFFIXES + 2));
+            Map<Long, ProductSuggestionDto> suggestions = new LinkedHashMap<>();
+            for (Lookup.LookupResult result : results) {
+                ProductSuggestionDto suggestion = objectMapper.readValue(result.payload.bytes, result.payload.offset,
+                        result.payload.length, ProductSuggestionDto.class);
+                suggestions.putIfAbsent(suggestion.getId(), suggestion);
+                if (suggestions.size() == limit) {
+                    break;
+                }
+            }
+            return List.copyOf(suggestions.values());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public long getMemoryUsed() {
+        AnalyzingSuggester current = suggester;
+        return current != null ? current.ramBytesUsed() : 0;
+    }
+
+    public long getEntryCount() {
+        AnalyzingSuggester current = suggester;
+        return current != null ? current.getCount() : 0;
+    }
+
+    private void rebuild() {
+        // Only the first lookup waits for the FST; later ones keep using the previous FST while it is rebuilt.
+        if (suggester == null) {
+            rebuildLock.lock();
+        } else if (!rebuildLock.tryLock()) {
+            return;
+        }
+        try {
+            if (stale.getAndSet(false)) {
+                suggester = build();
+            }
+        } catch (IOException e) {
+            stale.set(true);
+            throw new UncheckedIOException(e);
+        } catch (RuntimeException e) {
+            stale.set(true);
+            throw e;
+        } finally {
+            rebuildLock.unlock();
+        }
+    }
+
+    private AnalyzingSuggester build() throws IOException {
+        AnalyzingSuggester built = new AnalyzingSuggester(new ByteBuffersDirectory(), "suggest", analyzer);
+        built.build(new ProductKeyIterator());
+        if (built.ramBytesUsed() > memoryBudget.toBytes()) {
+            log.warn("Product suggestions use {} bytes, over their budget of {}", built.ramBytesUsed(), memoryBudget);
+        }
+        return built;
+    }
+
+    /**
+     * Keys of the whole catalog, read from the database in batches: for each product its name, its code and
+     * the suffixes of its name starting at its second to fourth words.
+     */
+    private class ProductKeyIterator implements InputIterator {
+
+        private final Deque<String> keys = new ArrayDeque<>();
+        private Iterator<Product> batch = Collections.emptyIterator();
+        private boolean lastBatch;
+        private Long lastId;
+        private Product product;
+        private BytesRef payload;
+
+        @Override
+        public BytesRef next() throws IOException {
+            while (keys.isEmpty()) {
+                if (!batch.hasNext() && !nextBatch()) {
+                    return null;
+                }
+                product = batch.next();
+                payload = new BytesRef(objectMapper.writeValueAsBytes(
+                        new ProductSuggestionDto(product.getId(), product.getCode(), product.getName(), product.getRating())));
+                addKeys(product);
+            }
+            return new BytesRef(keys.poll());
+        }
+
+        private boolean nextBatch() {
+            if (lastBatch) {
+                return false;
+            }
+            List<Product> products = productRepository.findBy(idGreaterThan(lastId),
+                    query -> query.sortBy(Sort.by("id")).limit(REBUILD_BATCH_SIZE).all());
+            lastBatch = products.size() < REBUILD_BATCH_SIZE;
+            if (products.isEmpty()) {
+                return false;
+            }
+            lastId = products.getLast().getId();
+            batch = products.iterator();
+            return true;
+        }
+
+        private void addKeys(Product product) {
+            String name = sanitize(product.getName());
+            keys.add(name);
+            keys.add(sanitize(product.getCode()));
+            int wordStart = 0;
+            for (int i = 0; i < MAX_NAME_SUFFIXES; i++) {
+                wordStart = name.indexOf(' ', wordStart);
+                if (wordStart < 0) {
+                    break;
+                }
+                wordStart++;
+                if (wordStart < name.length() && name.charAt(wordStart) != ' ') {
+                    keys.add(name.substring(wordStart));
+                }
+            }
+        }
+
+        private static String sanitize(String key) {
+            return key.replace(UNIT_SEPARATOR, ' ');
+        }
+
+        @Override
+        public long weight() {
+            // The suggester refuses negative weights and keeps them as ints, whatever rating a product was stored with.
+            return product.getRating() != null ? Math.clamp(Math.round(product.getRating() * 100), 0, Integer.MAX_VALUE) : 0;
+        }
+
+        @Override
+        public BytesRef payload() {
+            return payload;
+        }
+
+        @Override
+        public boolean hasPayloads() {
+            return true;
+        }
+
+        @Override
+        public Set<BytesRef> contexts() {
+            return null;
+        }
+
+        @Override
+        public boolean hasContexts() {
+            return false;
+        }
+    }
+}
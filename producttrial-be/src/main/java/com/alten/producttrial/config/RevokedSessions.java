@@ -0,0 +1,83 @@
+package com.alten.producttrial.config;
+
+import com.alten.producttrial.repository.RefreshTokenRepository;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tells whether the session of an access token was revoked, without a database query for the sessions that were not.
+ * <p>
+ * The sessions revoked within the lifetime of an access token are held in a {@link BloomFilter}, rebuilt from the
+ * refresh tokens every {@code jwt.revocation.rebuild-interval} and completed at once by the revocations made
+ * here. A session the filter does not contain cannot have been revoked; one it contains is looked up in the
+ * database, to rule out a false positive. Refresh tokens expired for longer than an access token lives are
+ * deleted by the same job.
+ */
+@Component
+public class RevokedSessions {
+
+    private final RefreshTokenRepository refreshTokenRepository;
+    private final Duration accessTokenLifetime;
+    private final double falsePositiveRate;
+    private final int minCapacity;
+
+    private volatile BloomFilter filter;
+    // Revocations made since the current filter started to be rebuilt, which the database query may have missed.
+    private final List<String> recentRevocations = new ArrayList<>();
+
+    public RevokedSessions(RefreshTokenRepository refreshTokenRepository,
+                           @Value("${jwt.expiration}") long accessTokenLifetimeMillis,
+                           @Value("${jwt.revocation.false-positive-rate:0.01}") double falsePositiveRate,
+                           @Value("${jwt.revocation.min-capacity:1024}") int minCapacity) {
+        this.refreshTokenRepository = refreshTokenRepository;
+        this.accessTokenLifetime = Duration.ofMillis(accessTokenLifetimeMillis);
+        this.falsePositiveRate = falsePositiveRate;
+        this.minCapacity = minCapacity;
+        this.filter = new BloomFilter(minCapacity, falsePositiveRate);
+    }
+
+    @PostConstruct
+    public void init() {
+        rebuild();
+    }
+
+    /**
+     * Records a session whose refresh tokens have just been revoked in the database.
+     */
+    public synchronized void add(String sessionId) {
+        filter.put(sessionId);
+        recentRevocations.add(sessionId);
+    }
+
+    /**
+     * @return whether the session was revoked; {@code false} for tokens issued without a session
+     */
+    public boolean isRevoked(String sessionId) {
+        return sessionId != null
+                && filter.mightContain(sessionId)
+                && refreshTokenRepository.existsBySessionIdAndRevokedAtIsNotNull(sessionId);
+    }
+
+    @Scheduled(fixedDelayString = "${jwt.revocation.rebuild-interval:1m}", initialDelayString = "${jwt.revocation.rebuild-interval:1m}")
+    public void rebuild() {
+        ZonedDateTime since = ZonedDateTime.now().minus(accessTokenLifetime);
+        refreshTokenRepository.deleteExpiredBefore(since);
+        synchronized (this) {
+            recentRevocations.clear();
+        }
+        List<String> revoked = refreshTokenRepository.findSessionIdsRevokedSince(since);
+        BloomFilter rebuilt = new BloomFilter(Math.max(minCapacity, revoked.size() * 2), falsePositiveRate);
+        revoked.forEach(rebuilt::put);
+        synchronized (this) {
+            recentRevocations.forEach(rebuilt::put);
+            filter = rebuilt;
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.alten.producttrial.config;
+
+import com.alten.producttrial.entity.User;
+import com.alten.producttrial.repository.UserRepository;
+import jakarta.annotation.PostConstruct;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Current token version of the users, against which the version claim of access tokens is checked.
+ * <p>
+ * The version of a user is incremented when their roles change, so that the tokens carrying the former roles are
+ * rejected while the roles of the other tokens are trusted as signed. Only the users whose version is not zero are
+ * held, which are the users whose roles have ever changed: the check costs no database access. Deleted users are
+ * kept until the next start, so that their tokens are rejected too; as user ids are not reused, an account
+ * created again with the same email does not accept them either.
+ * <p>
+ * The versions live in this instance only and are kept up to date by {@link UserIdentityCacheListener}.
+ */
+@Component
+public class TokenVersions {
+    private static final int DELETED = Integer.MAX_VALUE;
+
+    private final UserRepository userRepository;
+
+    private final Map<Long, Integer> versions = new ConcurrentHashMap<>();
+
+    public TokenVersions(UserRepository userRepository) {
+        this.userRepository = userRepository;
+    }
+
+    @PostConstruct
+    public void init() {
+        userRepository.findByTokenVersionGreaterThan(0).forEach(this::update);
+    }
+
+    /**
+     * @return whether a token of the given version is still valid for the user
+     */
+    public boolean isCurrent(Long userId, int tokenVersion) {
+        return tokenVersion >= versions.getOrDefault(userId, 0);
+    }
+
+    void update(User user) {
+        if (user.getTokenVersion() > 0) {
+            versions.put(user.getId(), user.getTokenVersion());
+        } else {
+            versions.remove(user.getId());
+        }
+    }
+
+    void remove(User user) {
+        versions.put(user.getId(), DELETED);
+    }
+}
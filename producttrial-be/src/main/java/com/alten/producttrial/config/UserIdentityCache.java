@@ -0,0 +1,68 @@
+package com.alten.producttrial.config;
+
+import com.alten.producttrial.repository.UserRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Bounded cache of {@link UserPrincipal} keyed by email. Entries expire after a fixed TTL and must be
+ * invalidated explicitly whenever an account is created, changed or removed.
+ * Unknown emails are not cached, so a newly created account is visible immediately.
+ * Invalidations made in a transaction are applied once it commits, so that an identity loaded meanwhile from the
+ * previous row, such as the former roles and token version, cannot be cached for the whole TTL.
+ */
+@Component
+public class UserIdentityCache {
+    private final UserRepository userRepository;
+
+    private final Cache<String, UserPrincipal> cache;
+
+    public UserIdentityCache(UserRepository userRepository,
+                             @Value("${user.identity-cache.max-size:10000}") long maxSize,
+                             @Value("${user.identity-cache.ttl:5m}") Duration ttl) {
+        this.userRepository = userRepository;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .build();
+    }
+
+    public Optional<UserPrincipal> findByEmail(String email) {
+        UserPrincipal principal = cache.getIfPresent(email);
+        if (principal != null) {
+            return Optional.of(principal);
+        }
+        Optional<UserPrincipal> loaded = userRepository.findByEmail(email).map(UserPrincipal::of);
+        loaded.ifPresent(p -> cache.put(email, p));
+        return loaded;
+    }
+
+    public void invalidate(String email) {
+        afterCommit(() -> cache.invalidate(email));
+    }
+
+    public void invalidateAll() {
+        afterCommit(cache::invalidateAll);
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+}
@@ -0,0 +1,40 @@
+package com.alten.producttrial.config;
+
+import com.alten.producttrial.entity.User;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import lombok.AllArgsConstructor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+
+/**
+ * Evicts a user from the {@link UserIdentityCache} and records their token version in {@link TokenVersions}
+ * whenever the account is created, changed or deleted, whichever code path performs the write. Both are looked up
+ * lazily because the listener is instantiated while the entity manager factory, which they depend on, is being built.
+ */
+@Component
+@AllArgsConstructor
+public class UserIdentityCacheListener {
+
+    private final ObjectProvider<UserIdentityCache> userIdentityCache;
+
+    private final ObjectProvider<TokenVersions> tokenVersions;
+
+    @PostPersist
+    @PostUpdate
+    public void evict(User user) {
+        if (user.getEmail() != null) {
+            userIdentityCache.getObject().invalidate(user.getEmail());
+            tokenVersions.getObject().update(user);
+        }
+    }
+
+    @PostRemove
+    public void remove(User user) {
+        if (user.getEmail() != null) {
+            userIdentityCache.getObject().invalidate(user.getEmail());
+            tokenVersions.getObject().remove(user);
+        }
+    }
+}
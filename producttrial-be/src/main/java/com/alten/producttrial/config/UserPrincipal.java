@@ -0,0 +1,43 @@
+package com.alten.producttrial.config;
+
+import com.alten.producttrial.entity.User;
+import com.alten.producttrial.enums.Role;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.security.Principal;
+import java.util.List;
+
+/**
+ * Identity of the authenticated user, read by {@link JwtAuthenticationFilter} from the claims of the access token
+ * and carried in the security context so that services do not need to look the user up.
+ */
+@Getter
+@ToString
+@AllArgsConstructor
+public class UserPrincipal implements Principal {
+
+    private final Long id;
+
+    private final String email;
+
+    // Authorities, e.g. ROLE_ADMIN.
+    private final List<String> roles;
+
+    private final int tokenVersion;
+
+    public UserPrincipal(Long id, String email, List<String> roles) {
+        this(id, email, roles, 0);
+    }
+
+    public static UserPrincipal of(User user) {
+        List<String> roles = user.getRoles().stream().sorted().map(Role::authority).toList();
+        return new UserPrincipal(user.getId(), user.getEmail(), roles, user.getTokenVersion());
+    }
+
+    @Override
+    public String getName() {
+        return email;
+    }
+}
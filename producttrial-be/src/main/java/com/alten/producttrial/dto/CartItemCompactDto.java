@@ -0,0 +1,24 @@
+package com.alten.producttrial.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Cart line with only what a cart list displays, instead of the whole {@link ProductDto} of {@link CartItemDto}.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CartItemCompactDto {
+
+    private String id;
+
+    private Long productId;
+
+    private String name;
+
+    private Double price;
+
+    private Integer quantity;
+}
@@ -3,6 +3,8 @@ package com.alten.producttrial.dto;
 
 import lombok.*;
 
+import java.time.ZonedDateTime;
+
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -10,4 +12,5 @@ public class CartItemDto {
     private String id;
     private ProductDto product;
     private Integer quantity;
+    private ZonedDateTime reservedUntil;
 }
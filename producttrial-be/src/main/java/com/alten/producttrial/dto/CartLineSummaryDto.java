@@ -0,0 +1,32 @@
+package com.alten.producttrial.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CartLineSummaryDto {
+
+    private Long productId;
+
+    private String name;
+
+    private BigDecimal price;
+
+    private Integer quantity;
+
+    private BigDecimal lineTotal;
+
+    /**
+     * Builds a line from the columns selected by {@code CartItemRepository.findLineSummariesByUserId}. The price
+     * is converted from its shortest decimal representation, so that totals are exact sums of the displayed prices.
+     */
+    public CartLineSummaryDto(Long productId, String name, Double price, Integer quantity) {
+        this(productId, name, BigDecimal.valueOf(price), quantity,
+                BigDecimal.valueOf(price).multiply(BigDecimal.valueOf(quantity)));
+    }
+}
@@ -0,0 +1,17 @@
+package com.alten.producttrial.dto;
+
+import lombok.*;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class CartOperationDto {
+
+    private Long productId;
+
+    /**
+     * Quantity to add to the cart line, or to remove from it when negative.
+     */
+    private Integer delta;
+}
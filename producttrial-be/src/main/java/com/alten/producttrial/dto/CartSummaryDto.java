@@ -0,0 +1,23 @@
+package com.alten.producttrial.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CartSummaryDto {
+
+    private List<CartLineSummaryDto> lines;
+
+    /**
+     * Sum of the quantities of all the lines.
+     */
+    private int itemCount;
+
+    private BigDecimal total;
+}
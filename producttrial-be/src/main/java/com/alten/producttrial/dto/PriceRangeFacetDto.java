@@ -0,0 +1,23 @@
+package com.alten.producttrial.dto;
+
+import lombok.*;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PriceRangeFacetDto {
+
+    private String label;
+
+    /**
+     * Inclusive lower bound.
+     */
+    private Double min;
+
+    /**
+     * Exclusive upper bound, or {@code null} for the last, open-ended range.
+     */
+    private Double max;
+
+    private long count;
+}
@@ -0,0 +1,23 @@
+package com.alten.producttrial.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductBulkDeleteRequest {
+
+    /**
+     * Products to delete, when they are not selected by {@link #filter}.
+     */
+    private List<Long> ids;
+
+    /**
+     * Criteria selecting the products to delete, when they are not listed in {@link #ids}.
+     */
+    private ProductFilter filter;
+}
@@ -0,0 +1,16 @@
+package com.alten.producttrial.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductBulkResultDto {
+
+    /**
+     * Number of products updated or deleted. Listed ids that match no product are not counted.
+     */
+    private int affected;
+}
@@ -0,0 +1,34 @@
+package com.alten.producttrial.dto;
+
+import com.alten.producttrial.enums.InventoryStatus;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductBulkUpdateRequest {
+
+    /**
+     * Products to update, when they are not selected by {@link #filter}.
+     */
+    private List<Long> ids;
+
+    /**
+     * Criteria selecting the products to update, when they are not listed in {@link #ids}.
+     */
+    private ProductFilter filter;
+
+    /**
+     * New price of the products, or {@code null} to keep their price.
+     */
+    private Double price;
+
+    /**
+     * New inventory status of the products, or {@code null} to keep their status.
+     */
+    private InventoryStatus inventoryStatus;
+}
@@ -0,0 +1,26 @@
+package com.alten.producttrial.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * The whole product catalog serialized as a JSON array, in plain and gzip-compressed form,
+ * with the entity tag of each representation.
+ */
+@Getter
+@AllArgsConstructor
+public class ProductCatalogSnapshot {
+
+    /**
+     * Incremented each time the snapshot is rebuilt.
+     */
+    private final long version;
+
+    private final String etag;
+
+    private final byte[] json;
+
+    private final String gzipEtag;
+
+    private final byte[] gzip;
+}
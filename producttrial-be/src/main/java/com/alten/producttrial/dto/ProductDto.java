@@ -1,6 +1,7 @@
 package com.alten.producttrial.dto;
 
 import com.alten.producttrial.enums.InventoryStatus;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.*;
 
 import java.time.ZonedDateTime;
@@ -11,6 +12,11 @@ import java.time.ZonedDateTime;
 @Builder
 public class ProductDto {
 
+    /**
+     * Highest rating of a product; ratings go from 0 to this value.
+     */
+    public static final double MAX_RATING = 5;
+
     private Long id;
 
     private String code;
@@ -33,9 +39,18 @@ public class ProductDto {
 
     private InventoryStatus inventoryStatus;
 
+    /**
+     * Optional, from 0 to {@link #MAX_RATING}.
+     */
     private Double rating;
 
     private ZonedDateTime createdAt;
 
     private ZonedDateTime updatedAt;
+
+    /**
+     * Version of the product, sent as the {@code ETag} of the product rather than in its body.
+     */
+    @JsonIgnore
+    private Long version;
 }
\ No newline at end of file
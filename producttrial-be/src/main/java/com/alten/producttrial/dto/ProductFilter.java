@@ -0,0 +1,19 @@
+package com.alten.producttrial.dto;
+
+import com.alten.producttrial.enums.InventoryStatus;
+import lombok.*;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ProductFilter {
+
+    private String category;
+
+    private InventoryStatus inventoryStatus;
+
+    private Double minPrice;
+
+    private Double maxPrice;
+}
@@ -0,0 +1,18 @@
+package com.alten.producttrial.dto;
+
+import lombok.*;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductImportErrorDto {
+
+    /**
+     * One-based number of the rejected row, not counting the CSV header line nor blank NDJSON lines.
+     */
+    private long row;
+
+    private String code;
+
+    private String message;
+}
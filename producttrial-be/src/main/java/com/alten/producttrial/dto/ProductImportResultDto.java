@@ -0,0 +1,33 @@
+package com.alten.producttrial.dto;
+
+import com.alten.producttrial.enums.ProductImportStatus;
+import lombok.*;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductImportResultDto {
+
+    /**
+     * Identifier to pass again to resume the import if it is interrupted.
+     */
+    private String importId;
+
+    private ProductImportStatus status;
+
+    /**
+     * Number of rows whose outcome is committed, over all the attempts of the import.
+     */
+    private long rowsRead;
+
+    private long rowsImported;
+
+    private long rowsRejected;
+
+    /**
+     * Rejected rows of this attempt, up to the first {@code ProductImportService.MAX_REPORTED_ERRORS}.
+     */
+    private List<ProductImportErrorDto> errors;
+}
@@ -0,0 +1,19 @@
+package com.alten.producttrial.dto;
+
+import lombok.*;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductPageDto {
+
+    private List<ProductDto> content;
+
+    /**
+     * Opaque continuation token to pass as {@code cursor} to fetch the next page,
+     * or {@code null} when the last page has been reached.
+     */
+    private String nextCursor;
+}
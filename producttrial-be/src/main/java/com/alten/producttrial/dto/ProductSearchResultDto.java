@@ -0,0 +1,29 @@
+package com.alten.producttrial.dto;
+
+import lombok.*;
+
+import java.util.List;
+import java.util.Map;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductSearchResultDto {
+
+    /**
+     * Requested page of matching products, best matches first.
+     */
+    private List<ProductDto> content;
+
+    private long totalHits;
+
+    /**
+     * Number of matching products per category.
+     */
+    private Map<String, Long> categories;
+
+    /**
+     * Number of matching products per price range.
+     */
+    private List<PriceRangeFacetDto> priceRanges;
+}
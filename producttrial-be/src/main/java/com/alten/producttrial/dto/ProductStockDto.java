@@ -0,0 +1,21 @@
+package com.alten.producttrial.dto;
+
+import com.alten.producttrial.enums.InventoryStatus;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Stock level of a product, as written by the stock reconciliation.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductStockDto {
+
+    private Long productId;
+
+    private Integer quantity;
+
+    private InventoryStatus inventoryStatus;
+}
@@ -0,0 +1,17 @@
+package com.alten.producttrial.dto;
+
+import lombok.*;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductSuggestionDto {
+
+    private Long id;
+
+    private String code;
+
+    private String name;
+
+    private Double rating;
+}
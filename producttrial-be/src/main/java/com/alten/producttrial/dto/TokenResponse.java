@@ -7,4 +7,9 @@ import lombok.*;
 @AllArgsConstructor
 public class TokenResponse {
     private String token;
+    private String refreshToken;
+    /**
+     * Lifetime of the access token, in seconds.
+     */
+    private long expiresIn;
 }
@@ -0,0 +1,13 @@
+package com.alten.producttrial.dto;
+
+import com.alten.producttrial.enums.Role;
+import lombok.*;
+
+import java.util.Set;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserRolesRequest {
+    private Set<Role> roles;
+}
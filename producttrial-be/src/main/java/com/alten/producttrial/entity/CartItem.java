@@ -3,7 +3,11 @@ package com.alten.producttrial.entity;
 import jakarta.persistence.*;
 import lombok.*;
 
+import java.time.ZonedDateTime;
+
 @Entity
+@Table(uniqueConstraints = @UniqueConstraint(name = "uk_cart_item_user_product", columnNames = {"user_id", "product_id"}),
+        indexes = @Index(name = "idx_cart_item_reserved_until", columnList = "reserved_until"))
 @Getter
 @Setter
 @NoArgsConstructor
@@ -24,4 +28,18 @@ public class CartItem {
 
     @Column(nullable = false)
     private int quantity;
+
+    /**
+     * Checked when a line read earlier in a transaction is written back, such as by a cart batch. The single-statement
+     * quantity updates of {@code CartItemRepository} increment it without checking it, since they cannot lose an update.
+     */
+    @Version
+    private Long version;
+
+    /**
+     * End of the hold on the stock of this line, pushed back by every change of its quantity. Expired lines are
+     * removed from the cart and their quantity returned to stock; lines without a hold never expire.
+     */
+    @Column(name = "reserved_until")
+    private ZonedDateTime reservedUntil;
 }
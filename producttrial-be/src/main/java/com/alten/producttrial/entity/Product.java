@@ -1,13 +1,33 @@
 package com.alten.producttrial.entity;
 
+import com.alten.producttrial.config.HibernateCacheConfig;
+import com.alten.producttrial.config.ProductChangeListener;
 import com.alten.producttrial.enums.InventoryStatus;
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.CacheLayout;
+import org.hibernate.annotations.DynamicUpdate;
+import org.hibernate.annotations.QueryCacheLayout;
 
 import java.time.ZonedDateTime;
 
 @Entity
-@Table(name = "products")
+@Table(name = "products", indexes = {
+        @Index(name = "idx_products_category_id", columnList = "category, id"),
+        @Index(name = "idx_products_inventory_status_id", columnList = "inventory_status, id"),
+        @Index(name = "idx_products_price", columnList = "price")
+})
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = HibernateCacheConfig.PRODUCT_REGION)
+// Cached query results hold the full rows, so a result never has to be completed row by row
+// when some of its products have been evicted from the entity region.
+@QueryCacheLayout(layout = CacheLayout.FULL)
+@EntityListeners(ProductChangeListener.class)
+// Updates only write the columns they change, so that an edit, which changes the managed product in its
+// transaction, never writes back a quantity that the stock reconciliation has changed since the product was read.
+@DynamicUpdate
 @Getter
 @Setter
 @NoArgsConstructor
@@ -35,9 +55,20 @@ public class Product {
     @Column(nullable = false)
     private Double price;
 
+    /**
+     * Quantity available to sell: the stock less {@link #heldQuantity}.
+     */
     @Column(nullable = false)
     private Integer quantity;
 
+    /**
+     * Quantity held by cart lines and already subtracted from {@link #quantity}, so that writing a new stock
+     * level, as an import does, keeps the holds. Only written by the stock reconciliation.
+     */
+    @Column(name = "held_quantity", nullable = false, updatable = false)
+    @Builder.Default
+    private Integer heldQuantity = 0;
+
     private String internalReference;
 
     private Long shellId;
@@ -53,6 +84,14 @@ public class Product {
     @Column(name = "updated_at")
     private ZonedDateTime updatedAt;
 
+    /**
+     * Incremented by every update, so that an update based on an outdated copy of the product fails instead of
+     * overwriting a concurrent one. The JDBC bulk writes increment it too, except the stock reconciliation, whose
+     * changes to the quantity and the inventory status do not conflict with an edit.
+     */
+    @Version
+    private Long version;
+
     @PreUpdate
     public void onUpdate() {
         this.updatedAt = ZonedDateTime.now();
@@ -0,0 +1,44 @@
+package com.alten.producttrial.entity;
+
+import com.alten.producttrial.enums.ProductImportStatus;
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.ZonedDateTime;
+
+/**
+ * Checkpoint of a bulk product import. It is updated in the same transaction as each batch of products,
+ * so {@code rowsRead} is always the number of rows whose outcome is committed, and a resumed import
+ * skips exactly those rows.
+ */
+@Entity
+@Table(name = "product_imports")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ProductImport {
+
+    @Id
+    private String id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private ProductImportStatus status;
+
+    @Column(nullable = false)
+    private long rowsRead;
+
+    @Column(nullable = false)
+    private long rowsImported;
+
+    @Column(nullable = false)
+    private long rowsRejected;
+
+    @Column(name = "created_at", nullable = false)
+    private ZonedDateTime createdAt;
+
+    @Column(name = "updated_at")
+    private ZonedDateTime updatedAt;
+}
@@ -0,0 +1,49 @@
+package com.alten.producttrial.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.ZonedDateTime;
+
+/**
+ * A refresh token handed out at login or by a previous refresh. Only the SHA-256 digest of the token is stored.
+ * Every refresh token of a login shares its {@code sessionId}, which access tokens carry as their {@code sid} claim,
+ * so that revoking the session rejects all of them.
+ */
+@Entity
+@Table(name = "refresh_tokens", indexes = {
+        @Index(name = "idx_refresh_tokens_session_id", columnList = "session_id"),
+        @Index(name = "idx_refresh_tokens_revoked_at", columnList = "revoked_at")
+})
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class RefreshToken {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.UUID)
+    private String id;
+
+    @Column(name = "token_hash", nullable = false, unique = true)
+    private String tokenHash;
+
+    @Column(name = "session_id", nullable = false)
+    private String sessionId;
+
+    @Column(name = "user_email", nullable = false)
+    private String userEmail;
+
+    @Column(name = "expires_at", nullable = false)
+    private ZonedDateTime expiresAt;
+
+    /**
+     * Set when the token is exchanged; a token is only exchanged once, a second use revokes the session.
+     */
+    @Column(name = "used_at")
+    private ZonedDateTime usedAt;
+
+    @Column(name = "revoked_at")
+    private ZonedDateTime revokedAt;
+}
@@ -0,0 +1,31 @@
+package com.alten.producttrial.entity;
+
+import com.alten.producttrial.enums.Role;
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Stores the roles of a user as a comma-separated list in a single column, so that loading a user takes no join.
+ */
+@Converter
+public class RolesConverter implements AttributeConverter<Set<Role>, String> {
+
+    @Override
+    public String convertToDatabaseColumn(Set<Role> roles) {
+        return roles == null ? "" : roles.stream().map(Role::name).sorted().collect(Collectors.joining(","));
+    }
+
+    @Override
+    public Set<Role> convertToEntityAttribute(String column) {
+        Set<Role> roles = EnumSet.noneOf(Role.class);
+        if (column != null && !column.isBlank()) {
+            Arrays.stream(column.split(",")).map(Role::valueOf).forEach(roles::add);
+        }
+        return roles;
+    }
+}
@@ -1,9 +1,15 @@
 package com.alten.producttrial.entity;
 
+import com.alten.producttrial.config.UserIdentityCacheListener;
+import com.alten.producttrial.enums.Role;
 import jakarta.persistence.*;
 import lombok.*;
 
+import java.util.EnumSet;
+import java.util.Set;
+
 @Entity
+@EntityListeners(UserIdentityCacheListener.class)
 @Table(name = "users")
 @Getter
 @Builder
@@ -22,4 +28,22 @@ public class User {
 
     @Column(nullable = false)
     private String password;
+
+    @Convert(converter = RolesConverter.class)
+    @Column(nullable = false)
+    @Builder.Default
+    private Set<Role> roles = EnumSet.noneOf(Role.class);
+
+    /**
+     * Incremented whenever the roles change, so that the access tokens carrying the former roles are rejected.
+     */
+    @Column(name = "token_version", nullable = false)
+    private int tokenVersion;
+
+    /**
+     * Checked when a user read earlier in a transaction is written back, so that two concurrent role changes cannot
+     * both increment the token version from the same value. The single-statement password update leaves it as is.
+     */
+    @Version
+    private Long version;
 }
@@ -4,7 +4,7 @@ package com.alten.producttrial.entity;
 import jakarta.persistence.*;
 import lombok.*;
 
-import java.util.List;
+import java.util.Set;
 
 @Entity
 @Getter
@@ -23,12 +23,17 @@ public class Wishlist {
     private User user;
 
 
+    /**
+     * Mapped as a set so that the join table gets a (wishlist_id, product_id) primary key.
+     * Membership changes go through {@link com.alten.producttrial.repository.WishlistRepository}
+     * as single statements on the join table rather than through this collection.
+     */
     @ManyToMany
     @JoinTable(
             name = "wishlist_products",
             joinColumns = @JoinColumn(name = "wishlist_id"),
             inverseJoinColumns = @JoinColumn(name = "product_id")
     )
-    private List<Product> products;
+    private Set<Product> products;
 
 }
@@ -0,0 +1,5 @@
+package com.alten.producttrial.enums;
+
+public enum ProductImportStatus {
+    IN_PROGRESS, COMPLETED
+}
@@ -0,0 +1,12 @@
+package com.alten.producttrial.enums;
+
+public enum Role {
+    ADMIN;
+
+    /**
+     * @return the Spring Security authority granted by the role
+     */
+    public String authority() {
+        return "ROLE_" + name();
+    }
+}
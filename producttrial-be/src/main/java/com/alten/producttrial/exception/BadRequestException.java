@@ -0,0 +1,9 @@
+package com.alten.producttrial.exception;
+
+import org.springframework.http.HttpStatus;
+
+public class BadRequestException extends CustomErrorException {
+    public BadRequestException(String message) {
+        super(HttpStatus.BAD_REQUEST, "bad_request", message);
+    }
+}
@@ -0,0 +1,9 @@
+package com.alten.producttrial.exception;
+
+import org.springframework.http.HttpStatus;
+
+public class ConflictException extends CustomErrorException {
+    public ConflictException(String message, Throwable cause) {
+        super(HttpStatus.CONFLICT, "conflict", message, cause);
+    }
+}
@@ -3,6 +3,8 @@ package com.alten.producttrial.exception;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.Setter;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
@@ -22,7 +24,8 @@ public class GlobalExceptionHandler {
                 .body(errorResponse);
     }
 
-    @ExceptionHandler({ResourceNotFoundException.class, UserAlreadyExistsException.class, UserNotFoundException.class, InvalidCredentialsException.class})
+    @ExceptionHandler({ResourceNotFoundException.class, UserAlreadyExistsException.class, UserNotFoundException.class, InvalidCredentialsException.class, BadRequestException.class,
+            ConflictException.class, PreconditionFailedException.class, InsufficientStockException.class})
     public ResponseEntity<ErrorResponse> handleException(Exception ex) {
         ErrorResponse errorResponse = buildErrorResponse(ex);
         return ResponseEntity.status(HttpStatus.valueOf(errorResponse.getStatus()))
@@ -30,6 +33,37 @@ public class GlobalExceptionHandler {
                 .body(errorResponse);
     }
 
+    /**
+     * Version conflicts that no service turned into a {@link ConflictException}.
+     */
+    @ExceptionHandler(OptimisticLockingFailureException.class)
+    public ResponseEntity<ErrorResponse> handleOptimisticLockingFailureException(OptimisticLockingFailureException ex) {
+        ErrorResponse errorResponse = new ErrorResponse(HttpStatus.CONFLICT.value(), "conflict",
+                "The resource was modified concurrently, reload it and try again");
+        return ResponseEntity.status(HttpStatus.CONFLICT)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(errorResponse);
+    }
+
+    /**
+     * Rejections of work the server is too busy to take on now, which the client may retry shortly.
+     */
+    @ExceptionHandler(TooManyRequestsException.class)
+    public ResponseEntity<ErrorResponse> handleTooManyRequestsException(TooManyRequestsException ex) {
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(buildErrorResponse(ex));
+    }
+
+    @ExceptionHandler(ServerBusyException.class)
+    public ResponseEntity<ErrorResponse> handleServerBusyException(ServerBusyException ex) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(Math.max(1, ex.getRetryAfter().toSeconds())))
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(buildErrorResponse(ex));
+    }
+
     private ErrorResponse buildErrorResponse(Exception ex) {
         if (ex instanceof CustomErrorException) {
             CustomErrorException customErrorException = (CustomErrorException) ex;
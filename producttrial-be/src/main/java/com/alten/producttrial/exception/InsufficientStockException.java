@@ -0,0 +1,9 @@
+package com.alten.producttrial.exception;
+
+import org.springframework.http.HttpStatus;
+
+public class InsufficientStockException extends CustomErrorException {
+    public InsufficientStockException(String message) {
+        super(HttpStatus.CONFLICT, "insufficient_stock", message);
+    }
+}
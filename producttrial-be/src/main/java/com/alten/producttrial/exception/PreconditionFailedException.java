@@ -0,0 +1,9 @@
+package com.alten.producttrial.exception;
+
+import org.springframework.http.HttpStatus;
+
+public class PreconditionFailedException extends CustomErrorException {
+    public PreconditionFailedException(String message) {
+        super(HttpStatus.PRECONDITION_FAILED, "precondition_failed", message);
+    }
+}
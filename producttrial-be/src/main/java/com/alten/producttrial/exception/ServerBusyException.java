@@ -0,0 +1,19 @@
+package com.alten.producttrial.exception;
+
+import org.springframework.http.HttpStatus;
+
+import java.time.Duration;
+
+public class ServerBusyException extends CustomErrorException {
+
+    private final Duration retryAfter;
+
+    public ServerBusyException(String message, Duration retryAfter) {
+        super(HttpStatus.SERVICE_UNAVAILABLE, "server_busy", message);
+        this.retryAfter = retryAfter;
+    }
+
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+}
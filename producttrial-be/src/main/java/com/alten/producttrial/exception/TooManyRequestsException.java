@@ -0,0 +1,9 @@
+package com.alten.producttrial.exception;
+
+import org.springframework.http.HttpStatus;
+
+public class TooManyRequestsException extends CustomErrorException {
+    public TooManyRequestsException(String message) {
+        super(HttpStatus.TOO_MANY_REQUESTS, "too_many_requests", message);
+    }
+}
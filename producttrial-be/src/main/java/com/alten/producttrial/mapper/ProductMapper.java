@@ -3,6 +3,7 @@ package com.alten.producttrial.mapper;
 import com.alten.producttrial.dto.ProductDto;
 import com.alten.producttrial.entity.Product;
 import org.mapstruct.Mapper;
+import org.mapstruct.Mapping;
 import org.mapstruct.factory.Mappers;
 
 @Mapper(componentModel = "spring")
@@ -10,5 +11,6 @@ public interface ProductMapper {
 
     ProductDto toDto(Product product);
 
+    @Mapping(target = "heldQuantity", ignore = true)
     Product toEntity(ProductDto productDto);
 }
\ No newline at end of file
@@ -1,16 +1,92 @@
 package com.alten.producttrial.repository;
 
+import com.alten.producttrial.dto.CartItemCompactDto;
+import com.alten.producttrial.dto.CartLineSummaryDto;
 import com.alten.producttrial.entity.CartItem;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.ZonedDateTime;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
+@Transactional(readOnly = true)
 public interface CartItemRepository extends JpaRepository<CartItem, String> {
 
+    @EntityGraph(attributePaths = "product")
     Optional<CartItem> findByProductIdAndUserId(Long productId, Long userId);
 
+    boolean existsByProductIdAndUserId(Long productId, Long userId);
+
+    /**
+     * Loads the cart lines of a user together with their products in a single select,
+     * so that mapping them to {@code CartItemDto} does not trigger one query per line.
+     */
+    @EntityGraph(attributePaths = "product")
     List<CartItem> findAllByUserId(Long id);
-}
\ No newline at end of file
+
+    /**
+     * Reads the cart lines of a user with the id, name and price of their product in a single select, ordered by
+     * product id, without loading the cart items and their products as entities.
+     */
+    @Query("select new com.alten.producttrial.dto.CartItemCompactDto(c.id, p.id, p.name, p.price, c.quantity) "
+            + "from CartItem c join c.product p where c.user.id = :userId order by p.id")
+    List<CartItemCompactDto> findCompactByUserId(@Param("userId") Long userId);
+
+    /**
+     * Reads the product id, name and price and the quantity of each cart line of a user in a single select,
+     * ordered by product id, without loading the cart items and their products as entities.
+     */
+    @Query("select new com.alten.producttrial.dto.CartLineSummaryDto(p.id, p.name, p.price, c.quantity) "
+            + "from CartItem c join c.product p where c.user.id = :userId order by p.id")
+    List<CartLineSummaryDto> findLineSummariesByUserId(@Param("userId") Long userId);
+
+    /**
+     * Atomically adds {@code delta} to the quantity of a cart line and extends its stock hold, in a single statement.
+     * The line is left untouched if it does not exist or if the new quantity would not be positive.
+     * Its version is incremented so that a batch that read it before fails on write and is applied again.
+     *
+     * @return the number of updated lines, 0 or 1
+     */
+    @Transactional
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update CartItem c set c.quantity = c.quantity + :delta, c.reservedUntil = :reservedUntil, c.version = c.version + 1 "
+            + "where c.product.id = :productId and c.user.id = :userId and c.quantity + :delta > 0")
+    int addToQuantity(@Param("productId") Long productId, @Param("userId") Long userId, @Param("delta") int delta,
+                      @Param("reservedUntil") ZonedDateTime reservedUntil);
+
+    /**
+     * Returns the cart lines whose stock hold ended before {@code now}, oldest first.
+     */
+    @Query("select c from CartItem c where c.reservedUntil < :now order by c.reservedUntil")
+    List<CartItem> findReservationsExpiredBefore(@Param("now") ZonedDateTime now, Limit limit);
+
+    /**
+     * Deletes a cart line only if it has not changed since it was read at {@code version}, so that a line whose
+     * hold has just been extended is kept.
+     *
+     * @return the number of deleted lines, 0 or 1
+     */
+    @Transactional
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("delete from CartItem c where c.id = :id and c.version = :version")
+    int deleteByIdAndVersion(@Param("id") String id, @Param("version") Long version);
+
+    /**
+     * Deletes a cart line only if its quantity is at most {@code quantity}, so that a concurrent increment
+     * is never lost by removing a line that has just been topped up.
+     *
+     * @return the number of deleted lines, 0 or 1
+     */
+    @Transactional
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("delete from CartItem c where c.product.id = :productId and c.user.id = :userId and c.quantity <= :quantity")
+    int deleteIfQuantityAtMost(@Param("productId") Long productId, @Param("userId") Long userId, @Param("quantity") int quantity);
+}
@@ -0,0 +1,84 @@
+package com.alten.producttrial.repository;
+
+import com.alten.producttrial.dto.ProductFilter;
+import com.alten.producttrial.dto.ProductStockDto;
+import com.alten.producttrial.entity.Product;
+import com.alten.producttrial.enums.InventoryStatus;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Operations on the whole catalog or large parts of it.
+ * <p>
+ * Writes are issued as JDBC batches or set-based statements: Hibernate cannot batch the inserts of entities with
+ * identity-generated ids, and loading every product before writing it would double the round trips. They bypass the persistence
+ * context and its entity listeners, so callers must report the written products through
+ * {@link com.alten.producttrial.config.ProductChangeListener#productsChanged}.
+ */
+public interface ProductBulkOperations {
+
+    /**
+     * Streams all the products ordered by id from a forward-only cursor, fetching {@code fetchSize} rows per
+     * round trip. The products bypass the second-level cache and are loaded read-only; callers must consume the
+     * stream in a transaction, close it, and detach each product once used to keep the persistence context small.
+     */
+    Stream<Product> streamAllOrderedById(int fetchSize);
+
+    /**
+     * Inserts the products whose code does not exist yet and updates the others, in a single JDBC batch.
+     * The creation date of existing products is kept, their update date is set and their version incremented.
+     * The quantity of the products is their stock: the quantity held by cart lines is subtracted from it.
+     *
+     * @param products products to write, identified by their code; their id is ignored
+     * @return the ids of the written products
+     */
+    List<Long> upsertAllByCode(List<Product> products);
+
+    /**
+     * Returns the ids of the products matching the filter, in id order.
+     */
+    List<Long> findIdsMatching(ProductFilter filter);
+
+    /**
+     * Sets the price and the inventory status of the given products with one update statement per thousand ids,
+     * sets their update date and increments their version.
+     *
+     * @param price           new price, or {@code null} to keep the current one
+     * @param inventoryStatus new inventory status, or {@code null} to keep the current one
+     * @return the number of updated products
+     */
+    int updatePriceAndInventoryStatus(List<Long> ids, Double price, InventoryStatus inventoryStatus);
+
+    /**
+     * Deletes the given products, after removing them from the carts and wishlists that hold them, with one
+     * delete statement per table and thousand ids.
+     *
+     * @return the number of deleted products
+     */
+    int deleteAllWithCartAndWishlistEntries(List<Long> ids);
+
+    /**
+     * Moves the given quantities from the available quantity of the products to their held quantity in a single
+     * JDBC batch, and sets their inventory status from the remaining quantity: {@code OUTOFSTOCK} at zero or
+     * below, {@code LOWSTOCK} up to {@code lowStockThreshold}, {@code INSTOCK} above. Their update date and their
+     * version are kept.
+     *
+     * @param quantities quantity to hold per product id, negative to release held stock
+     */
+    void subtractQuantities(Map<Long, Integer> quantities, int lowStockThreshold);
+
+    /**
+     * Returns the quantity and the inventory status of the given products, with one select per thousand ids.
+     * Products that do not exist are absent from the result.
+     */
+    List<ProductStockDto> findStocksByIds(Collection<Long> ids);
+
+    /**
+     * Returns the stock quantity of the given products by id, with one select per thousand ids. Products that
+     * do not exist are absent from the result.
+     */
+    Map<Long, Integer> findQuantitiesByIds(Collection<Long> ids);
+}
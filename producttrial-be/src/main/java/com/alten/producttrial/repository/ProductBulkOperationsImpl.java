@@ -0,0 +1,192 @@
+package com.alten.producttrial.repository;
+
+import com.alten.producttrial.dto.ProductFilter;
+import com.alten.producttrial.dto.ProductStockDto;
+import com.alten.producttrial.entity.Product;
+import com.alten.producttrial.enums.InventoryStatus;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import lombok.RequiredArgsConstructor;
+import org.hibernate.CacheMode;
+import org.hibernate.Session;
+import org.hibernate.jpa.AvailableHints;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+
+import java.sql.Types;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+@RequiredArgsConstructor
+class ProductBulkOperationsImpl implements ProductBulkOperations {
+
+    // Standard SQL MERGE, so that each row is inserted or updated in a single statement. The imported quantity is
+    // the stock: the quantity held by cart lines is subtracted from it, as the reconciliation did from the former one.
+    private static final String UPSERT_BY_CODE = """
+            merge into products p
+            using (values (cast(? as varchar(255)), cast(? as varchar(255)), cast(? as varchar(255)), cast(? as varchar(255)),
+                           cast(? as varchar(255)), cast(? as double precision), cast(? as integer), cast(? as varchar(255)),
+                           cast(? as bigint), cast(? as varchar(255)), cast(? as double precision), cast(? as timestamp with time zone)))
+                as s (code, name, description, image, category, price, quantity, internal_reference, shell_id, inventory_status, rating, written_at)
+            on p.code = s.code
+            when matched then update set name = s.name, description = s.description, image = s.image, category = s.category,
+                price = s.price, quantity = s.quantity - p.held_quantity, internal_reference = s.internal_reference, shell_id = s.shell_id,
+                inventory_status = s.inventory_status, rating = s.rating, updated_at = s.written_at, version = p.version + 1
+            when not matched then insert (code, name, description, image, category, price, quantity, held_quantity,
+                internal_reference, shell_id, inventory_status, rating, created_at, version)
+                values (s.code, s.name, s.description, s.image, s.category, s.price, s.quantity, 0, s.internal_reference,
+                s.shell_id, s.inventory_status, s.rating, s.written_at, 0)
+            """;
+
+    // The new status is computed from the quantity before the update, as every expression of a SET clause is.
+    // Neither the update date nor the version change: holding stock is not an edit of the product.
+    private static final String SUBTRACT_QUANTITY = """
+            update products set quantity = quantity - ?, held_quantity = held_quantity + ?,
+                inventory_status = case when quantity - ? <= 0 then 'OUTOFSTOCK' when quantity - ? <= ? then 'LOWSTOCK' else 'INSTOCK' end
+            where id = ?
+            """;
+
+    // Keeps the IN lists of the set-based statements within what every database accepts.
+    private static final int MAX_IDS_PER_STATEMENT = 1000;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+    private final EntityManager entityManager;
+
+    @Override
+    public Stream<Product> streamAllOrderedById(int fetchSize) {
+        // The cursor loads rows after the query has run, so the cache mode is set on the session, not on the query.
+        Session session = entityManager.unwrap(Session.class);
+        CacheMode cacheMode = session.getCacheMode();
+        session.setCacheMode(CacheMode.IGNORE);
+        return entityManager.createQuery("select p from Product p order by p.id", Product.class)
+                .setHint(AvailableHints.HINT_FETCH_SIZE, fetchSize)
+                .setHint(AvailableHints.HINT_READ_ONLY, true)
+                .getResultStream()
+                .onClose(() -> session.setCacheMode(cacheMode));
+    }
+
+    @Override
+    public List<Long> upsertAllByCode(List<Product> products) {
+        if (products.isEmpty()) {
+            return List.of();
+        }
+        OffsetDateTime writtenAt = OffsetDateTime.now();
+        jdbcTemplate.batchUpdate(UPSERT_BY_CODE, products, products.size(), (statement, product) -> {
+            statement.setString(1, product.getCode());
+            statement.setString(2, product.getName());
+            statement.setString(3, product.getDescription());
+            statement.setString(4, product.getImage());
+            statement.setString(5, product.getCategory());
+            statement.setDouble(6, product.getPrice());
+            statement.setInt(7, product.getQuantity());
+            statement.setString(8, product.getInternalReference());
+            statement.setObject(9, product.getShellId(), Types.BIGINT);
+            statement.setString(10, product.getInventoryStatus() != null ? product.getInventoryStatus().name() : null);
+            statement.setObject(11, product.getRating(), Types.DOUBLE);
+            statement.setObject(12, writtenAt, Types.TIMESTAMP_WITH_TIMEZONE);
+        });
+        List<String> codes = products.stream().map(Product::getCode).distinct().toList();
+        return namedParameterJdbcTemplate.queryForList("select id from products where code in (:codes)",
+                Map.of("codes", codes), Long.class);
+    }
+
+    @Override
+    public List<Long> findIdsMatching(ProductFilter filter) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Long> query = cb.createQuery(Long.class);
+        Root<Product> root = query.from(Product.class);
+        query.select(root.get("id")).orderBy(cb.asc(root.get("id")));
+        Predicate predicate = ProductSpecifications.matches(filter).toPredicate(root, query, cb);
+        if (predicate != null) {
+            query.where(predicate);
+        }
+        return entityManager.createQuery(query).getResultList();
+    }
+
+    @Override
+    public int updatePriceAndInventoryStatus(List<Long> ids, Double price, InventoryStatus inventoryStatus) {
+        StringBuilder sql = new StringBuilder("update products set updated_at = :updatedAt, version = version + 1");
+        MapSqlParameterSource parameters = new MapSqlParameterSource("updatedAt", OffsetDateTime.now());
+        if (price != null) {
+            sql.append(", price = :price");
+            parameters.addValue("price", price);
+        }
+        if (inventoryStatus != null) {
+            sql.append(", inventory_status = :inventoryStatus");
+            parameters.addValue("inventoryStatus", inventoryStatus.name());
+        }
+        sql.append(" where id in (:ids)");
+        return updateByIdChunks(sql.toString(), parameters, ids);
+    }
+
+    @Override
+    public int deleteAllWithCartAndWishlistEntries(List<Long> ids) {
+        MapSqlParameterSource parameters = new MapSqlParameterSource();
+        updateByIdChunks("delete from cart_item where product_id in (:ids)", parameters, ids);
+        updateByIdChunks("delete from wishlist_products where product_id in (:ids)", parameters, ids);
+        return updateByIdChunks("delete from products where id in (:ids)", parameters, ids);
+    }
+
+    @Override
+    public void subtractQuantities(Map<Long, Integer> quantities, int lowStockThreshold) {
+        if (quantities.isEmpty()) {
+            return;
+        }
+        List<Map.Entry<Long, Integer>> entries = List.copyOf(quantities.entrySet());
+        jdbcTemplate.batchUpdate(SUBTRACT_QUANTITY, entries, entries.size(), (statement, entry) -> {
+            statement.setInt(1, entry.getValue());
+            statement.setInt(2, entry.getValue());
+            statement.setInt(3, entry.getValue());
+            statement.setInt(4, entry.getValue());
+            statement.setInt(5, lowStockThreshold);
+            statement.setLong(6, entry.getKey());
+        });
+    }
+
+    @Override
+    public List<ProductStockDto> findStocksByIds(Collection<Long> ids) {
+        List<Long> idList = List.copyOf(ids);
+        List<ProductStockDto> stocks = new ArrayList<>(idList.size());
+        for (int from = 0; from < idList.size(); from += MAX_IDS_PER_STATEMENT) {
+            namedParameterJdbcTemplate.query("select id, quantity, inventory_status from products where id in (:ids)",
+                    Map.of("ids", idList.subList(from, Math.min(from + MAX_IDS_PER_STATEMENT, idList.size()))),
+                    (RowCallbackHandler) row -> stocks.add(new ProductStockDto(row.getLong("id"), row.getInt("quantity"),
+                            row.getString("inventory_status") != null ? InventoryStatus.valueOf(row.getString("inventory_status")) : null)));
+        }
+        return stocks;
+    }
+
+    @Override
+    public Map<Long, Integer> findQuantitiesByIds(Collection<Long> ids) {
+        List<Long> idList = List.copyOf(ids);
+        Map<Long, Integer> quantities = new HashMap<>();
+        for (int from = 0; from < idList.size(); from += MAX_IDS_PER_STATEMENT) {
+            namedParameterJdbcTemplate.query("select id, quantity from products where id in (:ids)",
+                    Map.of("ids", idList.subList(from, Math.min(from + MAX_IDS_PER_STATEMENT, idList.size()))),
+                    (RowCallbackHandler) row -> quantities.put(row.getLong("id"), row.getInt("quantity")));
+        }
+        return quantities;
+    }
+
+    private int updateByIdChunks(String sql, MapSqlParameterSource parameters, List<Long> ids) {
+        int rows = 0;
+        for (int from = 0; from < ids.size(); from += MAX_IDS_PER_STATEMENT) {
+            parameters.addValue("ids", ids.subList(from, Math.min(from + MAX_IDS_PER_STATEMENT, ids.size())));
+            rows += namedParameterJdbcTemplate.update(sql, parameters);
+        }
+        return rows;
+    }
+}
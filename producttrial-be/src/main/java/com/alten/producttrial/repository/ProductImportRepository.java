@@ -0,0 +1,9 @@
+package com.alten.producttrial.repository;
+
+import com.alten.producttrial.entity.ProductImport;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface ProductImportRepository extends JpaRepository<ProductImport, String> {
+}
@@ -0,0 +1,39 @@
+package com.alten.producttrial.repository;
+
+import com.alten.producttrial.dto.ProductFilter;
+import com.alten.producttrial.entity.Product;
+import org.springframework.data.jpa.domain.Specification;
+
+/**
+ * Query predicates for {@link Product}. Only the criteria that are actually set are added,
+ * so the generated SQL stays simple enough to be served by the indexes declared on the entity.
+ */
+public final class ProductSpecifications {
+
+    private ProductSpecifications() {
+    }
+
+    public static Specification<Product> matches(ProductFilter filter) {
+        Specification<Product> spec = Specification.where(null);
+        if (filter == null) {
+            return spec;
+        }
+        if (filter.getCategory() != null) {
+            spec = spec.and((root, query, cb) -> cb.equal(root.get("category"), filter.getCategory()));
+        }
+        if (filter.getInventoryStatus() != null) {
+            spec = spec.and((root, query, cb) -> cb.equal(root.get("inventoryStatus"), filter.getInventoryStatus()));
+        }
+        if (filter.getMinPrice() != null) {
+            spec = spec.and((root, query, cb) -> cb.greaterThanOrEqualTo(root.get("price"), filter.getMinPrice()));
+        }
+        if (filter.getMaxPrice() != null) {
+            spec = spec.and((root, query, cb) -> cb.lessThanOrEqualTo(root.get("price"), filter.getMaxPrice()));
+        }
+        return spec;
+    }
+
+    public static Specification<Product> idGreaterThan(Long id) {
+        return (root, query, cb) -> id == null ? null : cb.greaterThan(root.get("id"), id);
+    }
+}
@@ -0,0 +1,51 @@
+package com.alten.producttrial.repository;
+
+import com.alten.producttrial.entity.RefreshToken;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+@Transactional(readOnly = true)
+public interface RefreshTokenRepository extends JpaRepository<RefreshToken, String> {
+
+    Optional<RefreshToken> findByTokenHash(String tokenHash);
+
+    boolean existsBySessionIdAndRevokedAtIsNotNull(String sessionId);
+
+    /**
+     * Marks a refresh token as exchanged, unless it already was, in a single statement, so that only one of
+     * several concurrent exchanges of the same token succeeds.
+     *
+     * @return the number of updated tokens, 0 or 1
+     */
+    @Transactional
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update RefreshToken t set t.usedAt = :now where t.id = :id and t.usedAt is null")
+    int markUsed(@Param("id") String id, @Param("now") ZonedDateTime now);
+
+    /**
+     * Revokes every refresh token of a session.
+     *
+     * @return the number of tokens revoked
+     */
+    @Transactional
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update RefreshToken t set t.revokedAt = :now where t.sessionId = :sessionId and t.revokedAt is null")
+    int revokeSession(@Param("sessionId") String sessionId, @Param("now") ZonedDateTime now);
+
+    @Query("select distinct t.sessionId from RefreshToken t where t.revokedAt >= :since")
+    List<String> findSessionIdsRevokedSince(@Param("since") ZonedDateTime since);
+
+    @Transactional
+    @Modifying
+    @Query("delete from RefreshToken t where t.expiresAt < :before")
+    int deleteExpiredBefore(@Param("before") ZonedDateTime before);
+}
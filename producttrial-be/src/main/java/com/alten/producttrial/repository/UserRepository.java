@@ -2,13 +2,32 @@ package com.alten.producttrial.repository;
 
 import com.alten.producttrial.entity.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.List;
 import java.util.Optional;
 
 @Repository
+@Transactional(readOnly = true)
 public interface UserRepository extends JpaRepository<User, Long> {
     Optional<User> findByEmail(String email);
 
     boolean existsByEmail(String email);
+
+    List<User> findByTokenVersionGreaterThan(int tokenVersion);
+
+    /**
+     * Replaces the password hash of a user, unless it has changed since it was read, in a single statement that
+     * leaves the other columns, such as the roles and the token version, as they are.
+     *
+     * @return the number of updated users, 0 or 1
+     */
+    @Transactional
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update User u set u.password = :newPassword where u.id = :id and u.password = :oldPassword")
+    int updatePassword(@Param("id") Long id, @Param("oldPassword") String oldPassword, @Param("newPassword") String newPassword);
 }
\ No newline at end of file
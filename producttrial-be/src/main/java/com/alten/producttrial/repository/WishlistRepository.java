@@ -2,12 +2,44 @@ package com.alten.producttrial.repository;
 
 import com.alten.producttrial.entity.Wishlist;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.List;
 import java.util.Optional;
 
 @Repository
+@Transactional(readOnly = true)
 public interface WishlistRepository extends JpaRepository<Wishlist, Long> {
 
     Optional<Wishlist> findByUserId(Long userId);
-}
\ No newline at end of file
+
+    @Query(value = "select product_id from wishlist_products where wishlist_id = :wishlistId order by product_id", nativeQuery = true)
+    List<Long> findProductIds(@Param("wishlistId") Long wishlistId);
+
+    /**
+     * Adds a product to a wishlist with a single insert, doing nothing if it is already there. The check is not
+     * atomic: a concurrent insert of the same product fails on the primary key of the join table.
+     *
+     * @return the number of inserted rows, 0 or 1
+     */
+    @Transactional
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query(value = "insert into wishlist_products (wishlist_id, product_id) "
+            + "select cast(:wishlistId as bigint), cast(:productId as bigint) where not exists "
+            + "(select 1 from wishlist_products where wishlist_id = :wishlistId and product_id = :productId)", nativeQuery = true)
+    int addProduct(@Param("wishlistId") Long wishlistId, @Param("productId") Long productId);
+
+    /**
+     * Removes a product from a wishlist with a single delete.
+     *
+     * @return the number of deleted rows, 0 or 1
+     */
+    @Transactional
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query(value = "delete from wishlist_products where wishlist_id = :wishlistId and product_id = :productId", nativeQuery = true)
+    int removeProduct(@Param("wishlistId") Long wishlistId, @Param("productId") Long productId);
+}
@@ -1,30 +1,47 @@
 package com.alten.producttrial.resource;
 
-import com.alten.producttrial.config.JwtTokenProvider;
+import com.alten.producttrial.config.JwtKeys;
 import com.alten.producttrial.dto.LoginRequest;
+import com.alten.producttrial.dto.RefreshTokenRequest;
 import com.alten.producttrial.dto.TokenResponse;
 import com.alten.producttrial.dto.UserDto;
+import com.alten.producttrial.dto.UserRolesRequest;
 import com.alten.producttrial.entity.User;
+import com.alten.producttrial.service.TokenService;
 import com.alten.producttrial.service.UserService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
-import lombok.AllArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
-import org.springframework.web.bind.annotation.PostMapping;
-import org.springframework.web.bind.annotation.RequestBody;
-import org.springframework.web.bind.annotation.RequestMapping;
-import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.Duration;
+import java.util.Map;
 
 @RestController
-@AllArgsConstructor
 @RequestMapping("/api")
 public class AuthResource {
 
     private UserService userService;
 
-    private JwtTokenProvider jwtTokenProvider;
+    private TokenService tokenService;
+
+    private JwtKeys jwtKeys;
+
+    private final CacheControl keySetCacheControl;
+
+    public AuthResource(UserService userService,
+                        TokenService tokenService,
+                        JwtKeys jwtKeys,
+                        @Value("${jwt.key-set.max-age:5m}") Duration keySetMaxAge) {
+        this.userService = userService;
+        this.tokenService = tokenService;
+        this.jwtKeys = jwtKeys;
+        this.keySetCacheControl = CacheControl.maxAge(keySetMaxAge).cachePublic();
+    }
 
     @Operation(
             summary = "Create a new user account",
@@ -32,7 +49,8 @@ public class AuthResource {
     )
     @ApiResponses(value = {
             @ApiResponse(responseCode = "201", description = "User created successfully"),
-            @ApiResponse(responseCode = "409", description = "User already exists")
+            @ApiResponse(responseCode = "409", description = "User already exists"),
+            @ApiResponse(responseCode = "429", description = "Too many passwords being hashed, retry later")
     })
     @PostMapping("/account")
     public ResponseEntity<?> createAccount(@RequestBody UserDto userDto) {
@@ -42,17 +60,75 @@ public class AuthResource {
 
     @Operation(
             summary = "Authenticate a user",
-            description = "Allows a user to authenticate by providing their email and password."
+            description = "Allows a user to authenticate by providing their email and password. Returns a short-lived "
+                    + "access token and a refresh token to exchange for the next ones."
     )
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "User authenticated successfully"),
-            @ApiResponse(responseCode = "401", description = "Invalid credentials")
+            @ApiResponse(responseCode = "401", description = "Invalid credentials"),
+            @ApiResponse(responseCode = "429", description = "Too many passwords being checked, retry later")
     })
 
     @PostMapping("/token")
     public ResponseEntity<?> authenticate(@RequestBody LoginRequest loginRequest) {
         User user = userService.authenticate(loginRequest);
-        String token = jwtTokenProvider.generateToken(user.getEmail());
-        return ResponseEntity.ok(new TokenResponse(token));
+        return ResponseEntity.ok(tokenService.login(user));
+    }
+
+    @Operation(
+            summary = "Refresh the tokens",
+            description = "Exchanges a refresh token for a new access token and a new refresh token. Each refresh token "
+                    + "can be used once; using it again revokes the session."
+    )
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Tokens refreshed successfully"),
+            @ApiResponse(responseCode = "401", description = "Unknown, expired, revoked or already used refresh token")
+    })
+    @PostMapping("/token/refresh")
+    public ResponseEntity<TokenResponse> refresh(@RequestBody RefreshTokenRequest request) {
+        return ResponseEntity.ok(tokenService.refresh(request.getRefreshToken()));
+    }
+
+    @Operation(
+            summary = "Log out",
+            description = "Revokes the session of a refresh token, so that neither it nor the access tokens of the "
+                    + "session are accepted any more."
+    )
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "204", description = "Session revoked")
+    })
+    @PostMapping("/token/revoke")
+    public ResponseEntity<Void> revoke(@RequestBody RefreshTokenRequest request) {
+        tokenService.logout(request.getRefreshToken());
+        return ResponseEntity.noContent().build();
+    }
+
+    @Operation(
+            summary = "Get the token signing keys",
+            description = "Returns the public keys that verify access tokens, as a JSON Web Key Set. Tokens name their "
+                    + "key in the kid header. The key set includes the key that will sign after the next rotation."
+    )
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Key set returned")
+    })
+    @GetMapping("/token/keys")
+    public ResponseEntity<Map<String, Object>> keys() {
+        return ResponseEntity.ok().cacheControl(keySetCacheControl).body(jwtKeys.keySet());
+    }
+
+    @Operation(
+            summary = "Set the roles of a user",
+            description = "Replaces the roles of a user. The access tokens issued with the former roles are rejected "
+                    + "from then on; refreshing them issues tokens with the new roles. Restricted to administrators."
+    )
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "204", description = "Roles updated"),
+            @ApiResponse(responseCode = "403", description = "Not an administrator"),
+            @ApiResponse(responseCode = "404", description = "User not found")
+    })
+    @PutMapping("/account/{id}/roles")
+    public ResponseEntity<Void> updateRoles(@PathVariable Long id, @RequestBody UserRolesRequest request) {
+        userService.updateRoles(id, request.getRoles());
+        return ResponseEntity.noContent().build();
     }
 }
@@ -1,6 +1,9 @@
 package com.alten.producttrial.resource;
 
+import com.alten.producttrial.dto.CartBatchRequest;
 import com.alten.producttrial.dto.CartItemDto;
+import com.alten.producttrial.dto.CartSummaryDto;
+import com.alten.producttrial.enums.CartView;
 import com.alten.producttrial.service.CartService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
@@ -21,17 +24,36 @@ public class CartResource {
 
     @Operation(
             summary = "Retrieve all items in the user's cart",
-            description = "Fetches all the cart items for the currently authenticated user."
+            description = "Fetches all the cart items for the currently authenticated user. With view=COMPACT, each item only "
+                    + "has its id, the product id, name and price, and the quantity, instead of the full product."
     )
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Cart items retrieved successfully"),
+            @ApiResponse(responseCode = "400", description = "Unknown view"),
             @ApiResponse(responseCode = "404", description = "User not found")
     })
     @GetMapping
-    public ResponseEntity<List<CartItemDto>> getCartItems() {
+    public ResponseEntity<List<?>> getCartItems(@RequestParam(defaultValue = "FULL") CartView view) {
+        if (view == CartView.COMPACT) {
+            return ResponseEntity.ok(cartService.getCompactCartItems());
+        }
         return ResponseEntity.ok(cartService.getCartItems());
     }
 
+    @Operation(
+            summary = "Get the summary of the user's cart",
+            description = "Returns the product id, name, price, quantity and total of each line, the number of items "
+                    + "and the grand total of the cart of the currently authenticated user, without the product details."
+    )
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Cart summary retrieved successfully"),
+            @ApiResponse(responseCode = "404", description = "User not found")
+    })
+    @GetMapping("/summary")
+    public ResponseEntity<CartSummaryDto> getCartSummary() {
+        return ResponseEntity.ok(cartService.getCartSummary());
+    }
+
     @Operation(
             summary = "Add a product to the user's cart",
             description = "Adds the specified product to the cart of the currently authenticated user."
@@ -46,6 +68,21 @@ public class CartResource {
         return ResponseEntity.ok(cartItemDTO);
     }
 
+    @Operation(
+            summary = "Apply several quantity changes to the user's cart",
+            description = "Adds or removes quantities of several products in one request. Lines whose quantity drops to zero are removed. "
+                    + "Returns the content of the cart after the changes."
+    )
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Cart updated successfully"),
+            @ApiResponse(responseCode = "400", description = "Invalid batch"),
+            @ApiResponse(responseCode = "404", description = "Product or user not found")
+    })
+    @PostMapping("/batch")
+    public ResponseEntity<List<CartItemDto>> applyBatch(@RequestBody CartBatchRequest request) {
+        return ResponseEntity.ok(cartService.applyBatch(request.getOperations()));
+    }
+
     @Operation(
             summary = "Remove a product from the user's cart",
             description = "Removes the specified cart item from the currently authenticated user's cart."
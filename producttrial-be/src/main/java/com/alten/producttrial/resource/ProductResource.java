@@ -1,14 +1,38 @@
 package com.alten.producttrial.resource;
 
+import com.alten.producttrial.dto.ProductBulkDeleteRequest;
+import com.alten.producttrial.dto.ProductBulkResultDto;
+import com.alten.producttrial.dto.ProductBulkUpdateRequest;
+import com.alten.producttrial.dto.ProductCatalogSnapshot;
 import com.alten.producttrial.dto.ProductDto;
+import com.alten.producttrial.dto.ProductFilter;
+import com.alten.producttrial.dto.ProductImportResultDto;
+import com.alten.producttrial.dto.ProductPageDto;
+import com.alten.producttrial.dto.ProductSearchResultDto;
+import com.alten.producttrial.dto.ProductSuggestionDto;
+import com.alten.producttrial.enums.InventoryStatus;
+import com.alten.producttrial.enums.ProductExportFormat;
+import com.alten.producttrial.exception.PreconditionFailedException;
+import com.alten.producttrial.service.ProductExportService;
+import com.alten.producttrial.service.ProductImportService;
 import com.alten.producttrial.service.ProductService;
 import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.media.ArraySchema;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.net.URI;
 import java.util.List;
 
@@ -19,6 +43,10 @@ public class ProductResource {
 
     private final ProductService productService;
 
+    private final ProductImportService productImportService;
+
+    private final ProductExportService productExportService;
+
     @Operation(
             summary = "Create a new product",
             description = "Creates a new product and returns the created product details."
@@ -35,16 +63,143 @@ public class ProductResource {
         return ResponseEntity.created(location).body(createdProduct);
     }
 
+    @Operation(
+            summary = "Import products in bulk",
+            description = "Streams products from a CSV file with a header line, or from NDJSON with one product per line, "
+                    + "and creates or updates them by code in batches. Invalid rows are skipped and reported. "
+                    + "If the import is interrupted, send the same file again with the same importId to resume it "
+                    + "after the last committed batch."
+    )
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Products imported, with the rejected rows"),
+            @ApiResponse(responseCode = "400", description = "Invalid import id, import already completed or malformed CSV"),
+            @ApiResponse(responseCode = "403", description = "Forbidden: User does not have permission to import products")
+    })
+    @PostMapping(value = "/import", consumes = {"text/csv", MediaType.APPLICATION_NDJSON_VALUE})
+    public ResponseEntity<ProductImportResultDto> importProducts(@RequestParam(required = false) String importId,
+                                                                 @RequestHeader(HttpHeaders.CONTENT_TYPE) MediaType contentType,
+                                                                 InputStream body) throws IOException {
+        return ResponseEntity.ok(productImportService.importProducts(body, contentType, importId));
+    }
+
+    @Operation(
+            summary = "Get a product import",
+            description = "Returns the counters of an import, including how many rows are committed when it was interrupted."
+    )
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Import retrieved successfully"),
+            @ApiResponse(responseCode = "404", description = "Import not found")
+    })
+    @GetMapping("/import/{importId}")
+    public ResponseEntity<ProductImportResultDto> getImport(@PathVariable String importId) {
+        return ResponseEntity.ok(productImportService.getImport(importId));
+    }
+
     @Operation(
             summary = "Get all products",
-            description = "Retrieves a list of all available products."
+            description = "Retrieves a list of all available products. The response carries an ETag; "
+                    + "send it back in If-None-Match to get a 304 while the catalog is unchanged. "
+                    + "The list is sent gzip-compressed when the client accepts it."
     )
     @ApiResponses(value = {
-            @ApiResponse(responseCode = "200", description = "Products retrieved successfully")
+            @ApiResponse(responseCode = "200", description = "Products retrieved successfully",
+                    content = @Content(mediaType = MediaType.APPLICATION_JSON_VALUE,
+                            array = @ArraySchema(schema = @Schema(implementation = ProductDto.class)))),
+            @ApiResponse(responseCode = "304", description = "Catalog unchanged since the ETag given in If-None-Match")
     })
     @GetMapping
-    public ResponseEntity<List<ProductDto>> getAllProducts() {
-        return ResponseEntity.ok(productService.getAllProducts());
+    public ResponseEntity<byte[]> getAllProducts(@RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        ProductCatalogSnapshot snapshot = productService.getCatalogSnapshot();
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .cacheControl(CacheControl.noCache())
+                .varyBy(HttpHeaders.ACCEPT_ENCODING);
+
+        // A 304 is sent instead of the body when If-None-Match matches the ETag set here.
+        if (acceptsGzip(acceptEncoding)) {
+            return response.eTag(snapshot.getGzipEtag())
+                    .header(HttpHeaders.CONTENT_ENCODING, "gzip")
+                    .body(snapshot.getGzip());
+        }
+        return response.eTag(snapshot.getEtag()).body(snapshot.getJson());
+    }
+
+    @Operation(
+            summary = "Export all products",
+            description = "Streams the whole catalog ordered by id, as NDJSON (one product per line) or as CSV with a header line. "
+                    + "Both formats can be imported back."
+    )
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Products exported successfully"),
+            @ApiResponse(responseCode = "400", description = "Unknown format")
+    })
+    @GetMapping("/export")
+    public void exportProducts(@RequestParam(defaultValue = "NDJSON") ProductExportFormat format,
+                               HttpServletResponse response) throws IOException {
+        // Written straight to the response from the database cursor: the export holds its transaction, its place
+        // in the transaction concurrency limit and its connection until the last product is sent.
+        boolean csv = format == ProductExportFormat.CSV;
+        response.setContentType(csv ? ProductImportService.TEXT_CSV.toString() : MediaType.APPLICATION_NDJSON_VALUE);
+        response.setCharacterEncoding("UTF-8");
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                .filename(csv ? "products.csv" : "products.ndjson").build().toString());
+        productExportService.exportProducts(format, response.getOutputStream());
+    }
+
+    @Operation(
+            summary = "Get a page of products",
+            description = "Retrieves products ordered by id, one page at a time, optionally filtered by category, inventory status and price range. "
+                    + "Pass the returned nextCursor as cursor to fetch the following page."
+    )
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Products page retrieved successfully"),
+            @ApiResponse(responseCode = "400", description = "Invalid cursor or page size")
+    })
+    @GetMapping("/page")
+    public ResponseEntity<ProductPageDto> getProductsPage(@RequestParam(required = false) String cursor,
+                                                          @RequestParam(defaultValue = "" + ProductService.DEFAULT_PAGE_SIZE) int size,
+                                                          @RequestParam(required = false) String category,
+                                                          @RequestParam(required = false) InventoryStatus inventoryStatus,
+                                                          @RequestParam(required = false) Double minPrice,
+                                                          @RequestParam(required = false) Double maxPrice) {
+        ProductFilter filter = new ProductFilter(category, inventoryStatus, minPrice, maxPrice);
+        return ResponseEntity.ok(productService.getProductsPage(filter, cursor, size));
+    }
+
+    @Operation(
+            summary = "Search products",
+            description = "Searches the code, name, category and description of the products, tolerating prefixes and typos, "
+                    + "and returns the best matches first along with the number of matches per category and price range. "
+                    + "The same filters as the products page can narrow the matches."
+    )
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Search results retrieved successfully"),
+            @ApiResponse(responseCode = "400", description = "Invalid page or page size")
+    })
+    @GetMapping("/search")
+    public ResponseEntity<ProductSearchResultDto> searchProducts(@RequestParam(required = false) String q,
+                                                                 @RequestParam(defaultValue = "0") int page,
+                                                                 @RequestParam(defaultValue = "" + ProductService.DEFAULT_PAGE_SIZE) int size,
+                                                                 @RequestParam(required = false) String category,
+                                                                 @RequestParam(required = false) InventoryStatus inventoryStatus,
+                                                                 @RequestParam(required = false) Double minPrice,
+                                                                 @RequestParam(required = false) Double maxPrice) {
+        ProductFilter filter = new ProductFilter(category, inventoryStatus, minPrice, maxPrice);
+        return ResponseEntity.ok(productService.searchProducts(q, filter, page, size));
+    }
+
+    @Operation(
+            summary = "Suggest products",
+            description = "Suggests products whose name, code or a word of the name starts with the typed prefix, best rated first."
+    )
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Suggestions retrieved successfully"),
+            @ApiResponse(responseCode = "400", description = "Invalid limit")
+    })
+    @GetMapping("/suggest")
+    public ResponseEntity<List<ProductSuggestionDto>> suggestProducts(@RequestParam(required = false) String q,
+                                                                      @RequestParam(defaultValue = "" + ProductService.DEFAULT_SUGGESTIONS) int limit) {
+        return ResponseEntity.ok(productService.suggestProducts(q, limit));
     }
 
 
@@ -53,26 +208,32 @@ public class ProductResource {
             description = "Retrieves the details of a specific product using its ID."
     )
     @ApiResponses(value = {
-            @ApiResponse(responseCode = "200", description = "Product retrieved successfully"),
+            @ApiResponse(responseCode = "200", description = "Product retrieved successfully, with its version as ETag"),
             @ApiResponse(responseCode = "404", description = "Product not found")
     })
     @GetMapping("/{id}")
     public ResponseEntity<ProductDto> getProductById(@PathVariable Long id) {
-        return ResponseEntity.ok(productService.getProductById(id));
+        ProductDto product = productService.getProductById(id);
+        return ResponseEntity.ok().eTag(String.valueOf(product.getVersion())).body(product);
     }
 
     @Operation(
             summary = "Update product details",
-            description = "Updates the details of an existing product and returns the updated product information."
+            description = "Updates the details of an existing product and returns the updated product information. "
+                    + "Send the ETag of the product in If-Match to only update it if nobody else has since."
     )
     @ApiResponses(value = {
-            @ApiResponse(responseCode = "200", description = "Product updated successfully"),
+            @ApiResponse(responseCode = "200", description = "Product updated successfully, with its new version as ETag"),
             @ApiResponse(responseCode = "404", description = "Product not found"),
-            @ApiResponse(responseCode = "403", description = "Forbidden: User does not have permission to update the product")
+            @ApiResponse(responseCode = "403", description = "Forbidden: User does not have permission to update the product"),
+            @ApiResponse(responseCode = "409", description = "Product updated concurrently"),
+            @ApiResponse(responseCode = "412", description = "Product modified since the version given in If-Match")
     })
     @PatchMapping("/{id}")
-    public ResponseEntity<ProductDto> updateProduct(@PathVariable Long id, @RequestBody ProductDto dto) {
-        return ResponseEntity.ok(productService.updateProduct(id, dto));
+    public ResponseEntity<ProductDto> updateProduct(@PathVariable Long id, @RequestBody ProductDto dto,
+                                                    @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        ProductDto product = productService.updateProduct(id, dto, parseVersion(id, ifMatch));
+        return ResponseEntity.ok().eTag(String.valueOf(product.getVersion())).body(product);
     }
 
 
@@ -90,4 +251,68 @@ public class ProductResource {
         productService.deleteProduct(id);
         return ResponseEntity.noContent().build();
     }
+
+    @Operation(
+            summary = "Update products in bulk",
+            description = "Sets the price and/or the inventory status of the products listed by id, or of the products "
+                    + "matching a filter on category, inventory status and price range, in a single transaction."
+    )
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Products updated, with the number of updated products"),
+            @ApiResponse(responseCode = "400", description = "Invalid selection, nothing to update or negative price"),
+            @ApiResponse(responseCode = "403", description = "Forbidden: User does not have permission to update products")
+    })
+    @PostMapping("/bulk-update")
+    public ResponseEntity<ProductBulkResultDto> bulkUpdateProducts(@RequestBody ProductBulkUpdateRequest request) {
+        return ResponseEntity.ok(productService.bulkUpdateProducts(request));
+    }
+
+    @Operation(
+            summary = "Delete products in bulk",
+            description = "Deletes the products listed by id, or the products matching a filter on category, inventory status "
+                    + "and price range, in a single transaction. The products are also removed from carts and wishlists."
+    )
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Products deleted, with the number of deleted products"),
+            @ApiResponse(responseCode = "400", description = "Invalid selection"),
+            @ApiResponse(responseCode = "403", description = "Forbidden: User does not have permission to delete products")
+    })
+    @PostMapping("/bulk-delete")
+    public ResponseEntity<ProductBulkResultDto> bulkDeleteProducts(@RequestBody ProductBulkDeleteRequest request) {
+        return ResponseEntity.ok(productService.bulkDeleteProducts(request));
+    }
+
+    /**
+     * Reads the product version from an {@code If-Match} header holding the ETag of the product.
+     *
+     * @return the version, or {@code null} when the header is absent or {@code *}
+     * @throws PreconditionFailedException if the header cannot match any version
+     */
+    private static Long parseVersion(Long id, String ifMatch) {
+        if (ifMatch == null || ifMatch.isBlank() || ifMatch.trim().equals("*")) {
+            return null;
+        }
+        String tag = ifMatch.trim();
+        if (tag.length() > 1 && tag.startsWith("\"") && tag.endsWith("\"")) {
+            tag = tag.substring(1, tag.length() - 1);
+        }
+        try {
+            return Long.valueOf(tag);
+        } catch (NumberFormatException e) {
+            throw new PreconditionFailedException("If-Match " + ifMatch + " matches no version of product " + id);
+        }
+    }
+
+    private static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.split(";");
+            if (parts[0].trim().equalsIgnoreCase("gzip")) {
+                return parts.length < 2 || !parts[1].replace(" ", "").matches("q=0(\\.0*)?");
+            }
+        }
+        return false;
+    }
 }
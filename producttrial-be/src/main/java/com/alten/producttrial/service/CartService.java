@@ -1,37 +1,61 @@
 package com.alten.producttrial.service;
 
+import com.alten.producttrial.config.CartSummaryCache;
+import com.alten.producttrial.config.InventoryReservations;
+import com.alten.producttrial.config.MetricsConfig;
+import com.alten.producttrial.config.OptimisticLockRetry;
+import com.alten.producttrial.config.UserPrincipal;
+import com.alten.producttrial.dto.CartItemCompactDto;
 import com.alten.producttrial.dto.CartItemDto;
+import com.alten.producttrial.dto.CartLineSummaryDto;
+import com.alten.producttrial.dto.CartOperationDto;
+import com.alten.producttrial.dto.CartSummaryDto;
 import com.alten.producttrial.entity.CartItem;
 import com.alten.producttrial.entity.Product;
-import com.alten.producttrial.entity.User;
+import com.alten.producttrial.exception.BadRequestException;
+import com.alten.producttrial.exception.ConflictException;
+import com.alten.producttrial.exception.InsufficientStockException;
 import com.alten.producttrial.exception.ResourceNotFoundException;
-import com.alten.producttrial.exception.UserNotFoundException;
 import com.alten.producttrial.mapper.CartItemMapper;
 import com.alten.producttrial.repository.CartItemRepository;
 import com.alten.producttrial.repository.ProductRepository;
 import com.alten.producttrial.repository.UserRepository;
+import io.micrometer.core.annotation.Timed;
 import lombok.AllArgsConstructor;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.security.access.AccessDeniedException;
-import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
-import java.util.List;
-import java.util.Optional;
+import java.math.BigDecimal;
+import java.time.ZonedDateTime;
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
+@Timed(MetricsConfig.SERVICE_TIMER)
 @AllArgsConstructor
 public class CartService {
+    public static final int MAX_BATCH_OPERATIONS = 500;
+    private static final int MAX_EXPIRED_RESERVATIONS_PER_RUN = 500;
+
     private final CartItemRepository cartItemRepository;
     private final ProductRepository productRepository;
     private final UserRepository userRepository;
     private final CartItemMapper cartItemMapper;
+    private final CurrentUserService currentUserService;
+    private final CartSummaryCache cartSummaryCache;
+    private final OptimisticLockRetry optimisticLockRetry;
+    private final TransactionTemplate transactionTemplate;
+    private final InventoryReservations inventoryReservations;
 
     @Transactional(readOnly = true)
     public List<CartItemDto> getCartItems() {
-        String username = SecurityContextHolder.getContext().getAuthentication().getName();
-        User user = userRepository.findByEmail(username)
-                .orElseThrow(() -> new UserNotFoundException("User not found"));
+        UserPrincipal user = currentUserService.getCurrentUser();
 
         List<CartItem> cartItems = cartItemRepository.findAllByUserId(user.getId());
         return cartItems.stream()
@@ -39,59 +63,237 @@ public class CartService {
                 .toList();
     }
 
+    /**
+     * Returns the cart lines of the current user with only the id, name and price of their product, read with
+     * a projection that loads no entity.
+     */
+    @Transactional(readOnly = true)
+    public List<CartItemCompactDto> getCompactCartItems() {
+        UserPrincipal user = currentUserService.getCurrentUser();
+        return cartItemRepository.findCompactByUserId(user.getId());
+    }
+
+    /**
+     * Returns the lines, the number of items and the total of the current user's cart, computed from the current
+     * product prices. The summary is cached per user until the cart or a product changes.
+     */
+    public CartSummaryDto getCartSummary() {
+        UserPrincipal user = currentUserService.getCurrentUser();
+        return cartSummaryCache.get(user.getId(), this::computeCartSummary);
+    }
+
+    /**
+     * Adds one item of a product to the current user's cart, holding it in stock until the line expires.
+     *
+     * @throws ResourceNotFoundException  if the product does not exist
+     * @throws InsufficientStockException if the product has no item left
+     */
     public CartItemDto addToCart(Long productId) {
-        String username = SecurityContextHolder.getContext().getAuthentication().getName();
-        User user = userRepository.findByEmail(username)
-                .orElseThrow(() -> new UserNotFoundException("User not found"));
+        UserPrincipal user = currentUserService.getCurrentUser();
 
-        Product product = productRepository.findById(productId)
-                .orElseThrow(() -> new ResourceNotFoundException("Product not found"));
+        inventoryReservations.reserve(productId, 1);
+        boolean added = false;
+        try {
+            ZonedDateTime reservedUntil = inventoryReservations.holdUntil();
+            if (cartItemRepository.addToQuantity(productId, user.getId(), 1, reservedUntil) == 0) {
+                Optional<CartItem> createdItem = createCartItem(productId, user, 1, reservedUntil);
+                if (createdItem.isPresent()) {
+                    added = true;
+                    return cartItemMapper.toDto(createdItem.get());
+                }
+                // A concurrent request created the line first, increment it instead.
+                added = cartItemRepository.addToQuantity(productId, user.getId(), 1, reservedUntil) > 0;
+            } else {
+                added = true;
+            }
 
-        CartItem cartItem = cartItemRepository.findByProductIdAndUserId(productId, user.getId())
-                .orElse(new CartItem());
+            return cartItemRepository.findByProductIdAndUserId(productId, user.getId())
+                    .map(cartItemMapper::toDto)
+                    .orElseThrow(() -> new ResourceNotFoundException("Cart item not found"));
+        } finally {
+            if (!added) {
+                inventoryReservations.release(productId, 1);
+            }
+            cartSummaryCache.invalidate(user.getId());
+        }
+    }
 
-        if (cartItem.getId() == null) {
-            cartItem.setProduct(product);
-            cartItem.setUser(user);
-            cartItem.setQuantity(1);
-        } else {
-            cartItem.setQuantity(cartItem.getQuantity() + 1);
+
+    /**
+     * Applies a batch of quantity changes to the current user's cart in a single transaction.
+     * Operations on the same product are merged, products are loaded with one query and the resulting
+     * inserts, updates and deletes are sent in JDBC batches. Lines whose quantity drops to zero or below
+     * are removed; negative deltas on products that are not in the cart are ignored. The stock held by the
+     * lines follows their quantity, and the hold of every changed line is extended.
+     * <p>
+     * The cart is read without locks. If one of its lines is changed concurrently, the version check fails
+     * the transaction and the batch is applied again to the current cart, a bounded number of times.
+     *
+     * @param operations the product ids and quantity deltas to apply
+     * @return the content of the cart after the batch
+     * @throws BadRequestException       if an operation is incomplete or the batch is too large
+     * @throws ResourceNotFoundException  if a product to add does not exist
+     * @throws InsufficientStockException if a product to add does not have enough items left
+     * @throws ConflictException          if the cart kept changing concurrently
+     */
+    public List<CartItemDto> applyBatch(List<CartOperationDto> operations) {
+        if (operations == null || operations.size() > MAX_BATCH_OPERATIONS) {
+            throw new BadRequestException("A batch must contain at most " + MAX_BATCH_OPERATIONS + " operations");
+        }
+        Map<Long, Integer> deltas = new LinkedHashMap<>();
+        for (CartOperationDto operation : operations) {
+            if (operation.getProductId() == null || operation.getDelta() == null) {
+                throw new BadRequestException("Each operation requires a productId and a delta");
+            }
+            deltas.merge(operation.getProductId(), operation.getDelta(), Integer::sum);
         }
 
-        CartItem savedItem = cartItemRepository.save(cartItem);
-        return cartItemMapper.toDto(savedItem);
+        UserPrincipal user = currentUserService.getCurrentUser();
+        return optimisticLockRetry.execute("cart.batch",
+                () -> transactionTemplate.execute(status -> applyDeltas(user, deltas)));
     }
 
+    private List<CartItemDto> applyDeltas(UserPrincipal user, Map<Long, Integer> deltas) {
+        cartSummaryCache.invalidate(user.getId());
+        Map<Long, CartItem> lines = cartItemRepository.findAllByUserId(user.getId()).stream()
+                .collect(Collectors.toMap(cartItem -> cartItem.getProduct().getId(), Function.identity()));
+
+        Set<Long> newProductIds = deltas.entrySet().stream()
+                .filter(entry -> entry.getValue() > 0 && !lines.containsKey(entry.getKey()))
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toSet());
+        Map<Long, Product> newProducts = productRepository.findAllById(newProductIds).stream()
+                .collect(Collectors.toMap(Product::getId, Function.identity()));
+        newProductIds.stream()
+                .filter(productId -> !newProducts.containsKey(productId))
+                .findFirst()
+                .ifPresent(productId -> {
+                    throw new ResourceNotFoundException("Product not found: " + productId);
+                });
+
+        ZonedDateTime reservedUntil = inventoryReservations.holdUntil();
+        Map<Long, Integer> heldChanges = new LinkedHashMap<>();
+        List<CartItem> toSave = new ArrayList<>();
+        List<CartItem> toDelete = new ArrayList<>();
+        deltas.forEach((productId, delta) -> {
+            CartItem cartItem = lines.get(productId);
+            if (cartItem == null) {
+                if (delta > 0) {
+                    CartItem newItem = new CartItem();
+                    newItem.setProduct(newProducts.get(productId));
+                    newItem.setUser(userRepository.getReferenceById(user.getId()));
+                    newItem.setQuantity(delta);
+                    newItem.setReservedUntil(reservedUntil);
+                    toSave.add(newItem);
+                    heldChanges.put(productId, delta);
+                }
+            } else if (cartItem.getQuantity() + delta > 0) {
+                cartItem.setQuantity(cartItem.getQuantity() + delta);
+                cartItem.setReservedUntil(reservedUntil);
+                toSave.add(cartItem);
+                heldChanges.put(productId, delta);
+            } else {
+                toDelete.add(cartItem);
+                heldChanges.put(productId, -cartItem.getQuantity());
+            }
+        });
+        inventoryReservations.adjust(heldChanges);
+        cartItemRepository.deleteAll(toDelete);
+        cartItemRepository.saveAll(toSave);
+        cartItemRepository.flush();
+
+        return cartItemRepository.findAllByUserId(user.getId()).stream()
+                .map(cartItemMapper::toDto)
+                .toList();
+    }
 
     public void removeFromCart(String cartItemId) {
-        String username = SecurityContextHolder.getContext().getAuthentication().getName();
-        User user = userRepository.findByEmail(username)
-                .orElseThrow(() -> new UserNotFoundException("User not found"));
+        UserPrincipal user = currentUserService.getCurrentUser();
 
-        CartItem cartItem = cartItemRepository.findById(cartItemId)
-                .orElseThrow(() -> new ResourceNotFoundException("Cart item not found"));
+        // The delete checks the version of the line read here, so a concurrent quantity change makes it try again
+        // and the quantity returned to stock is the one deleted.
+        CartItem removed = optimisticLockRetry.execute("cart.remove", () -> {
+            CartItem cartItem = cartItemRepository.findById(cartItemId)
+                    .orElseThrow(() -> new ResourceNotFoundException("Cart item not found"));
 
-        if (!cartItem.getUser().getId().equals(user.getId())) {
-            throw new AccessDeniedException("Unauthorized to remove this item");
-        }
+            if (!cartItem.getUser().getId().equals(user.getId())) {
+                throw new AccessDeniedException("Unauthorized to remove this item");
+            }
 
-        cartItemRepository.deleteById(cartItemId);
+            cartItemRepository.delete(cartItem);
+            return cartItem;
+        });
+        inventoryReservations.release(removed.getProduct().getId(), removed.getQuantity());
+        cartSummaryCache.invalidate(user.getId());
     }
 
     public Optional<CartItemDto> decrementProductQuantity(Long productId) {
-        String username = SecurityContextHolder.getContext().getAuthentication().getName();
-        User user = userRepository.findByEmail(username)
-                .orElseThrow(() -> new UserNotFoundException("User not found"));
+        UserPrincipal user = currentUserService.getCurrentUser();
 
-        CartItem cartItem = cartItemRepository.findByProductIdAndUserId(productId, user.getId()).
-                orElseThrow(() -> new ResourceNotFoundException("Cart item not found"));
+        try {
+            do {
+                if (cartItemRepository.addToQuantity(productId, user.getId(), -1, inventoryReservations.holdUntil()) > 0) {
+                    inventoryReservations.release(productId, 1);
+                    return cartItemRepository.findByProductIdAndUserId(productId, user.getId())
+                            .map(cartItemMapper::toDto);
+                }
+                if (cartItemRepository.deleteIfQuantityAtMost(productId, user.getId(), 1) > 0) {
+                    inventoryReservations.release(productId, 1);
+                    return Optional.empty();
+                }
+                // The line was incremented between the two statements, try again.
+            } while (cartItemRepository.existsByProductIdAndUserId(productId, user.getId()));
+        } finally {
+            cartSummaryCache.invalidate(user.getId());
+        }
+
+        throw new ResourceNotFoundException("Cart item not found");
+    }
 
-        if (cartItem.getQuantity() > 1) {
-            cartItem.setQuantity(cartItem.getQuantity() - 1);
-            return Optional.of(cartItemMapper.toDto(cartItemRepository.save(cartItem)));
+    /**
+     * Removes the cart lines whose stock hold has expired and returns their quantity to stock, a bounded number
+     * of lines per run. A line changed since it was read is kept, as its hold has just been extended.
+     */
+    @Scheduled(fixedDelayString = "${inventory.reservation.release-interval:30s}")
+    public void releaseExpiredReservations() {
+        List<CartItem> expired = cartItemRepository.findReservationsExpiredBefore(ZonedDateTime.now(),
+                Limit.of(MAX_EXPIRED_RESERVATIONS_PER_RUN));
+        for (CartItem cartItem : expired) {
+            if (cartItemRepository.deleteByIdAndVersion(cartItem.getId(), cartItem.getVersion()) > 0) {
+                inventoryReservations.release(cartItem.getProduct().getId(), cartItem.getQuantity());
+                cartSummaryCache.invalidate(cartItem.getUser().getId());
+            }
         }
+    }
 
-        cartItemRepository.delete(cartItem);
-        return Optional.empty();
+    private CartSummaryDto computeCartSummary(Long userId) {
+        List<CartLineSummaryDto> lines = cartItemRepository.findLineSummariesByUserId(userId);
+        int itemCount = 0;
+        BigDecimal total = BigDecimal.ZERO;
+        for (CartLineSummaryDto line : lines) {
+            itemCount += line.getQuantity();
+            total = total.add(line.getLineTotal());
+        }
+        return new CartSummaryDto(List.copyOf(lines), itemCount, total);
+    }
+
+    /**
+     * Inserts a new cart line. The unique constraint on (user, product) guarantees that only one of several
+     * concurrent inserts succeeds; the others get an empty result and should update the existing line.
+     */
+    private Optional<CartItem> createCartItem(Long productId, UserPrincipal user, int quantity, ZonedDateTime reservedUntil) {
+        Product product = productRepository.findById(productId)
+                .orElseThrow(() -> new ResourceNotFoundException("Product not found"));
+
+        CartItem cartItem = new CartItem();
+        cartItem.setProduct(product);
+        cartItem.setUser(userRepository.getReferenceById(user.getId()));
+        cartItem.setQuantity(quantity);
+        cartItem.setReservedUntil(reservedUntil);
+        try {
+            return Optional.of(cartItemRepository.saveAndFlush(cartItem));
+        } catch (DataIntegrityViolationException e) {
+            return Optional.empty();
+        }
     }
 }
@@ -0,0 +1,32 @@
+package com.alten.producttrial.service;
+
+import com.alten.producttrial.config.UserIdentityCache;
+import com.alten.producttrial.config.UserPrincipal;
+import com.alten.producttrial.exception.UserNotFoundException;
+import lombok.RequiredArgsConstructor;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Service;
+
+@Service
+@RequiredArgsConstructor
+public class CurrentUserService {
+
+    private final UserIdentityCache userIdentityCache;
+
+    /**
+     * Returns the identity of the authenticated user. The principal set by the JWT filter is used as is;
+     * any other authentication (e.g. a test or an alternative login mechanism) is resolved through the identity cache.
+     *
+     * @return the current user's principal
+     * @throws UserNotFoundException if the authenticated name does not match any user
+     */
+    public UserPrincipal getCurrentUser() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication.getPrincipal() instanceof UserPrincipal principal) {
+            return principal;
+        }
+        return userIdentityCache.findByEmail(authentication.getName())
+                .orElseThrow(() -> new UserNotFoundException("User not found"));
+    }
+}
@@ -0,0 +1,87 @@
+package com.alten.producttrial.service;
+
+import com.alten.producttrial.config.CsvConfig;
+import com.alten.producttrial.config.MetricsConfig;
+import com.alten.producttrial.dto.ProductDto;
+import com.alten.producttrial.entity.Product;
+import com.alten.producttrial.enums.ProductExportFormat;
+import com.alten.producttrial.mapper.ProductMapper;
+import com.alten.producttrial.repository.ProductRepository;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import io.micrometer.core.annotation.Timed;
+import jakarta.persistence.EntityManager;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+/**
+ * Export of the whole catalog as NDJSON or CSV, in the format read by {@link ProductImportService}.
+ * <p>
+ * Products are read from a forward-only cursor, {@code product.export.fetch-size} rows per round trip, and each
+ * one is written to the output and detached before the next one is read, so that memory use does not depend on
+ * the size of the catalog. The quantity exported is the stock, including the quantity held by cart lines.
+ */
+@Service
+@Timed(MetricsConfig.SERVICE_TIMER)
+public class ProductExportService {
+
+    private final ProductRepository productRepository;
+    private final ProductMapper productMapper;
+    private final EntityManager entityManager;
+    private final ObjectWriter ndjsonWriter;
+    private final ObjectWriter csvWriter;
+    private final int fetchSize;
+
+    public ProductExportService(ProductRepository productRepository,
+                                ProductMapper productMapper,
+                                EntityManager entityManager,
+                                ObjectMapper objectMapper,
+                                @Value("${product.export.fetch-size:500}") int fetchSize) {
+        this.productRepository = productRepository;
+        this.productMapper = productMapper;
+        this.entityManager = entityManager;
+        this.ndjsonWriter = objectMapper.writerFor(ProductDto.class)
+                .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+                .withRootValueSeparator("\n");
+        this.csvWriter = CsvConfig.CSV_MAPPER.writerFor(ProductDto.class)
+                .with(CsvConfig.PRODUCT_SCHEMA)
+                .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        this.fetchSize = fetchSize;
+    }
+
+    /**
+     * Writes all the products ordered by id to the given output, which is flushed but left open.
+     *
+     * @throws IOException if the output cannot be written, for instance because the client went away
+     */
+    @Transactional(readOnly = true)
+    public void exportProducts(ProductExportFormat format, OutputStream output) throws IOException {
+        try (Stream<Product> products = productRepository.streamAllOrderedById(fetchSize);
+             SequenceWriter writer = (format == ProductExportFormat.CSV ? csvWriter : ndjsonWriter).writeValues(output)) {
+            Iterator<Product> iterator = products.iterator();
+            boolean empty = !iterator.hasNext();
+            while (iterator.hasNext()) {
+                Product product = iterator.next();
+                ProductDto dto = productMapper.toDto(product);
+                // The stock, as the import expects it, rather than the quantity left to sell.
+                dto.setQuantity(product.getQuantity() + product.getHeldQuantity());
+                writer.write(dto);
+                entityManager.detach(product);
+            }
+            if (format == ProductExportFormat.NDJSON && !empty) {
+                // The separator only goes between products, but every NDJSON line ends with a newline.
+                writer.flush();
+                output.write('\n');
+            }
+        }
+        output.flush();
+    }
+}
@@ -0,0 +1,313 @@
+package com.alten.producttrial.service;
+
+import com.alten.producttrial.config.CsvConfig;
+import com.alten.producttrial.config.MetricsConfig;
+import com.alten.producttrial.config.ProductChangeListener;
+import com.alten.producttrial.dto.ProductDto;
+import com.alten.producttrial.dto.ProductImportErrorDto;
+import com.alten.producttrial.dto.ProductImportResultDto;
+import com.alten.producttrial.entity.Product;
+import com.alten.producttrial.entity.ProductImport;
+import com.alten.producttrial.enums.ProductImportStatus;
+import com.alten.producttrial.exception.BadRequestException;
+import com.alten.producttrial.exception.ResourceNotFoundException;
+import com.alten.producttrial.mapper.ProductMapper;
+import com.alten.producttrial.repository.ProductImportRepository;
+import com.alten.producttrial.repository.ProductRepository;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.csv.CsvSchema;
+import io.micrometer.core.annotation.Timed;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+
+/**
+ * Bulk import of products from a CSV or NDJSON stream.
+ * <p>
+ * The stream is read one row at a time and never held in memory. Valid rows are upserted on their code in
+ * JDBC batches of {@code product.import.batch-size} rows, each batch in its own transaction together with the
+ * import checkpoint, so that an interrupted import can be resumed with the same import id: the rows already
+ * committed are skipped and the import goes on from the first row of the batch that was lost.
+ */
+@Service
+@Timed(MetricsConfig.SERVICE_TIMER)
+public class ProductImportService {
+
+    public static final MediaType TEXT_CSV = new MediaType("text", "csv");
+    public static final int MAX_REPORTED_ERRORS = 100;
+
+    private static final Pattern IMPORT_ID = Pattern.compile("[A-Za-z0-9._-]{1,64}");
+
+    /**
+     * Length of the text columns of products; a longer value would fail the whole JDBC batch.
+     */
+    private static final int MAX_TEXT_LENGTH = 255;
+    private static final List<Map.Entry<String, Function<ProductDto, String>>> TEXT_COLUMNS = List.of(
+            Map.entry("code", ProductDto::getCode),
+            Map.entry("name", ProductDto::getName),
+            Map.entry("description", ProductDto::getDescription),
+            Map.entry("image", ProductDto::getImage),
+            Map.entry("category", ProductDto::getCategory),
+            Map.entry("internalReference", ProductDto::getInternalReference));
+
+    private final ProductRepository productRepository;
+    private final ProductImportRepository productImportRepository;
+    private final ProductMapper productMapper;
+    private final ProductChangeListener productChangeListener;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+
+    public ProductImportService(ProductRepository productRepository,
+                                ProductImportRepository productImportRepository,
+                                ProductMapper productMapper,
+                                ProductChangeListener productChangeListener,
+                                ObjectMapper objectMapper,
+                                PlatformTransactionManager transactionManager,
+                                @Value("${product.import.batch-size:500}") int batchSize) {
+        this.productRepository = productRepository;
+        this.productImportRepository = productImportRepository;
+        this.productMapper = productMapper;
+        this.productChangeListener = productChangeListener;
+        this.objectMapper = objectMapper;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Imports products from a CSV file with a header line naming the {@link ProductDto} properties, or from
+     * NDJSON with one product per line. Products are matched on their code: unknown codes are created and
+     * known ones are updated.
+     *
+     * @param body        the CSV or NDJSON stream
+     * @param contentType {@code text/csv} or {@code application/x-ndjson}
+     * @param importId    id of the import to resume, or of the import to start; generated when {@code null}
+     * @return the import counters and the rows rejected by this attempt
+     * @throws BadRequestException if the import id is invalid, the import is already completed or the CSV is malformed
+     * @throws IOException         if the stream cannot be read, for instance because the client went away
+     */
+    public ProductImportResultDto importProducts(InputStream body, MediaType contentType, String importId) throws IOException {
+        ProductImport productImport = startOrResume(importId);
+        long rowsToSkip = productImport.getRowsRead();
+        List<Product> batch = new ArrayList<>(batchSize);
+        List<ProductImportErrorDto> errors = new ArrayList<>();
+        long rowsRead = rowsToSkip;
+        long batchRejections = 0;
+
+        try (ProductRowReader rows = isNdjson(contentType) ? new NdjsonRowReader(body) : new CsvRowReader(body)) {
+            ProductRow row;
+            while ((row = rows.next()) != null) {
+                if (row.number() <= rowsToSkip) {
+                    continue;
+                }
+                rowsRead = row.number();
+                String error = row.error() != null ? row.error() : validate(row.product());
+                if (error != null) {
+                    batchRejections++;
+                    if (errors.size() < MAX_REPORTED_ERRORS) {
+                        errors.add(new ProductImportErrorDto(row.number(), row.product() != null ? row.product().getCode() : null, error));
+                    }
+                    continue;
+                }
+                batch.add(productMapper.toEntity(row.product()));
+                if (batch.size() == batchSize) {
+                    productImport = commitBatch(productImport, batch, rowsRead, batchRejections, false);
+                    batch.clear();
+                    batchRejections = 0;
+                }
+            }
+        }
+        productImport = commitBatch(productImport, batch, rowsRead, batchRejections, true);
+
+        return new ProductImportResultDto(productImport.getId(), productImport.getStatus(), productImport.getRowsRead(),
+                productImport.getRowsImported(), productImport.getRowsRejected(), errors);
+    }
+
+    /**
+     * Returns the checkpoint of an import, to know where an interrupted import stopped.
+     *
+     * @throws ResourceNotFoundException if no import has this id
+     */
+    public ProductImportResultDto getImport(String importId) {
+        ProductImport productImport = productImportRepository.findById(importId)
+                .orElseThrow(() -> new ResourceNotFoundException("Product import not found with id: " + importId));
+        return new ProductImportResultDto(productImport.getId(), productImport.getStatus(), productImport.getRowsRead(),
+                productImport.getRowsImported(), productImport.getRowsRejected(), List.of());
+    }
+
+    private ProductImport startOrResume(String importId) {
+        if (importId == null) {
+            importId = UUID.randomUUID().toString();
+        } else if (!IMPORT_ID.matcher(importId).matches()) {
+            throw new BadRequestException("Import id must be 1 to 64 letters, digits, '.', '_' or '-'");
+        }
+        ProductImport productImport = productImportRepository.findById(importId).orElse(null);
+        if (productImport == null) {
+            return productImportRepository.save(ProductImport.builder()
+                    .id(importId)
+                    .status(ProductImportStatus.IN_PROGRESS)
+                    .createdAt(ZonedDateTime.now())
+                    .build());
+        }
+        if (productImport.getStatus() == ProductImportStatus.COMPLETED) {
+            throw new BadRequestException("Product import " + importId + " is already completed");
+        }
+        return productImport;
+    }
+
+    /**
+     * Writes a batch with the next checkpoint, built as a new object so that the counters of the current one are
+     * only replaced once the transaction has committed.
+     *
+     * @return the committed checkpoint
+     */
+    private ProductImport commitBatch(ProductImport productImport, List<Product> batch, long rowsRead, long rejections, boolean last) {
+        ProductImport checkpoint = ProductImport.builder()
+                .id(productImport.getId())
+                .status(last ? ProductImportStatus.COMPLETED : productImport.getStatus())
+                .rowsRead(rowsRead)
+                .rowsImported(productImport.getRowsImported() + batch.size())
+                .rowsRejected(productImport.getRowsRejected() + rejections)
+                .createdAt(productImport.getCreatedAt())
+                .updatedAt(ZonedDateTime.now())
+                .build();
+        return transactionTemplate.execute(status -> {
+            productChangeListener.productsChanged(productRepository.upsertAllByCode(batch));
+            return productImportRepository.save(checkpoint);
+        });
+    }
+
+    private static String validate(ProductDto product) {
+        if (StringUtils.isBlank(product.getCode())) {
+            return "code is required";
+        }
+        if (StringUtils.isBlank(product.getName())) {
+            return "name is required";
+        }
+        if (StringUtils.isBlank(product.getCategory())) {
+            return "category is required";
+        }
+        if (product.getPrice() == null || product.getPrice() < 0) {
+            return "price is required and must not be negative";
+        }
+        if (product.getQuantity() == null || product.getQuantity() < 0) {
+            return "quantity is required and must not be negative";
+        }
+        for (Map.Entry<String, Function<ProductDto, String>> column : TEXT_COLUMNS) {
+            String value = column.getValue().apply(product);
+            if (value != null && value.length() > MAX_TEXT_LENGTH) {
+                return column.getKey() + " must be at most " + MAX_TEXT_LENGTH + " characters";
+            }
+        }
+        if (product.getRating() != null && !(product.getRating() >= 0 && product.getRating() <= ProductDto.MAX_RATING)) {
+            return "rating must be between 0 and " + ProductDto.MAX_RATING;
+        }
+        return null;
+    }
+
+    private static boolean isNdjson(MediaType contentType) {
+        if (contentType != null && contentType.isCompatibleWith(MediaType.APPLICATION_NDJSON)) {
+            return true;
+        }
+        if (contentType != null && contentType.isCompatibleWith(TEXT_CSV)) {
+            return false;
+        }
+        throw new BadRequestException("Products can only be imported from " + TEXT_CSV + " or " + MediaType.APPLICATION_NDJSON);
+    }
+
+    /**
+     * A row of the import: either the product it holds or the reason why it could not be read.
+     */
+    private record ProductRow(long number, ProductDto product, String error) {
+    }
+
+    private interface ProductRowReader extends Closeable {
+
+        /**
+         * @return the next row, or {@code null} at the end of the stream
+         */
+        ProductRow next() throws IOException;
+    }
+
+    private class NdjsonRowReader implements ProductRowReader {
+
+        private final BufferedReader reader;
+        private long number;
+
+        private NdjsonRowReader(InputStream body) {
+            this.reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8));
+        }
+
+        @Override
+        public ProductRow next() throws IOException {
+            String line;
+            do {
+                line = reader.readLine();
+                if (line == null) {
+                    return null;
+                }
+            } while (line.isBlank());
+            number++;
+            try {
+                return new ProductRow(number, objectMapper.readValue(line, ProductDto.class), null);
+            } catch (JsonProcessingException e) {
+                return new ProductRow(number, null, e.getOriginalMessage());
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            reader.close();
+        }
+    }
+
+    private class CsvRowReader implements ProductRowReader {
+
+        private final MappingIterator<ProductDto> iterator;
+        private long number;
+
+        private CsvRowReader(InputStream body) throws IOException {
+            this.iterator = CsvConfig.CSV_MAPPER.readerFor(ProductDto.class)
+                    .with(CsvSchema.emptySchema().withHeader())
+                    .readValues(body);
+        }
+
+        @Override
+        public ProductRow next() throws IOException {
+            try {
+                if (!iterator.hasNextValue()) {
+                    return null;
+                }
+                number++;
+                return new ProductRow(number, iterator.nextValue(), null);
+            } catch (JsonParseException e) {
+                // A syntax error leaves the parser in an unknown state, so the rest of the file cannot be trusted.
+                throw new BadRequestException("Malformed CSV at row " + (number + 1) + ": " + e.getOriginalMessage());
+            } catch (JsonProcessingException e) {
+                // The iterator skips the rest of a row it failed to map, so reading can go on with the next row.
+                return new ProductRow(number, null, e.getOriginalMessage());
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            iterator.close();
+        }
+    }
+}
@@ -1,25 +1,70 @@
 package com.alten.producttrial.service;
 
+import com.alten.producttrial.config.MetricsConfig;
+import com.alten.producttrial.config.OptimisticLockRetry;
+import com.alten.producttrial.config.ProductCatalogSnapshotCache;
+import com.alten.producttrial.config.ProductChangeListener;
+import com.alten.producttrial.config.ProductSearchIndex;
+import com.alten.producttrial.config.ProductSuggester;
+import com.alten.producttrial.dto.ProductBulkDeleteRequest;
+import com.alten.producttrial.dto.ProductBulkResultDto;
+import com.alten.producttrial.dto.ProductBulkUpdateRequest;
+import com.alten.producttrial.dto.ProductCatalogSnapshot;
+import com.alten.producttrial.dto.ProductFilter;
+import com.alten.producttrial.dto.ProductPageDto;
+import com.alten.producttrial.dto.ProductSearchResultDto;
+import com.alten.producttrial.dto.ProductSuggestionDto;
+import com.alten.producttrial.exception.BadRequestException;
+import com.alten.producttrial.exception.ConflictException;
+import com.alten.producttrial.exception.PreconditionFailedException;
 import com.alten.producttrial.repository.ProductRepository;
 import com.alten.producttrial.dto.ProductDto;
 import com.alten.producttrial.entity.Product;
 import com.alten.producttrial.exception.ResourceNotFoundException;
 import com.alten.producttrial.mapper.ProductMapper;
+import io.micrometer.core.annotation.Timed;
 import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.nio.charset.StandardCharsets;
 import java.time.ZonedDateTime;
+import java.util.Base64;
 import java.util.List;
+import java.util.Objects;
+
+import static com.alten.producttrial.repository.ProductSpecifications.idGreaterThan;
+import static com.alten.producttrial.repository.ProductSpecifications.matches;
 
 @Service
+@Timed(MetricsConfig.SERVICE_TIMER)
 @RequiredArgsConstructor
 public class ProductService {
 
+    public static final int DEFAULT_PAGE_SIZE = 20;
+    public static final int MAX_PAGE_SIZE = 100;
+    public static final int MAX_SEARCH_RESULTS = 1000;
+    public static final int DEFAULT_SUGGESTIONS = 10;
+    public static final int MAX_SUGGESTIONS = 20;
+
     private final ProductRepository productRepository;
     private final ProductMapper productMapper;
+    private final ProductCatalogSnapshotCache productCatalogSnapshotCache;
+    private final ProductSearchIndex productSearchIndex;
+    private final ProductSuggester productSuggester;
+    private final ProductChangeListener productChangeListener;
+    private final OptimisticLockRetry optimisticLockRetry;
+    private final TransactionTemplate transactionTemplate;
 
+    /**
+     * @throws BadRequestException if the rating is out of range
+     */
     public ProductDto createProduct(ProductDto dto) {
+        if (dto.getRating() != null && !(dto.getRating() >= 0 && dto.getRating() <= ProductDto.MAX_RATING)) {
+            throw new BadRequestException("Rating must be between 0 and " + ProductDto.MAX_RATING);
+        }
         Product product = productMapper.toEntity(dto);
         product.setCreatedAt(ZonedDateTime.now());
         product = productRepository.save(product);
@@ -33,6 +78,85 @@ public class ProductService {
                 .toList();
     }
 
+    /**
+     * Returns the whole catalog pre-serialized as a JSON array. The snapshot is only rebuilt after
+     * products have been written, and then only the written products are serialized again.
+     */
+    public ProductCatalogSnapshot getCatalogSnapshot() {
+        return productCatalogSnapshotCache.getSnapshot();
+    }
+
+    /**
+     * Searches products by text, ranked by relevance, with the category and price range counts of all
+     * the matches. Only the first {@link #MAX_SEARCH_RESULTS} matches can be paged through.
+     *
+     * @param text   words to search for in the code, name, category and description; blank to match every product
+     * @param filter optional filters on category, inventory status and price range
+     * @param page   zero-based page number
+     * @param size   number of products per page, capped at {@link #MAX_PAGE_SIZE}
+     * @return the page content, the total number of matches and the facet counts
+     * @throws BadRequestException if the page or the size is invalid
+     */
+    public ProductSearchResultDto searchProducts(String text, ProductFilter filter, int page, int size) {
+        if (size < 1 || size > MAX_PAGE_SIZE) {
+            throw new BadRequestException("Page size must be between 1 and " + MAX_PAGE_SIZE);
+        }
+        if (page < 0 || (long) (page + 1) * size > MAX_SEARCH_RESULTS) {
+            throw new BadRequestException("Only the first " + MAX_SEARCH_RESULTS + " search results can be paged through");
+        }
+        return productSearchIndex.search(text, filter, page, size);
+    }
+
+    /**
+     * Suggests products as the user types, from the start of their name, code or of a word of their name,
+     * best rated first.
+     *
+     * @param prefix what the user typed so far; no suggestion is returned when it is blank
+     * @param limit  maximum number of suggestions, capped at {@link #MAX_SUGGESTIONS}
+     * @return the suggested products
+     * @throws BadRequestException if the limit is invalid
+     */
+    public List<ProductSuggestionDto> suggestProducts(String prefix, int limit) {
+        if (limit < 1 || limit > MAX_SUGGESTIONS) {
+            throw new BadRequestException("Suggestion limit must be between 1 and " + MAX_SUGGESTIONS);
+        }
+        if (prefix == null || prefix.isBlank()) {
+            return List.of();
+        }
+        return productSuggester.suggest(prefix, limit);
+    }
+
+    /**
+     * Returns one page of products ordered by id, using keyset pagination: the cursor carries the
+     * id of the last product of the previous page and the next page is read with {@code id > cursor},
+     * so the cost of a page does not depend on how deep into the catalog it is.
+     *
+     * @param filter optional filters on category, inventory status and price range
+     * @param cursor continuation token returned with the previous page, or {@code null} for the first page
+     * @param size   maximum number of products to return, capped at {@link #MAX_PAGE_SIZE}
+     * @return the page content and the cursor of the next page, if any
+     * @throws BadRequestException if the cursor or the size is invalid
+     */
+    @Transactional(readOnly = true)
+    public ProductPageDto getProductsPage(ProductFilter filter, String cursor, int size) {
+        if (size < 1 || size > MAX_PAGE_SIZE) {
+            throw new BadRequestException("Page size must be between 1 and " + MAX_PAGE_SIZE);
+        }
+        Long afterId = decodeCursor(cursor);
+
+        // Read one extra row to know whether another page follows without issuing a count query.
+        List<Product> products = productRepository.findBy(matches(filter).and(idGreaterThan(afterId)),
+                query -> query.sortBy(Sort.by("id")).limit(size + 1).all());
+
+        boolean hasNext = products.size() > size;
+        List<ProductDto> content = products.stream()
+                .limit(size)
+                .map(productMapper::toDto)
+                .toList();
+        String nextCursor = hasNext ? encodeCursor(content.getLast().getId()) : null;
+        return new ProductPageDto(content, nextCursor);
+    }
+
     @Transactional(readOnly = true)
     public ProductDto getProductById(Long id) {
         return productRepository.findById(id)
@@ -40,14 +164,31 @@ public class ProductService {
                 .orElseThrow(() -> new ResourceNotFoundException("Product not found with id: " + id));
     }
 
-    public ProductDto updateProduct(Long id, ProductDto dto) {
-        Product product = productRepository.findById(id)
-                .orElseThrow(() -> new ResourceNotFoundException("Product not found with id: " + id));
-        product.setName(dto.getName());
-        product.setPrice(dto.getPrice());
-        product.setInventoryStatus(dto.getInventoryStatus());
-        productRepository.save(product);
-        return productMapper.toDto(product);
+    /**
+     * Updates the name, price and inventory status of a product. The update is rejected rather than applied over
+     * a concurrent one: an admin edit is based on what the admin saw, so it is never replayed automatically.
+     * The managed product is changed in a transaction, so that only the edited columns are written and a quantity
+     * changed meanwhile by the stock reconciliation is kept.
+     *
+     * @param expectedVersion version the client last read, from {@code If-Match}, or {@code null} not to check it
+     * @return the updated product, with its new version
+     * @throws ResourceNotFoundException    if no product has this id
+     * @throws PreconditionFailedException if the product is no longer at the expected version
+     * @throws ConflictException           if the product is updated concurrently
+     */
+    public ProductDto updateProduct(Long id, ProductDto dto, Long expectedVersion) {
+        return optimisticLockRetry.execute("product.update", 1, () -> transactionTemplate.execute(status -> {
+            Product product = productRepository.findById(id)
+                    .orElseThrow(() -> new ResourceNotFoundException("Product not found with id: " + id));
+            if (expectedVersion != null && !expectedVersion.equals(product.getVersion())) {
+                throw new PreconditionFailedException("Product " + id + " has been modified since version " + expectedVersion);
+            }
+            product.setName(dto.getName());
+            product.setPrice(dto.getPrice());
+            product.setInventoryStatus(dto.getInventoryStatus());
+            // Flushed before mapping, so that the product is returned with its new version.
+            return productMapper.toDto(productRepository.saveAndFlush(product));
+        }));
     }
 
     public void deleteProduct(Long id) {
@@ -55,4 +196,74 @@ public class ProductService {
                 .orElseThrow(() -> new ResourceNotFoundException("Product not found with id: " + id));
         productRepository.delete(product);
     }
+
+    /**
+     * Sets the price and/or the inventory status of many products at once, with set-based statements in a single
+     * transaction rather than one read and one write per product. The updated products are evicted from the caches
+     * once the transaction commits.
+     *
+     * @param request the products to update, by ids or by filter, and their new price and inventory status
+     * @return the number of updated products
+     * @throws BadRequestException if the selection is invalid, nothing is to be updated or the price is negative
+     */
+    @Transactional
+    public ProductBulkResultDto bulkUpdateProducts(ProductBulkUpdateRequest request) {
+        if (request.getPrice() == null && request.getInventoryStatus() == null) {
+            throw new BadRequestException("A price or an inventory status to set is required");
+        }
+        if (request.getPrice() != null && request.getPrice() < 0) {
+            throw new BadRequestException("Price must not be negative");
+        }
+        List<Long> ids = selectProductIds(request.getIds(), request.getFilter());
+        int updated = productRepository.updatePriceAndInventoryStatus(ids, request.getPrice(), request.getInventoryStatus());
+        productChangeListener.productsChanged(ids);
+        return new ProductBulkResultDto(updated);
+    }
+
+    /**
+     * Deletes many products at once, with set-based statements in a single transaction. The products are also
+     * removed from the carts and wishlists that hold them, and evicted from the caches once the transaction commits.
+     *
+     * @param request the products to delete, by ids or by filter
+     * @return the number of deleted products
+     * @throws BadRequestException if the selection is invalid
+     */
+    @Transactional
+    public ProductBulkResultDto bulkDeleteProducts(ProductBulkDeleteRequest request) {
+        List<Long> ids = selectProductIds(request.getIds(), request.getFilter());
+        int deleted = productRepository.deleteAllWithCartAndWishlistEntries(ids);
+        productChangeListener.productsChanged(ids);
+        return new ProductBulkResultDto(deleted);
+    }
+
+    /**
+     * Resolves the products of a bulk operation. Exactly one of the ids and the filter must be given, and the filter
+     * must have at least one criterion, so that a forgotten selection never targets the whole catalog.
+     */
+    private List<Long> selectProductIds(List<Long> ids, ProductFilter filter) {
+        boolean byFilter = filter != null && (filter.getCategory() != null || filter.getInventoryStatus() != null
+                || filter.getMinPrice() != null || filter.getMaxPrice() != null);
+        if ((ids != null) == byFilter) {
+            throw new BadRequestException("Products must be selected either by ids or by a filter with at least one criterion");
+        }
+        if (byFilter) {
+            return productRepository.findIdsMatching(filter);
+        }
+        return ids.stream().filter(Objects::nonNull).distinct().toList();
+    }
+
+    private static String encodeCursor(Long id) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(String.valueOf(id).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static Long decodeCursor(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return null;
+        }
+        try {
+            return Long.valueOf(new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8));
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException("Invalid cursor: " + cursor);
+        }
+    }
 }
@@ -0,0 +1,132 @@
+package com.alten.producttrial.service;
+
+import com.alten.producttrial.config.JwtTokenProvider;
+import com.alten.producttrial.config.MetricsConfig;
+import com.alten.producttrial.config.RevokedSessions;
+import com.alten.producttrial.config.UserIdentityCache;
+import com.alten.producttrial.config.UserPrincipal;
+import com.alten.producttrial.dto.TokenResponse;
+import com.alten.producttrial.entity.RefreshToken;
+import com.alten.producttrial.entity.User;
+import com.alten.producttrial.exception.InvalidCredentialsException;
+import com.alten.producttrial.repository.RefreshTokenRepository;
+import io.micrometer.core.annotation.Timed;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.util.Base64;
+import java.util.UUID;
+
+/**
+ * Issues short-lived access tokens together with refresh tokens that are exchanged for new ones.
+ * <p>
+ * A login opens a session. Each refresh token can be exchanged once, for a new access token and the next refresh
+ * token of the session; presenting an exchanged token again means it was stolen, so the whole session is revoked.
+ * Revoking a session also rejects its access tokens, see {@link RevokedSessions}.
+ */
+@Service
+@Timed(MetricsConfig.SERVICE_TIMER)
+public class TokenService {
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+    private static final int REFRESH_TOKEN_BYTES = 32;
+
+    private final RefreshTokenRepository refreshTokenRepository;
+    private final JwtTokenProvider jwtTokenProvider;
+    private final RevokedSessions revokedSessions;
+    private final UserIdentityCache userIdentityCache;
+    private final Duration refreshTokenLifetime;
+
+    public TokenService(RefreshTokenRepository refreshTokenRepository,
+                        JwtTokenProvider jwtTokenProvider,
+                        RevokedSessions revokedSessions,
+                        UserIdentityCache userIdentityCache,
+                        @Value("${jwt.refresh-expiration:30d}") Duration refreshTokenLifetime) {
+        this.refreshTokenRepository = refreshTokenRepository;
+        this.jwtTokenProvider = jwtTokenProvider;
+        this.revokedSessions = revokedSessions;
+        this.userIdentityCache = userIdentityCache;
+        this.refreshTokenLifetime = refreshTokenLifetime;
+    }
+
+    /**
+     * Opens a session for an authenticated user.
+     */
+    public TokenResponse login(User user) {
+        return issueTokens(UserPrincipal.of(user), UUID.randomUUID().toString());
+    }
+
+    /**
+     * Exchanges a refresh token for a new access token and refresh token of the same session.
+     *
+     * @throws InvalidCredentialsException if the token is unknown, expired, revoked or already exchanged
+     */
+    public TokenResponse refresh(String refreshToken) {
+        RefreshToken stored = findRefreshToken(refreshToken);
+        ZonedDateTime now = ZonedDateTime.now();
+        if (stored.getRevokedAt() != null || stored.getExpiresAt().isBefore(now)) {
+            throw new InvalidCredentialsException("Invalid refresh token.");
+        }
+        // The new access token carries the current roles of the user.
+        UserPrincipal user = userIdentityCache.findByEmail(stored.getUserEmail())
+                .orElseThrow(() -> new InvalidCredentialsException("Invalid refresh token."));
+        if (refreshTokenRepository.markUsed(stored.getId(), now) == 0) {
+            revokeSession(stored.getSessionId());
+            throw new InvalidCredentialsException("Refresh token already used, the session has been revoked.");
+        }
+        return issueTokens(user, stored.getSessionId());
+    }
+
+    /**
+     * Ends the session of a refresh token, rejecting its refresh tokens and access tokens. Unknown tokens are ignored.
+     */
+    public void logout(String refreshToken) {
+        if (refreshToken == null) {
+            return;
+        }
+        refreshTokenRepository.findByTokenHash(digest(refreshToken))
+                .ifPresent(stored -> revokeSession(stored.getSessionId()));
+    }
+
+    private TokenResponse issueTokens(UserPrincipal user, String sessionId) {
+        byte[] bytes = new byte[REFRESH_TOKEN_BYTES];
+        RANDOM.nextBytes(bytes);
+        String refreshToken = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+        refreshTokenRepository.save(RefreshToken.builder()
+                .tokenHash(digest(refreshToken))
+                .sessionId(sessionId)
+                .userEmail(user.getEmail())
+                .expiresAt(ZonedDateTime.now().plus(refreshTokenLifetime))
+                .build());
+        String accessToken = jwtTokenProvider.generateToken(user, sessionId);
+        return new TokenResponse(accessToken, refreshToken, jwtTokenProvider.getExpiration() / 1000);
+    }
+
+    private RefreshToken findRefreshToken(String refreshToken) {
+        if (refreshToken == null || refreshToken.isBlank()) {
+            throw new InvalidCredentialsException("Invalid refresh token.");
+        }
+        return refreshTokenRepository.findByTokenHash(digest(refreshToken))
+                .orElseThrow(() -> new InvalidCredentialsException("Invalid refresh token."));
+    }
+
+    private void revokeSession(String sessionId) {
+        refreshTokenRepository.revokeSession(sessionId, ZonedDateTime.now());
+        revokedSessions.add(sessionId);
+    }
+
+    private static String digest(String token) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.US_ASCII));
+            return Base64.getEncoder().encodeToString(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
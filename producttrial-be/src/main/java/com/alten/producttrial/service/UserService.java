@@ -1,30 +1,64 @@
 package com.alten.producttrial.service;
 
+import com.alten.producttrial.config.MetricsConfig;
+import com.alten.producttrial.config.OptimisticLockRetry;
+import com.alten.producttrial.config.PasswordHasher;
 import com.alten.producttrial.dto.LoginRequest;
 import com.alten.producttrial.dto.UserDto;
 import com.alten.producttrial.entity.User;
+import com.alten.producttrial.enums.Role;
+import com.alten.producttrial.exception.ConflictException;
 import com.alten.producttrial.exception.InvalidCredentialsException;
+import com.alten.producttrial.exception.TooManyRequestsException;
 import com.alten.producttrial.exception.UserAlreadyExistsException;
 import com.alten.producttrial.exception.UserNotFoundException;
 import com.alten.producttrial.repository.UserRepository;
-import lombok.AllArgsConstructor;
-import org.springframework.security.crypto.password.PasswordEncoder;
+import io.micrometer.core.annotation.Timed;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Accounts and authentication. The methods that hash a password are not transactional, so that no connection is
+ * held while the hash waits for a thread of the {@link PasswordHasher}.
+ */
 @Service
-@AllArgsConstructor
+@Timed(MetricsConfig.SERVICE_TIMER)
 public class UserService {
 
     private final UserRepository userRepository;
 
-    private final PasswordEncoder passwordEncoder;
+    private final PasswordHasher passwordHasher;
+
+    private final OptimisticLockRetry optimisticLockRetry;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final Set<String> adminEmails;
+
+    public UserService(UserRepository userRepository,
+                       PasswordHasher passwordHasher,
+                       OptimisticLockRetry optimisticLockRetry,
+                       TransactionTemplate transactionTemplate,
+                       @Value("${user.admin-emails:}") Set<String> adminEmails) {
+        this.userRepository = userRepository;
+        this.passwordHasher = passwordHasher;
+        this.optimisticLockRetry = optimisticLockRetry;
+        this.transactionTemplate = transactionTemplate;
+        this.adminEmails = adminEmails;
+    }
 
     /**
-     * Creates a new user account.
+     * Creates a new user account. Accounts created with one of the {@code user.admin-emails} are granted the
+     * {@link Role#ADMIN} role.
      *
      * @param userDto
      * @return the created user entity
      * @throws UserAlreadyExistsException if the email is already taken
+     * @throws TooManyRequestsException   if too many passwords are being hashed
      */
     public User createAccount(UserDto userDto) {
         if (userRepository.findByEmail(userDto.getEmail()).isPresent()) {
@@ -35,27 +69,67 @@ public class UserService {
         user.setUsername(userDto.getUsername());
         user.setFirstname(userDto.getFirstname());
         user.setEmail(userDto.getEmail());
-        user.setPassword(passwordEncoder.encode(userDto.getPassword()));
+        user.setPassword(passwordHasher.encode(userDto.getPassword()));
+        if (adminEmails.contains(userDto.getEmail())) {
+            user.setRoles(EnumSet.of(Role.ADMIN));
+        }
 
         return userRepository.save(user);
     }
 
     /**
-     * Authenticates the user based on email and password.
+     * Authenticates the user based on email and password. A password hashed with another strength than the
+     * configured one is hashed again, if the hashing threads are not too busy. Only the hash is written, so that
+     * the roles and token version the user was read with never overwrite a change made while hashing.
      *
      * @param loginRequest the login request containing the user's credentials
      * @return the authenticated user entity
      * @throws UserNotFoundException       if no user is found with the given email
      * @throws InvalidCredentialsException if the password is incorrect
+     * @throws TooManyRequestsException    if too many passwords are being checked
      */
     public User authenticate(LoginRequest loginRequest) {
         User user = userRepository.findByEmail(loginRequest.getEmail())
                 .orElseThrow(() -> new UserNotFoundException("User not found with email: " + loginRequest.getEmail()));
 
-        if (!passwordEncoder.matches(loginRequest.getPassword(), user.getPassword())) {
+        if (!passwordHasher.matches(loginRequest.getPassword(), user.getPassword())) {
             throw new InvalidCredentialsException("Invalid credentials provided.");
         }
 
+        if (passwordHasher.needsRehash(user.getPassword())) {
+            try {
+                String rehashed = passwordHasher.encode(loginRequest.getPassword());
+                if (userRepository.updatePassword(user.getId(), user.getPassword(), rehashed) == 1) {
+                    user.setPassword(rehashed);
+                }
+            } catch (TooManyRequestsException e) {
+                // The login succeeded, the hash is replaced on a later one.
+            }
+        }
+
         return user;
     }
+
+    /**
+     * Replaces the roles of a user and increments their token version, so that the access tokens carrying the
+     * former roles are rejected; the next refresh issues one with the new roles. Each attempt reads and writes the
+     * user in one transaction, and a concurrent change of the same user makes it start over from the new roles.
+     *
+     * @return the updated user entity
+     * @throws UserNotFoundException if no user has the given id
+     * @throws ConflictException     if the user is still changed concurrently after the retries
+     */
+    public User updateRoles(Long id, Set<Role> roles) {
+        Set<Role> updated = roles == null || roles.isEmpty() ? EnumSet.noneOf(Role.class) : EnumSet.copyOf(roles);
+        return optimisticLockRetry.execute("user.roles", () -> transactionTemplate.execute(status -> {
+            User user = userRepository.findById(id)
+                    .orElseThrow(() -> new UserNotFoundException("User not found with id: " + id));
+            if (!updated.equals(user.getRoles())) {
+                user.setRoles(updated);
+                user.setTokenVersion(user.getTokenVersion() + 1);
+                user = userRepository.saveAndFlush(user);
+            }
+            return user;
+        }));
+    }
 }
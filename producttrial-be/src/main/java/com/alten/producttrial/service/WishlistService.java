@@ -1,37 +1,35 @@
 package com.alten.producttrial.service;
 
+import com.alten.producttrial.config.MetricsConfig;
+import com.alten.producttrial.config.UserPrincipal;
 import com.alten.producttrial.dto.WishlistDto;
-import com.alten.producttrial.entity.Product;
-import com.alten.producttrial.entity.User;
 import com.alten.producttrial.entity.Wishlist;
 import com.alten.producttrial.exception.ResourceNotFoundException;
-import com.alten.producttrial.exception.UserNotFoundException;
 import com.alten.producttrial.repository.ProductRepository;
 import com.alten.producttrial.repository.UserRepository;
 import com.alten.producttrial.repository.WishlistRepository;
+import io.micrometer.core.annotation.Timed;
 import lombok.RequiredArgsConstructor;
-import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.util.ArrayList;
 import java.util.List;
-import java.util.stream.Collectors;
 
 @Service
+@Timed(MetricsConfig.SERVICE_TIMER)
 @RequiredArgsConstructor
 public class WishlistService {
 
     private final WishlistRepository wishlistRepository;
     private final UserRepository userRepository;
     private final ProductRepository productRepository;
+    private final CurrentUserService currentUserService;
 
 
     @Transactional(readOnly = true)
     public WishlistDto getWishlistForCurrentUser() {
-        String username = SecurityContextHolder.getContext().getAuthentication().getName();
-        User user = userRepository.findByEmail(username)
-                .orElseThrow(() -> new UserNotFoundException("User not found"));
+        UserPrincipal user = currentUserService.getCurrentUser();
 
         Wishlist wishlist = wishlistRepository.findByUserId(user.getId())
                 .orElseGet(() -> createWishlistForUser(user));
@@ -40,59 +38,58 @@ public class WishlistService {
     }
 
 
-    @Transactional
+    /**
+     * Adds a product to the wishlist of the current user. Not transactional, so that the insert commits on its own:
+     * when the same product is added twice at once, as on a double click, the insert that loses on the primary key
+     * finds the product already there and succeeds too.
+     */
     public WishlistDto addProductToWishlist(Long productId) {
         Wishlist wishlist = getOrCreateWishlistForCurrentUser();
-        Product product = productRepository.findById(productId)
-                .orElseThrow(() -> new ResourceNotFoundException("Product not found: " + productId));
-
-        if (wishlist.getProducts() == null) {
-            wishlist.setProducts(new ArrayList<>());
+        if (!productRepository.existsById(productId)) {
+            throw new ResourceNotFoundException("Product not found: " + productId);
         }
-        if (!wishlist.getProducts().contains(product)) {
-            wishlist.getProducts().add(product);
+
+        try {
+            wishlistRepository.addProduct(wishlist.getId(), productId);
+        } catch (DataIntegrityViolationException e) {
+            // Added concurrently by another request.
         }
 
-        return mapToDTO(wishlistRepository.save(wishlist));
+        return mapToDTO(wishlist);
     }
 
 
     @Transactional
     public WishlistDto removeProductFromWishlist(Long productId) {
-        Product product = productRepository.findById(productId)
-                .orElseThrow(() -> new ResourceNotFoundException("Product not found: " + productId));
+        if (!productRepository.existsById(productId)) {
+            throw new ResourceNotFoundException("Product not found: " + productId);
+        }
 
 
         Wishlist wishlist = getOrCreateWishlistForCurrentUser();
 
-        List<Product> products = new ArrayList<>(wishlist.getProducts());
-        products.remove(product);
-        wishlist.setProducts(products);
+        wishlistRepository.removeProduct(wishlist.getId(), productId);
 
-        return mapToDTO(wishlistRepository.save(wishlist));
+        return mapToDTO(wishlist);
     }
 
 
     private Wishlist getOrCreateWishlistForCurrentUser() {
-        String username = SecurityContextHolder.getContext().getAuthentication().getName();
-        User user = userRepository.findByEmail(username)
-                .orElseThrow(() -> new UserNotFoundException("User not found"));
+        UserPrincipal user = currentUserService.getCurrentUser();
 
         return wishlistRepository.findByUserId(user.getId())
                 .orElseGet(() -> createWishlistForUser(user));
     }
 
 
-    private Wishlist createWishlistForUser(User user) {
+    private Wishlist createWishlistForUser(UserPrincipal user) {
         Wishlist wishlist = new Wishlist();
-        wishlist.setUser(user);
+        wishlist.setUser(userRepository.getReferenceById(user.getId()));
         return wishlistRepository.save(wishlist);
     }
 
     private WishlistDto mapToDTO(Wishlist wishlist) {
-        List<Long> productIds = wishlist.getProducts().stream()
-                .map(Product::getId)
-                .collect(Collectors.toList());
+        List<Long> productIds = wishlistRepository.findProductIds(wishlist.getId());
         return new WishlistDto(wishlist.getId(), wishlist.getUser().getId(), productIds);
     }
 }
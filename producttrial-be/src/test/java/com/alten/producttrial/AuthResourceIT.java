@@ -3,21 +3,31 @@ package com.alten.producttrial;
 import com.alten.producttrial.dto.LoginRequest;
 import com.alten.producttrial.dto.UserDto;
 import com.alten.producttrial.entity.User;
+import com.alten.producttrial.enums.Role;
 import com.alten.producttrial.repository.UserRepository;
+import com.alten.producttrial.service.UserService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.http.MediaType;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.context.bean.override.mockito.MockitoSpyBean;
 import org.springframework.test.web.servlet.MockMvc;
 
+import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
+import java.util.EnumSet;
 import java.util.Optional;
 
 @SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
@@ -30,9 +40,12 @@ class AuthResourceIT {
     @Autowired
     private UserRepository userRepository;
 
-    @Autowired
+    @MockitoSpyBean
     private PasswordEncoder passwordEncoder;
 
+    @Autowired
+    private UserService userService;
+
     @BeforeEach
     void cleanDatabaseBeforeTest() {
         userRepository.deleteAll();
@@ -113,6 +126,57 @@ class AuthResourceIT {
                 .andExpect(jsonPath("$.token", is(notNullValue()))); // Assert that token is returned
     }
 
+    @Test
+    void shouldRehashPasswordWithConfiguredStrengthOnLogin() throws Exception {
+        // Arrange
+        UserDto userDto = createValidUserDto();
+        User user = new User();
+        user.setFirstname(userDto.getFirstname());
+        user.setUsername(userDto.getUsername());
+        user.setEmail(userDto.getEmail());
+        user.setPassword(new BCryptPasswordEncoder(4).encode(userDto.getPassword()));
+        userRepository.save(user);
+
+        // Act
+        mockMvc.perform(post("/api/token")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(TestUtil.convertObjectToJsonBytes(createValidLoginRequest())))
+                .andExpect(status().isOk());
+
+        // Assert
+        String rehashed = userRepository.findByEmail(userDto.getEmail()).orElseThrow().getPassword();
+        assertThat(rehashed, startsWith("$2a$10$"));
+        assertTrue(passwordEncoder.matches(userDto.getPassword(), rehashed));
+    }
+
+    @Test
+    void shouldKeepRolesChangedWhilePasswordIsRehashed() throws Exception {
+        // Arrange
+        UserDto userDto = createValidUserDto();
+        User user = new User();
+        user.setFirstname(userDto.getFirstname());
+        user.setUsername(userDto.getUsername());
+        user.setEmail(userDto.getEmail());
+        user.setPassword(new BCryptPasswordEncoder(4).encode(userDto.getPassword()));
+        Long id = userRepository.save(user).getId();
+        doAnswer(invocation -> {
+            userService.updateRoles(id, EnumSet.of(Role.ADMIN));
+            return invocation.callRealMethod();
+        }).when(passwordEncoder).encode(any());
+
+        // Act
+        mockMvc.perform(post("/api/token")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(TestUtil.convertObjectToJsonBytes(createValidLoginRequest())))
+                .andExpect(status().isOk());
+
+        // Assert
+        User stored = userRepository.findById(id).orElseThrow();
+        assertThat(stored.getRoles(), is(EnumSet.of(Role.ADMIN)));
+        assertThat(stored.getTokenVersion(), is(1));
+        assertThat(stored.getPassword(), startsWith("$2a$10$"));
+    }
+
     @Test
     void shouldReturnBadRequestWhenInvalidCredentials() throws Exception {
         // Arrange
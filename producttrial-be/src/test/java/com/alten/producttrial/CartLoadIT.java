@@ -0,0 +1,155 @@
+package com.alten.producttrial;
+
+import com.alten.producttrial.config.ConcurrencyLimitedTransactionManager;
+import com.alten.producttrial.config.JwtTokenProvider;
+import com.alten.producttrial.config.UserPrincipal;
+import com.alten.producttrial.entity.Product;
+import com.alten.producttrial.entity.User;
+import com.alten.producttrial.enums.InventoryStatus;
+import com.alten.producttrial.repository.ProductRepository;
+import com.alten.producttrial.repository.UserRepository;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+
+/**
+ * Load test of the cart endpoints with request handling on platform threads and on virtual threads.
+ * More clients than Tomcat has platform worker threads, and far more than there are connections, hit the cart at
+ * once. In both modes every request must be served, and the requests beyond the pool size must wait for a
+ * transaction permit rather than take a connection beside the permits: the pool, sampled during the load, never
+ * has more active connections than there are transaction permits.
+ */
+class CartLoadIT {
+
+    private static final int USERS = 50;
+    private static final int CLIENTS = 250;
+    private static final int REQUESTS_PER_CLIENT = 4;
+
+    @Test
+    void shouldServeConcurrentCartRequestsOnPlatformAndVirtualThreads() throws Exception {
+        // Act
+        LoadResult platformThreads = runLoad(false);
+        LoadResult virtualThreads = runLoad(true);
+
+        // Assert
+        for (LoadResult result : List.of(platformThreads, virtualThreads)) {
+            assertThat(result.statuses()).containsExactly(entry(200, CLIENTS * REQUESTS_PER_CLIENT));
+            assertThat(result.peakActiveConnections()).isPositive().isLessThanOrEqualTo(result.permits());
+        }
+    }
+
+    private LoadResult runLoad(boolean virtualThreads) throws Exception {
+        // Passed as arguments so that they take precedence over application.properties. Requests wait as long
+        // as needed for a permit, so that the test checks the pool is never exhausted rather than rejections.
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(ProducttrialApplication.class)
+                .run("--server.port=0",
+                        "--spring.threads.virtual.enabled=" + virtualThreads,
+                        "--transaction.concurrency.acquire-timeout=60s",
+                        "--spring.datasource.url=jdbc:h2:mem:cart-load-" + (virtualThreads ? "virtual" : "platform"))) {
+            int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+            int permits = context.getBean(ConcurrencyLimitedTransactionManager.class).getMaxConcurrentTransactions();
+            assertThat(permits).isLessThan(CLIENTS);
+            HikariPoolMXBean pool = context.getBean(HikariDataSource.class).getHikariPoolMXBean();
+
+            List<HttpRequest> requests = prepareRequests(context, port);
+            try (HttpClient client = HttpClient.newBuilder()
+                    .version(HttpClient.Version.HTTP_1_1)
+                    .executor(Executors.newVirtualThreadPerTaskExecutor())
+                    .build()) {
+                // Warm up so that both modes are measured with loaded classes and filled caches.
+                for (HttpRequest request : requests.subList(0, USERS)) {
+                    client.send(request, HttpResponse.BodyHandlers.discarding());
+                }
+                return sendConcurrently(client, requests, pool, permits);
+            }
+        }
+    }
+
+    private List<HttpRequest> prepareRequests(ConfigurableApplicationContext context, int port) {
+        UserRepository userRepository = context.getBean(UserRepository.class);
+        ProductRepository productRepository = context.getBean(ProductRepository.class);
+        JwtTokenProvider jwtTokenProvider = context.getBean(JwtTokenProvider.class);
+
+        Product product = productRepository.save(Product.builder()
+                .code("LOAD")
+                .name("Load test product")
+                .category("Category1")
+                .price(10.0)
+                .quantity(1_000_000)
+                .inventoryStatus(InventoryStatus.INSTOCK)
+                .createdAt(ZonedDateTime.now())
+                .build());
+
+        List<HttpRequest> requests = new ArrayList<>(USERS);
+        for (int i = 0; i < USERS; i++) {
+            User user = userRepository.save(User.builder()
+                    .username("load_user_" + i)
+                    .firstname("Load")
+                    .email("load" + i + "@example.com")
+                    .password("password").build());
+            requests.add(HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/cart/add?productId=" + product.getId()))
+                    .header("Authorization", "Bearer " + jwtTokenProvider.generateToken(UserPrincipal.of(user)))
+                    .timeout(Duration.ofSeconds(30))
+                    .POST(HttpRequest.BodyPublishers.noBody())
+                    .build());
+        }
+        return requests;
+    }
+
+    private LoadResult sendConcurrently(HttpClient client, List<HttpRequest> requests, HikariPoolMXBean pool, int permits)
+            throws InterruptedException {
+        Map<Integer, Integer> statuses = new ConcurrentHashMap<>();
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicBoolean loading = new AtomicBoolean(true);
+        AtomicInteger peakActiveConnections = new AtomicInteger();
+        Thread sampler = Thread.ofPlatform().daemon().start(() -> {
+            while (loading.get()) {
+                peakActiveConnections.accumulateAndGet(pool.getActiveConnections(), Math::max);
+                Thread.onSpinWait();
+            }
+        });
+        try (ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < CLIENTS; i++) {
+                HttpRequest request = requests.get(i % requests.size());
+                clients.submit(() -> {
+                    start.await();
+                    for (int j = 0; j < REQUESTS_PER_CLIENT; j++) {
+                        int status = client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+                        statuses.merge(status, 1, Integer::sum);
+                    }
+                    return null;
+                });
+            }
+            start.countDown();
+        } finally {
+            loading.set(false);
+            sampler.join();
+        }
+        return new LoadResult(Map.copyOf(statuses), peakActiveConnections.get(), permits);
+    }
+
+    private record LoadResult(Map<Integer, Integer> statuses, int peakActiveConnections, int permits) {
+    }
+}
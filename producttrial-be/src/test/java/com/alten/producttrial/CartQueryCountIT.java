@@ -0,0 +1,128 @@
+package com.alten.producttrial;
+
+import com.alten.producttrial.entity.CartItem;
+import com.alten.producttrial.entity.Product;
+import com.alten.producttrial.entity.User;
+import com.alten.producttrial.enums.InventoryStatus;
+import com.alten.producttrial.repository.CartItemRepository;
+import com.alten.producttrial.repository.ProductRepository;
+import com.alten.producttrial.repository.UserRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.ZonedDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.hasSize;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Checks that reading the cart costs the same number of statements whatever the number of lines.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@AutoConfigureMockMvc(addFilters = false)
+@WithMockUser(username = "testuser@example.com")
+class CartQueryCountIT {
+
+    @Autowired
+    private CartItemRepository cartItemRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        user = userRepository.save(User.builder()
+                .username("test_user")
+                .firstname("Test")
+                .email("testuser@example.com")
+                .password("password").build());
+    }
+
+    @AfterEach
+    void tearDown() {
+        cartItemRepository.deleteAll();
+        productRepository.deleteAll();
+        userRepository.deleteAll();
+    }
+
+    @Test
+    void shouldRetrieveCartWithConstantStatementCount() throws Exception {
+        addCartLines(0, 1);
+        long statementsForOneLine = countStatementsOfGetCart(1);
+
+        addCartLines(1, 10);
+        long statementsForTenLines = countStatementsOfGetCart(10);
+
+        assertThat(statementsForTenLines).isEqualTo(statementsForOneLine);
+    }
+
+    @Test
+    void shouldRetrieveCompactCartWithOneStatementAndNoEntity() throws Exception {
+        addCartLines(0, 10);
+        mockMvc.perform(get("/api/cart").param("view", "COMPACT")).andExpect(status().isOk());
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        mockMvc.perform(get("/api/cart").param("view", "COMPACT"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(10)));
+
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+        assertThat(statistics.getEntityLoadCount()).isZero();
+    }
+
+    private long countStatementsOfGetCart(int expectedLines) throws Exception {
+        // Warm up the user identity cache so that only cart queries are counted.
+        mockMvc.perform(get("/api/cart")).andExpect(status().isOk());
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        mockMvc.perform(get("/api/cart"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(expectedLines)));
+        return statistics.getPrepareStatementCount();
+    }
+
+    private void addCartLines(int from, int to) {
+        for (int i = from; i < to; i++) {
+            Product product = productRepository.save(Product.builder()
+                    .code("P" + i)
+                    .name("Product" + i)
+                    .category("Category1")
+                    .price(10.0 + i)
+                    .quantity(100)
+                    .inventoryStatus(InventoryStatus.INSTOCK)
+                    .createdAt(ZonedDateTime.now())
+                    .build());
+            CartItem cartItem = new CartItem();
+            cartItem.setProduct(product);
+            cartItem.setUser(user);
+            cartItem.setQuantity(1);
+            cartItemRepository.save(cartItem);
+        }
+    }
+}
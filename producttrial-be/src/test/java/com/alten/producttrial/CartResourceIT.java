@@ -1,5 +1,7 @@
 package com.alten.producttrial;
 
+import com.alten.producttrial.dto.CartBatchRequest;
+import com.alten.producttrial.dto.CartOperationDto;
 import com.alten.producttrial.entity.CartItem;
 import com.alten.producttrial.entity.Product;
 import com.alten.producttrial.entity.User;
@@ -13,10 +15,12 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.web.servlet.MockMvc;
 
 import java.time.ZonedDateTime;
+import java.util.List;
 
 import static org.hamcrest.Matchers.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
@@ -94,6 +98,54 @@ class CartResourceIT {
                 .andExpect(jsonPath("$[0].quantity", is(1)));
     }
 
+    @Test
+    void shouldSummarizeCartAndRefreshSummaryWhenCartOrPricesChange() throws Exception {
+        // Arrange
+        cartItemRepository.save(CartItem.builder().product(product).user(user).quantity(2).build());
+
+        // Act & Assert
+        mockMvc.perform(get("/api/cart/summary"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.lines", hasSize(1)))
+                .andExpect(jsonPath("$.lines[0].productId", is(product.getId().intValue())))
+                .andExpect(jsonPath("$.lines[0].name", is("Product1")))
+                .andExpect(jsonPath("$.lines[0].lineTotal", is(199.98)))
+                .andExpect(jsonPath("$.lines[0].description").doesNotExist())
+                .andExpect(jsonPath("$.itemCount", is(2)))
+                .andExpect(jsonPath("$.total", is(199.98)));
+
+        mockMvc.perform(post("/api/cart/add").param("productId", product.getId().toString()))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/api/cart/summary"))
+                .andExpect(jsonPath("$.itemCount", is(3)))
+                .andExpect(jsonPath("$.total", is(299.97)));
+
+        product.setPrice(10.0);
+        productRepository.save(product);
+        mockMvc.perform(get("/api/cart/summary"))
+                .andExpect(jsonPath("$.lines[0].price", is(10.0)))
+                .andExpect(jsonPath("$.total", is(30.0)));
+    }
+
+    @Test
+    void shouldRetrieveCompactCartItems() throws Exception {
+        // Arrange
+        CartItem cartItem = cartItemRepository.save(CartItem.builder().product(product).user(user).quantity(2).build());
+
+        // Act & Assert
+        mockMvc.perform(get("/api/cart").param("view", "COMPACT"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$[0].id", is(cartItem.getId())))
+                .andExpect(jsonPath("$[0].productId", is(product.getId().intValue())))
+                .andExpect(jsonPath("$[0].name", is("Product1")))
+                .andExpect(jsonPath("$[0].price", is(99.99)))
+                .andExpect(jsonPath("$[0].quantity", is(2)))
+                .andExpect(jsonPath("$[0].product").doesNotExist());
+        mockMvc.perform(get("/api/cart").param("view", "TINY"))
+                .andExpect(status().isBadRequest());
+    }
+
     @Test
     void shouldAddProductToCartSuccessfully() throws Exception {
         // Act & Assert
@@ -114,6 +166,78 @@ class CartResourceIT {
                 .andExpect(jsonPath("$.message", is("Product not found")));
     }
 
+    @Test
+    void shouldApplyBatchOfCartOperations() throws Exception {
+        // Arrange
+        Product otherProduct = productRepository.save(Product.builder()
+                .code("P124")
+                .name("Product2")
+                .category("Category1")
+                .price(9.99)
+                .quantity(10)
+                .inventoryStatus(InventoryStatus.INSTOCK)
+                .createdAt(ZonedDateTime.now())
+                .build());
+        CartItem cartItem = new CartItem();
+        cartItem.setProduct(product);
+        cartItem.setUser(user);
+        cartItem.setQuantity(1);
+        cartItemRepository.save(cartItem);
+
+        CartBatchRequest request = new CartBatchRequest(List.of(
+                new CartOperationDto(product.getId(), 2),
+                new CartOperationDto(otherProduct.getId(), 3),
+                new CartOperationDto(product.getId(), 1)));
+
+        // Act & Assert
+        mockMvc.perform(post("/api/cart/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(TestUtil.convertObjectToJsonBytes(request)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(2)))
+                .andExpect(jsonPath("$[?(@.product.code == 'P123')].quantity", contains(4)))
+                .andExpect(jsonPath("$[?(@.product.code == 'P124')].quantity", contains(3)));
+    }
+
+    @Test
+    void shouldRemoveLineWhenBatchDropsQuantityToZero() throws Exception {
+        // Arrange
+        CartItem cartItem = new CartItem();
+        cartItem.setProduct(product);
+        cartItem.setUser(user);
+        cartItem.setQuantity(2);
+        cartItemRepository.save(cartItem);
+
+        CartBatchRequest request = new CartBatchRequest(List.of(new CartOperationDto(product.getId(), -2)));
+
+        // Act & Assert
+        mockMvc.perform(post("/api/cart/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(TestUtil.convertObjectToJsonBytes(request)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(0)));
+    }
+
+    @Test
+    void shouldReturn404WhenBatchContainsUnknownProduct() throws Exception {
+        // Arrange
+        CartBatchRequest request = new CartBatchRequest(List.of(
+                new CartOperationDto(product.getId(), 1),
+                new CartOperationDto(999L, 1)));
+
+        // Act & Assert
+        mockMvc.perform(post("/api/cart/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(TestUtil.convertObjectToJsonBytes(request)))
+                .andExpect(status().isNotFound())
+                .andExpect(jsonPath("$.message", is("Product not found: 999")));
+
+        // Verify nothing was applied
+        mockMvc.perform(get("/api/cart"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(0)));
+    }
+
     @Test
     void shouldRemoveProductFromCartSuccessfully() throws Exception {
         // Arrange
@@ -0,0 +1,179 @@
+package com.alten.producttrial;
+
+import com.alten.producttrial.config.InventoryReservations;
+import com.alten.producttrial.config.UserPrincipal;
+import com.alten.producttrial.dto.CartOperationDto;
+import com.alten.producttrial.entity.CartItem;
+import com.alten.producttrial.entity.Product;
+import com.alten.producttrial.entity.User;
+import com.alten.producttrial.enums.InventoryStatus;
+import com.alten.producttrial.exception.ConflictException;
+import com.alten.producttrial.exception.InsufficientStockException;
+import com.alten.producttrial.repository.CartItemRepository;
+import com.alten.producttrial.repository.ProductRepository;
+import com.alten.producttrial.repository.UserRepository;
+import com.alten.producttrial.service.CartService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Hammers a single cart line from many threads to check that quantity updates are never lost.
+ */
+@SpringBootTest
+class CartServiceConcurrencyIT {
+
+    private static final int THREADS = 8;
+    private static final int CALLS_PER_THREAD = 25;
+
+    @Autowired
+    private CartService cartService;
+
+    @Autowired
+    private CartItemRepository cartItemRepository;
+
+    @Autowired
+    private InventoryReservations inventoryReservations;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    private User user;
+
+    private Product product;
+
+    @BeforeEach
+    void setUp() {
+        user = userRepository.save(User.builder()
+                .username("test_user")
+                .firstname("Test")
+                .email("testuser@example.com")
+                .password("password").build());
+
+        product = productRepository.save(Product.builder()
+                .code("P123")
+                .name("Product1")
+                .category("Category1")
+                .price(99.99)
+                .quantity(1000)
+                .inventoryStatus(InventoryStatus.INSTOCK)
+                .createdAt(ZonedDateTime.now())
+                .build());
+    }
+
+    @AfterEach
+    void tearDown() {
+        cartItemRepository.deleteAll();
+        productRepository.deleteAll();
+        userRepository.deleteAll();
+    }
+
+    @Test
+    void concurrentAddsAndDecrementsShouldNotLoseUpdates() throws Exception {
+        runConcurrently(() -> cartService.addToCart(product.getId()));
+
+        List<CartItem> lines = cartItemRepository.findAllByUserId(user.getId());
+        assertThat(lines).hasSize(1);
+        assertThat(lines.getFirst().getQuantity()).isEqualTo(THREADS * CALLS_PER_THREAD);
+
+        runConcurrently(() -> cartService.decrementProductQuantity(product.getId()));
+
+        assertThat(cartItemRepository.findAllByUserId(user.getId())).isEmpty();
+    }
+
+    @Test
+    void concurrentBatchesAndAddsShouldNotLoseUpdates() throws Exception {
+        cartItemRepository.save(CartItem.builder().user(user).product(product).quantity(1).build());
+        AtomicInteger calls = new AtomicInteger();
+        AtomicInteger applied = new AtomicInteger(1);
+
+        runConcurrently(() -> {
+            if (calls.getAndIncrement() % 2 == 0) {
+                cartService.addToCart(product.getId());
+                applied.incrementAndGet();
+                return;
+            }
+            try {
+                cartService.applyBatch(List.of(new CartOperationDto(product.getId(), 2)));
+                applied.addAndGet(2);
+            } catch (ConflictException e) {
+                // Gave up after the bounded retries, nothing was written.
+            }
+        });
+
+        List<CartItem> lines = cartItemRepository.findAllByUserId(user.getId());
+        assertThat(lines).hasSize(1);
+        assertThat(lines.getFirst().getQuantity()).isEqualTo(applied.get());
+    }
+
+    @Test
+    void concurrentAddsShouldNeverHoldMoreThanTheStock() throws Exception {
+        Product limited = productRepository.save(Product.builder()
+                .code("P124")
+                .name("Limited")
+                .category("Category1")
+                .price(9.99)
+                .quantity(50)
+                .inventoryStatus(InventoryStatus.INSTOCK)
+                .createdAt(ZonedDateTime.now())
+                .build());
+        AtomicInteger rejected = new AtomicInteger();
+
+        runConcurrently(() -> {
+            try {
+                cartService.addToCart(limited.getId());
+            } catch (InsufficientStockException e) {
+                rejected.incrementAndGet();
+            }
+        });
+
+        assertThat(cartItemRepository.findByProductIdAndUserId(limited.getId(), user.getId()).orElseThrow().getQuantity())
+                .isEqualTo(50);
+        assertThat(rejected.get()).isEqualTo(THREADS * CALLS_PER_THREAD - 50);
+        inventoryReservations.reconcile();
+        Product stored = productRepository.findById(limited.getId()).orElseThrow();
+        assertThat(stored.getQuantity()).isZero();
+        assertThat(stored.getInventoryStatus()).isEqualTo(InventoryStatus.OUTOFSTOCK);
+    }
+
+    private void runConcurrently(Runnable call) throws Exception {
+        UserPrincipal principal = new UserPrincipal(user.getId(), user.getEmail(), List.of());
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < THREADS; i++) {
+                futures.add(executor.submit(() -> {
+                    SecurityContextHolder.getContext().setAuthentication(
+                            new UsernamePasswordAuthenticationToken(principal, null, List.of()));
+                    start.await();
+                    for (int j = 0; j < CALLS_PER_THREAD; j++) {
+                        call.run();
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
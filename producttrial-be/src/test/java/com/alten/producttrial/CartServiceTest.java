@@ -1,16 +1,26 @@
 package com.alten.producttrial;
 
+import com.alten.producttrial.config.CartSummaryCache;
+import com.alten.producttrial.config.InventoryReservations;
+import com.alten.producttrial.config.OptimisticLockRetry;
+import com.alten.producttrial.config.UserPrincipal;
 import com.alten.producttrial.dto.CartItemDto;
+import com.alten.producttrial.dto.CartLineSummaryDto;
+import com.alten.producttrial.dto.CartOperationDto;
 import com.alten.producttrial.dto.ProductDto;
 import com.alten.producttrial.entity.CartItem;
 import com.alten.producttrial.entity.Product;
 import com.alten.producttrial.entity.User;
+import com.alten.producttrial.exception.BadRequestException;
+import com.alten.producttrial.exception.ConflictException;
+import com.alten.producttrial.exception.InsufficientStockException;
 import com.alten.producttrial.exception.ResourceNotFoundException;
 import com.alten.producttrial.exception.UserNotFoundException;
 import com.alten.producttrial.mapper.CartItemMapper;
 import com.alten.producttrial.repository.CartItemRepository;
 import com.alten.producttrial.repository.ProductRepository;
 import com.alten.producttrial.repository.UserRepository;
+import com.alten.producttrial.service.CurrentUserService;
 import com.alten.producttrial.service.CartService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -18,13 +28,21 @@ import org.mapstruct.factory.Mappers;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.security.access.AccessDeniedException;
-import org.springframework.security.core.context.SecurityContext;
-import org.springframework.security.core.context.SecurityContextHolder;
-import org.springframework.security.core.Authentication;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.ZonedDateTime;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -40,16 +58,31 @@ class CartServiceTest {
     @Mock
     private UserRepository userRepository;
 
+    @Mock
+    private CurrentUserService currentUserService;
+
     @Mock
     private CartItemMapper cartItemMapper;
 
+    @Spy
+    private CartSummaryCache cartSummaryCache = new CartSummaryCache(100, Duration.ofMinutes(10));
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Spy
+    private OptimisticLockRetry optimisticLockRetry = new OptimisticLockRetry(meterRegistry, 3, Duration.ofMillis(1));
+
+    @Spy
+    private TransactionTemplate transactionTemplate = new TransactionTemplate(mock(PlatformTransactionManager.class));
+
     @Mock
-    private Authentication authentication;
+    private InventoryReservations inventoryReservations;
 
     @InjectMocks
     private CartService cartService;
 
     private User user;
+    private UserPrincipal principal;
     private Product product;
     private CartItem cartItem;
     private CartItemDto cartItemDto;
@@ -84,18 +117,13 @@ class CartServiceTest {
         cartItemDto.setProduct(productDto);
         cartItemDto.setQuantity(1);
 
-        Authentication authentication = mock(Authentication.class);
-        when(authentication.getName()).thenReturn(user.getEmail());
-        when(authentication.getPrincipal()).thenReturn(user);
-        SecurityContext context = mock(SecurityContext.class);
-        when(context.getAuthentication()).thenReturn(authentication);
-        SecurityContextHolder.setContext(context);
+        principal = new UserPrincipal(user.getId(), user.getEmail(), List.of());
     }
 
     @Test
     void getCartItems_shouldReturnListOfCartItemDtos_whenUserExists() {
         // Arrange
-        when(userRepository.findByEmail(user.getEmail())).thenReturn(Optional.of(user));
+        when(currentUserService.getCurrentUser()).thenReturn(principal);
         when(cartItemRepository.findAllByUserId(user.getId())).thenReturn(List.of(cartItem));
         when(cartItemMapper.toDto(cartItem)).thenReturn(cartItemDto);
 
@@ -108,17 +136,18 @@ class CartServiceTest {
         assertEquals(cartItemDto.getProduct().getId(), result.getFirst().getProduct().getId());
 
         // Verify interactions
-        verify(userRepository, times(1)).findByEmail(user.getEmail());
+        verify(userRepository, never()).findByEmail(any());
         verify(cartItemRepository, times(1)).findAllByUserId(user.getId());
     }
 
     @Test
     void addToCart_shouldAddProductToCart_whenProductExists() {
         // Arrange
-        when(userRepository.findByEmail(user.getEmail())).thenReturn(Optional.of(user));
+        when(currentUserService.getCurrentUser()).thenReturn(principal);
+        when(cartItemRepository.addToQuantity(eq(product.getId()), eq(user.getId()), eq(1), any())).thenReturn(0);
         when(productRepository.findById(product.getId())).thenReturn(Optional.of(product));
-        when(cartItemRepository.findByProductIdAndUserId(product.getId(), user.getId())).thenReturn(Optional.empty());
-        when(cartItemRepository.save(any(CartItem.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(userRepository.getReferenceById(user.getId())).thenReturn(user);
+        when(cartItemRepository.saveAndFlush(any(CartItem.class))).thenAnswer(invocation -> invocation.getArgument(0));
         when(cartItemMapper.toDto(any(CartItem.class))).thenAnswer(invocation -> {
             CartItem cartItem = invocation.getArgument(0);
             return Mappers.getMapper(CartItemMapper.class).toDto(cartItem);
@@ -133,18 +162,18 @@ class CartServiceTest {
         assertEquals(1, result.getQuantity());
 
         // Verify interactions
-        verify(userRepository, times(1)).findByEmail(user.getEmail());
+        verify(userRepository, never()).findByEmail(any());
         verify(productRepository, times(1)).findById(product.getId());
-        verify(cartItemRepository, times(1)).save(any(CartItem.class));
+        verify(cartItemRepository, times(1)).saveAndFlush(any(CartItem.class));
     }
 
     @Test
     void addToCart_shouldIncreaseQuantity_whenProductAlreadyInCart() {
         // // Arrange
-        when(userRepository.findByEmail(user.getEmail())).thenReturn(Optional.of(user));
-        when(productRepository.findById(product.getId())).thenReturn(Optional.of(product));
+        cartItem.setQuantity(2);
+        when(currentUserService.getCurrentUser()).thenReturn(principal);
+        when(cartItemRepository.addToQuantity(eq(product.getId()), eq(user.getId()), eq(1), any())).thenReturn(1);
         when(cartItemRepository.findByProductIdAndUserId(product.getId(), user.getId())).thenReturn(Optional.of(cartItem));
-        when(cartItemRepository.save(any(CartItem.class))).thenAnswer(invocation -> invocation.getArgument(0));
         when(cartItemMapper.toDto(any(CartItem.class))).thenAnswer(invocation -> {
             CartItem cartItem = invocation.getArgument(0);
             return Mappers.getMapper(CartItemMapper.class).toDto(cartItem);
@@ -157,30 +186,125 @@ class CartServiceTest {
         assertEquals(2, result.getQuantity());
 
         // Verify interactions
-        verify(userRepository, times(1)).findByEmail(user.getEmail());
-        verify(productRepository, times(1)).findById(product.getId());
-        verify(cartItemRepository, times(1)).save(any(CartItem.class));
+        verify(userRepository, never()).findByEmail(any());
+        verify(productRepository, never()).findById(any());
+        verify(cartItemRepository, never()).save(any(CartItem.class));
+        verify(cartItemRepository, never()).saveAndFlush(any(CartItem.class));
+    }
+
+    @Test
+    void addToCart_shouldIncrementExistingLine_whenConcurrentInsertWins() {
+        // Arrange
+        cartItem.setQuantity(2);
+        when(currentUserService.getCurrentUser()).thenReturn(principal);
+        when(cartItemRepository.addToQuantity(eq(product.getId()), eq(user.getId()), eq(1), any())).thenReturn(0, 1);
+        when(productRepository.findById(product.getId())).thenReturn(Optional.of(product));
+        when(cartItemRepository.saveAndFlush(any(CartItem.class))).thenThrow(new DataIntegrityViolationException("uk_cart_item_user_product"));
+        when(cartItemRepository.findByProductIdAndUserId(product.getId(), user.getId())).thenReturn(Optional.of(cartItem));
+        when(cartItemMapper.toDto(cartItem)).thenReturn(cartItemDto);
+
+        // Act
+        CartItemDto result = cartService.addToCart(product.getId());
+
+        // Assert
+        assertSame(cartItemDto, result);
+        verify(cartItemRepository, times(2)).addToQuantity(eq(product.getId()), eq(user.getId()), eq(1), any());
+    }
+
+    @Test
+    void decrementProductQuantity_shouldDecrementQuantity_whenMoreThanOneInCart() {
+        // Arrange
+        when(currentUserService.getCurrentUser()).thenReturn(principal);
+        when(cartItemRepository.addToQuantity(eq(product.getId()), eq(user.getId()), eq(-1), any())).thenReturn(1);
+        when(cartItemRepository.findByProductIdAndUserId(product.getId(), user.getId())).thenReturn(Optional.of(cartItem));
+        when(cartItemMapper.toDto(cartItem)).thenReturn(cartItemDto);
+
+        // Act
+        Optional<CartItemDto> result = cartService.decrementProductQuantity(product.getId());
+
+        // Assert
+        assertTrue(result.isPresent());
+        verify(cartItemRepository, never()).deleteIfQuantityAtMost(any(), any(), anyInt());
+    }
+
+    @Test
+    void decrementProductQuantity_shouldRemoveLine_whenLastUnitIsRemoved() {
+        // Arrange
+        when(currentUserService.getCurrentUser()).thenReturn(principal);
+        when(cartItemRepository.addToQuantity(eq(product.getId()), eq(user.getId()), eq(-1), any())).thenReturn(0);
+        when(cartItemRepository.deleteIfQuantityAtMost(product.getId(), user.getId(), 1)).thenReturn(1);
+
+        // Act
+        Optional<CartItemDto> result = cartService.decrementProductQuantity(product.getId());
+
+        // Assert
+        assertTrue(result.isEmpty());
+    }
+
+    @Test
+    void decrementProductQuantity_shouldThrowResourceNotFoundException_whenLineDoesNotExist() {
+        // Arrange
+        when(currentUserService.getCurrentUser()).thenReturn(principal);
+
+        // Act and assert exception
+        ResourceNotFoundException exception = assertThrows(ResourceNotFoundException.class, () -> cartService.decrementProductQuantity(product.getId()));
+
+        assertEquals("Cart item not found", exception.getReason());
+    }
+
+    @Test
+    void applyBatch_shouldThrowBadRequestException_whenOperationIsIncomplete() {
+        // Arrange
+        when(currentUserService.getCurrentUser()).thenReturn(principal);
+
+        // Act and assert exception
+        BadRequestException exception = assertThrows(BadRequestException.class,
+                () -> cartService.applyBatch(List.of(new CartOperationDto(product.getId(), null))));
+
+        assertEquals("Each operation requires a productId and a delta", exception.getReason());
+        verifyNoInteractions(cartItemRepository);
+    }
+
+    @Test
+    void applyBatch_shouldLoadProductsOnceAndSaveAllLines() {
+        // Arrange
+        Product otherProduct = new Product();
+        otherProduct.setId(2L);
+        when(currentUserService.getCurrentUser()).thenReturn(principal);
+        when(cartItemRepository.findAllByUserId(user.getId())).thenReturn(List.of(cartItem));
+        when(productRepository.findAllById(Set.of(otherProduct.getId()))).thenReturn(List.of(otherProduct));
+        when(userRepository.getReferenceById(user.getId())).thenReturn(user);
+
+        // Act
+        cartService.applyBatch(List.of(
+                new CartOperationDto(product.getId(), 2),
+                new CartOperationDto(otherProduct.getId(), 1)));
+
+        // Assert
+        assertEquals(3, cartItem.getQuantity());
+        verify(productRepository, times(1)).findAllById(any());
+        verify(productRepository, never()).findById(any());
+        verify(cartItemRepository, times(1)).saveAll(argThat(items -> ((List<CartItem>) items).size() == 2));
     }
 
     @Test
     void removeFromCart_shouldRemoveCartItem_whenUserIsAuthorized() {
         // // Arrange
-        when(userRepository.findByEmail(user.getEmail())).thenReturn(Optional.of(user));
+        when(currentUserService.getCurrentUser()).thenReturn(principal);
         when(cartItemRepository.findById(cartItem.getId())).thenReturn(Optional.of(cartItem));
 
         // Act
         cartService.removeFromCart(cartItem.getId());
 
         // Verify interactions
-        verify(cartItemRepository, times(1)).deleteById(cartItem.getId());
+        verify(cartItemRepository, times(1)).delete(cartItem);
+        verify(inventoryReservations).release(product.getId(), 1);
     }
 
     @Test
     void removeFromCart_shouldThrowAccessDeniedException_whenUserIsUnauthorized() {
         // // Arrange
-        when(SecurityContextHolder.getContext().getAuthentication()).thenReturn(authentication);
-        when(authentication.getName()).thenReturn("anotheruser@example.com");
-        when(userRepository.findByEmail("anotheruser@example.com")).thenReturn(Optional.of(new User()));
+        when(currentUserService.getCurrentUser()).thenReturn(new UserPrincipal(2L, "anotheruser@example.com", List.of()));
         when(cartItemRepository.findById(cartItem.getId())).thenReturn(Optional.of(cartItem));
 
         // Act and assert
@@ -192,7 +316,7 @@ class CartServiceTest {
     @Test
     void getCartItems_shouldThrowUserNotFoundException_whenUserDoesNotExist() {
         // // Arrange
-        when(userRepository.findByEmail(user.getEmail())).thenReturn(Optional.empty());
+        when(currentUserService.getCurrentUser()).thenThrow(new UserNotFoundException("User not found"));
 
         // Act and assert exception
         UserNotFoundException exception = assertThrows(UserNotFoundException.class, () -> cartService.getCartItems());
@@ -203,7 +327,7 @@ class CartServiceTest {
     @Test
     void addToCart_shouldThrowResourceNotFoundException_whenProductDoesNotExist() {
         // Arrange
-        when(userRepository.findByEmail(user.getEmail())).thenReturn(Optional.of(user));
+        when(currentUserService.getCurrentUser()).thenReturn(principal);
         when(productRepository.findById(product.getId())).thenReturn(Optional.empty());
 
         // Act and assert exception
@@ -211,4 +335,140 @@ class CartServiceTest {
 
         assertEquals("Product not found", exception.getReason());
     }
+
+    @Test
+    void getCartSummary_shouldAddUpExactTotalsAndCacheThem_untilCartChanges() {
+        // Arrange
+        when(currentUserService.getCurrentUser()).thenReturn(principal);
+        when(cartItemRepository.findLineSummariesByUserId(user.getId())).thenReturn(List.of(
+                new CartLineSummaryDto(1L, "Pen", 0.1, 3),
+                new CartLineSummaryDto(2L, "Notebook", 19.99, 2)));
+        when(cartItemRepository.addToQuantity(eq(1L), eq(user.getId()), eq(1), any())).thenReturn(1);
+        when(cartItemRepository.findByProductIdAndUserId(1L, user.getId())).thenReturn(Optional.of(cartItem));
+        when(cartItemMapper.toDto(cartItem)).thenReturn(cartItemDto);
+
+        // Act
+        var summary = cartService.getCartSummary();
+        cartService.getCartSummary();
+
+        // Assert
+        assertEquals(5, summary.getItemCount());
+        assertEquals(new BigDecimal("0.3"), summary.getLines().getFirst().getLineTotal());
+        assertEquals(new BigDecimal("40.28"), summary.getTotal());
+        verify(cartItemRepository, times(1)).findLineSummariesByUserId(user.getId());
+
+        cartService.addToCart(1L);
+        cartService.getCartSummary();
+
+        verify(cartItemRepository, times(2)).findLineSummariesByUserId(user.getId());
+    }
+
+    @Test
+    void applyBatch_shouldApplyBatchAgainToCurrentCart_whenLineChangedConcurrently() {
+        // Arrange
+        when(currentUserService.getCurrentUser()).thenReturn(principal);
+        when(cartItemRepository.findAllByUserId(user.getId())).thenReturn(List.of(cartItem));
+        when(cartItemRepository.saveAll(any()))
+                .thenThrow(new ObjectOptimisticLockingFailureException(CartItem.class, cartItem.getId()))
+                .thenReturn(List.of());
+
+        // Act
+        cartService.applyBatch(List.of(new CartOperationDto(product.getId(), 1)));
+
+        // Assert
+        verify(transactionTemplate, times(2)).execute(any());
+        assertEquals(1, meterRegistry.counter("optimistic.lock.conflicts", "operation", "cart.batch").count());
+        assertEquals(1, meterRegistry.counter("optimistic.lock.retries", "operation", "cart.batch").count());
+    }
+
+    @Test
+    void applyBatch_shouldThrowConflictException_whenRetriesAreExhausted() {
+        // Arrange
+        when(currentUserService.getCurrentUser()).thenReturn(principal);
+        when(cartItemRepository.findAllByUserId(user.getId())).thenReturn(List.of(cartItem));
+        when(cartItemRepository.saveAll(any()))
+                .thenThrow(new ObjectOptimisticLockingFailureException(CartItem.class, cartItem.getId()));
+
+        // Act and assert exception
+        assertThrows(ConflictException.class,
+                () -> cartService.applyBatch(List.of(new CartOperationDto(product.getId(), 1))));
+
+        verify(cartItemRepository, times(3)).saveAll(any());
+        assertEquals(3, meterRegistry.counter("optimistic.lock.conflicts", "operation", "cart.batch").count());
+        assertEquals(1, meterRegistry.counter("optimistic.lock.failures", "operation", "cart.batch").count());
+    }
+
+    @Test
+    void addToCart_shouldNotTouchCart_whenProductIsOutOfStock() {
+        // Arrange
+        when(currentUserService.getCurrentUser()).thenReturn(principal);
+        doThrow(new InsufficientStockException("Not enough stock for product 1"))
+                .when(inventoryReservations).reserve(product.getId(), 1);
+
+        // Act and assert exception
+        assertThrows(InsufficientStockException.class, () -> cartService.addToCart(product.getId()));
+
+        verify(cartItemRepository, never()).addToQuantity(any(), any(), anyInt(), any());
+        verify(cartItemRepository, never()).saveAndFlush(any(CartItem.class));
+        verify(inventoryReservations, never()).release(any(), anyInt());
+    }
+
+    @Test
+    void addToCart_shouldReleaseReservedItem_whenCartWriteFails() {
+        // Arrange
+        when(currentUserService.getCurrentUser()).thenReturn(principal);
+        when(cartItemRepository.addToQuantity(eq(product.getId()), eq(user.getId()), eq(1), any()))
+                .thenThrow(new IllegalStateException("Database unavailable"));
+
+        // Act and assert exception
+        assertThrows(IllegalStateException.class, () -> cartService.addToCart(product.getId()));
+
+        verify(inventoryReservations).reserve(product.getId(), 1);
+        verify(inventoryReservations).release(product.getId(), 1);
+    }
+
+    @Test
+    void applyBatch_shouldAdjustHeldStockByQuantityChangeOfEachLine() {
+        // Arrange
+        Product other = new Product();
+        other.setId(2L);
+        cartItem.setQuantity(3);
+        when(currentUserService.getCurrentUser()).thenReturn(principal);
+        when(cartItemRepository.findAllByUserId(user.getId())).thenReturn(List.of(cartItem));
+        when(productRepository.findAllById(any())).thenReturn(List.of(other));
+
+        // Act
+        cartService.applyBatch(List.of(
+                new CartOperationDto(product.getId(), -5),
+                new CartOperationDto(other.getId(), 2),
+                new CartOperationDto(99L, -1)));
+
+        // Assert
+        verify(inventoryReservations).adjust(Map.of(product.getId(), -3, other.getId(), 2));
+        verify(cartItemRepository).deleteAll(List.of(cartItem));
+    }
+
+    @Test
+    void releaseExpiredReservations_shouldReleaseOnlyLinesThatWereNotChangedSinceRead() {
+        // Arrange
+        cartItem.setQuantity(2);
+        cartItem.setVersion(4L);
+        CartItem extended = new CartItem();
+        extended.setId("def");
+        extended.setProduct(product);
+        extended.setUser(user);
+        extended.setQuantity(5);
+        extended.setVersion(7L);
+        when(cartItemRepository.findReservationsExpiredBefore(any(ZonedDateTime.class), any()))
+                .thenReturn(List.of(cartItem, extended));
+        when(cartItemRepository.deleteByIdAndVersion("abc", 4L)).thenReturn(1);
+        when(cartItemRepository.deleteByIdAndVersion("def", 7L)).thenReturn(0);
+
+        // Act
+        cartService.releaseExpiredReservations();
+
+        // Assert
+        verify(inventoryReservations).release(product.getId(), 2);
+        verify(inventoryReservations, never()).release(product.getId(), 5);
+    }
 }
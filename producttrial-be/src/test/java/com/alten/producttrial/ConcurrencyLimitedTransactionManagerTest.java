@@ -0,0 +1,48 @@
+package com.alten.producttrial;
+
+import com.alten.producttrial.config.ConcurrencyLimitedTransactionManager;
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.transaction.TransactionManagerCustomizers;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+
+class ConcurrencyLimitedTransactionManagerTest {
+
+    @Test
+    void shouldDefaultToConnectionPoolSize() {
+        HikariDataSource dataSource = new HikariDataSource();
+        dataSource.setMaximumPoolSize(7);
+
+        ConcurrencyLimitedTransactionManager transactionManager = new ConcurrencyLimitedTransactionManager(dataSource,
+                noCustomizers(), true, 0, Duration.ofSeconds(1));
+
+        assertEquals(7, transactionManager.getMaxConcurrentTransactions());
+    }
+
+    @Test
+    void shouldDefaultToHikariDefaultSize_whenPoolSizeIsNotSetYet() {
+        ConcurrencyLimitedTransactionManager transactionManager = new ConcurrencyLimitedTransactionManager(new HikariDataSource(),
+                noCustomizers(), true, 0, Duration.ofSeconds(1));
+
+        assertEquals(10, transactionManager.getMaxConcurrentTransactions());
+    }
+
+    @Test
+    void shouldUseConfiguredLimit() {
+        ConcurrencyLimitedTransactionManager transactionManager = new ConcurrencyLimitedTransactionManager(new HikariDataSource(),
+                noCustomizers(), true, 3, Duration.ofSeconds(1));
+
+        assertEquals(3, transactionManager.getMaxConcurrentTransactions());
+        assertEquals(3, transactionManager.getAvailablePermits());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static ObjectProvider<TransactionManagerCustomizers> noCustomizers() {
+        return mock(ObjectProvider.class);
+    }
+}
@@ -0,0 +1,229 @@
+package com.alten.producttrial;
+
+import com.alten.producttrial.config.InventoryReservations;
+import com.alten.producttrial.dto.CartBatchRequest;
+import com.alten.producttrial.dto.CartOperationDto;
+import com.alten.producttrial.dto.ProductDto;
+import com.alten.producttrial.entity.CartItem;
+import com.alten.producttrial.entity.Product;
+import com.alten.producttrial.entity.User;
+import com.alten.producttrial.enums.InventoryStatus;
+import com.alten.producttrial.repository.CartItemRepository;
+import com.alten.producttrial.repository.ProductImportRepository;
+import com.alten.producttrial.repository.ProductRepository;
+import com.alten.producttrial.repository.UserRepository;
+import com.alten.producttrial.service.CartService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.ZonedDateTime;
+import java.util.List;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * Integration tests for the stock held by cart lines, with the reconciliation and the expiry run by hand.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@AutoConfigureMockMvc(addFilters = false)
+@WithMockUser(username = "stock_user@example.com")
+class InventoryReservationIT {
+
+    @Autowired
+    private CartItemRepository cartItemRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private ProductImportRepository productImportRepository;
+
+    @Autowired
+    private InventoryReservations inventoryReservations;
+
+    @Autowired
+    private CartService cartService;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    private User user;
+
+    private Product product;
+
+    @BeforeEach
+    void setUp() {
+        user = userRepository.save(User.builder()
+                .username("stock_user")
+                .firstname("Stock")
+                .email("stock_user@example.com")
+                .password("password").build());
+
+        product = productRepository.save(Product.builder()
+                .code("P900")
+                .name("Limited edition")
+                .category("Category1")
+                .price(49.0)
+                .quantity(12)
+                .inventoryStatus(InventoryStatus.INSTOCK)
+                .createdAt(ZonedDateTime.now())
+                .build());
+    }
+
+    @AfterEach
+    void tearDown() {
+        inventoryReservations.reconcile();
+        cartItemRepository.deleteAll();
+        productRepository.deleteAll();
+        productImportRepository.deleteAll();
+        userRepository.deleteAll();
+    }
+
+    @Test
+    void shouldHoldStockAndRejectAdditionsBeyondIt() throws Exception {
+        mockMvc.perform(post("/api/cart/add").param("productId", product.getId().toString()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.reservedUntil", notNullValue()));
+        mockMvc.perform(post("/api/cart/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(TestUtil.convertObjectToJsonBytes(new CartBatchRequest(List.of(new CartOperationDto(product.getId(), 11))))))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(post("/api/cart/add").param("productId", product.getId().toString()))
+                .andExpect(status().isConflict())
+                .andExpect(jsonPath("$.errorKey", is("insufficient_stock")));
+        assertEquals(12, cartItemRepository.findAllByUserId(user.getId()).getFirst().getQuantity());
+
+        inventoryReservations.reconcile();
+        Product stored = productRepository.findById(product.getId()).orElseThrow();
+        assertEquals(0, stored.getQuantity());
+        assertEquals(InventoryStatus.OUTOFSTOCK, stored.getInventoryStatus());
+        mockMvc.perform(get("/api/products/{id}", product.getId()))
+                .andExpect(jsonPath("$.quantity", is(0)))
+                .andExpect(jsonPath("$.inventoryStatus", is("OUTOFSTOCK")));
+    }
+
+    @Test
+    void shouldReturnStockOfReducedAndExpiredLines() throws Exception {
+        for (int i = 0; i < 5; i++) {
+            mockMvc.perform(post("/api/cart/add").param("productId", product.getId().toString())).andExpect(status().isOk());
+        }
+        mockMvc.perform(patch("/api/cart/reduce-product-quantity").param("productId", product.getId().toString()))
+                .andExpect(status().isOk());
+        inventoryReservations.reconcile();
+        Product stored = productRepository.findById(product.getId()).orElseThrow();
+        assertEquals(8, stored.getQuantity());
+        assertEquals(InventoryStatus.LOWSTOCK, stored.getInventoryStatus());
+
+        CartItem line = cartItemRepository.findAllByUserId(user.getId()).getFirst();
+        line.setReservedUntil(ZonedDateTime.now().minusMinutes(1));
+        cartItemRepository.save(line);
+        cartService.releaseExpiredReservations();
+        inventoryReservations.reconcile();
+
+        assertTrue(cartItemRepository.findAllByUserId(user.getId()).isEmpty());
+        stored = productRepository.findById(product.getId()).orElseThrow();
+        assertEquals(12, stored.getQuantity());
+        assertEquals(InventoryStatus.INSTOCK, stored.getInventoryStatus());
+    }
+
+    @Test
+    void shouldShowReconciledStockWithoutChangingTheVersion() throws Exception {
+        // Builds the catalog snapshot and the search index, which must show the new stock.
+        mockMvc.perform(get("/api/products")).andExpect(jsonPath("$[0].quantity", is(12)));
+        mockMvc.perform(get("/api/products/search").param("q", "limited")).andExpect(jsonPath("$.content[0].quantity", is(12)));
+        String etag = mockMvc.perform(get("/api/products/{id}", product.getId()))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        for (int i = 0; i < 4; i++) {
+            mockMvc.perform(post("/api/cart/add").param("productId", product.getId().toString())).andExpect(status().isOk());
+        }
+        inventoryReservations.reconcile();
+
+        mockMvc.perform(get("/api/products"))
+                .andExpect(jsonPath("$[0].quantity", is(8)))
+                .andExpect(jsonPath("$[0].inventoryStatus", is("LOWSTOCK")))
+                .andExpect(jsonPath("$[0].name", is("Limited edition")));
+        mockMvc.perform(get("/api/products/search").param("q", "limited"))
+                .andExpect(jsonPath("$.content[0].quantity", is(8)));
+        mockMvc.perform(get("/api/products/search").param("q", "limited").param("inventoryStatus", "LOWSTOCK"))
+                .andExpect(jsonPath("$.totalHits", is(1)));
+        mockMvc.perform(get("/api/products/{id}", product.getId()))
+                .andExpect(header().string(HttpHeaders.ETAG, etag))
+                .andExpect(jsonPath("$.quantity", is(8)));
+
+        // An edit based on the version read before the reconciliation applies, and keeps the held stock.
+        ProductDto updateDto = ProductDto.builder().name("Renamed").price(59.0).inventoryStatus(InventoryStatus.LOWSTOCK).build();
+        mockMvc.perform(patch("/api/products/{id}", product.getId())
+                        .header(HttpHeaders.IF_MATCH, etag)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(TestUtil.convertObjectToJsonBytes(updateDto)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.quantity", is(8)));
+        Product stored = productRepository.findById(product.getId()).orElseThrow();
+        assertEquals(8, stored.getQuantity());
+        assertEquals(4, stored.getHeldQuantity());
+    }
+
+    @Test
+    void shouldKeepHeldStockWhenImportingStock() throws Exception {
+        for (int i = 0; i < 5; i++) {
+            mockMvc.perform(post("/api/cart/add").param("productId", product.getId().toString())).andExpect(status().isOk());
+        }
+        inventoryReservations.reconcile();
+
+        mockMvc.perform(post("/api/products/import")
+                        .contentType("text/csv")
+                        .content("code,name,category,price,quantity,inventoryStatus\nP900,Limited edition,Category1,49.0,20,INSTOCK\n"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.rowsImported", is(1)));
+        Product stored = productRepository.findById(product.getId()).orElseThrow();
+        assertEquals(15, stored.getQuantity());
+        assertEquals(5, stored.getHeldQuantity());
+        mockMvc.perform(get("/api/products/export").param("format", "CSV"))
+                .andExpect(content().string(containsString("P900,\"Limited edition\",,,Category1,49.0,20,")));
+
+        inventoryReservations.reconcile();
+        mockMvc.perform(post("/api/cart/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(TestUtil.convertObjectToJsonBytes(new CartBatchRequest(List.of(new CartOperationDto(product.getId(), 15))))))
+                .andExpect(status().isOk());
+        mockMvc.perform(post("/api/cart/add").param("productId", product.getId().toString()))
+                .andExpect(status().isConflict());
+    }
+
+    @Test
+    void shouldTakeRestockIntoAccountAfterReconciliation() throws Exception {
+        for (int i = 0; i < 12; i++) {
+            mockMvc.perform(post("/api/cart/add").param("productId", product.getId().toString())).andExpect(status().isOk());
+        }
+        inventoryReservations.reconcile();
+
+        Product restocked = productRepository.findById(product.getId()).orElseThrow();
+        restocked.setQuantity(restocked.getQuantity() + 3);
+        productRepository.save(restocked);
+        inventoryReservations.reconcile();
+
+        for (int i = 0; i < 3; i++) {
+            mockMvc.perform(post("/api/cart/add").param("productId", product.getId().toString())).andExpect(status().isOk());
+        }
+        mockMvc.perform(post("/api/cart/add").param("productId", product.getId().toString()))
+                .andExpect(status().isConflict());
+    }
+}
@@ -0,0 +1,307 @@
+package com.alten.producttrial;
+
+import com.alten.producttrial.config.JwtKeys;
+import com.alten.producttrial.config.JwtTokenProvider;
+import com.alten.producttrial.config.UserPrincipal;
+import io.jsonwebtoken.Claims;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermission;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JwtTokenProviderTest {
+
+    private static final UserPrincipal USER = new UserPrincipal(42L, "testuser@example.com", List.of("ROLE_ADMIN"), 3);
+
+    private static final Duration ROTATION_INTERVAL = Duration.ofDays(1);
+
+    @TempDir
+    private Path keyStore;
+
+    private final TestClock clock = new TestClock(Instant.parse("2026-01-01T23:59:00Z"));
+
+    private JwtKeys jwtKeys;
+
+    private JwtTokenProvider jwtTokenProvider;
+
+    @BeforeEach
+    void setUp() {
+        jwtKeys = newKeys(60_000L, null, clock);
+        jwtTokenProvider = newProvider(jwtKeys, 60_000L);
+    }
+
+    private static JwtKeys newKeys(long accessTokenLifetime, Path directory, Clock clock) {
+        JwtKeys keys = new JwtKeys(accessTokenLifetime, ROTATION_INTERVAL, directory != null ? directory.toString() : null);
+        ReflectionTestUtils.setField(keys, "clock", clock);
+        keys.init();
+        return keys;
+    }
+
+    private static JwtTokenProvider newProvider(JwtKeys jwtKeys, long expiration) {
+        return newProvider(jwtKeys, expiration, new SimpleMeterRegistry());
+    }
+
+    private static JwtTokenProvider newProvider(JwtKeys jwtKeys, long expiration, MeterRegistry meterRegistry) {
+        JwtTokenProvider provider = new JwtTokenProvider(jwtKeys, meterRegistry);
+        ReflectionTestUtils.setField(provider, "expiration", expiration);
+        ReflectionTestUtils.setField(provider, "claimsCacheMaxSize", 100L);
+        provider.init();
+        return provider;
+    }
+
+    @Test
+    void parseAndVerify_shouldReturnClaims_whenTokenIsValid() {
+        String token = jwtTokenProvider.generateToken(USER);
+
+        Optional<Claims> claims = jwtTokenProvider.parseAndVerify(token);
+
+        assertTrue(claims.isPresent());
+        assertEquals("testuser@example.com", claims.get().getSubject());
+        assertEquals("testuser@example.com", jwtTokenProvider.getUsernameFromToken(token));
+    }
+
+    @Test
+    void getUser_shouldReadIdentityRolesAndVersionFromClaims() {
+        String token = jwtTokenProvider.generateToken(USER, "session-1");
+
+        UserPrincipal user = jwtTokenProvider.parseAndVerify(token).flatMap(jwtTokenProvider::getUser).orElseThrow();
+
+        assertEquals(42L, user.getId());
+        assertEquals("testuser@example.com", user.getEmail());
+        assertEquals(List.of("ROLE_ADMIN"), user.getRoles());
+        assertEquals(3, user.getTokenVersion());
+    }
+
+    @Test
+    void parseAndVerify_shouldServeRepeatedTokenFromCache() {
+        String token = jwtTokenProvider.generateToken(USER);
+
+        jwtTokenProvider.parseAndVerify(token);
+        jwtTokenProvider.parseAndVerify(token);
+        jwtTokenProvider.validateToken(token);
+
+        assertEquals(1, jwtTokenProvider.getClaimsCacheMissCount());
+        assertEquals(2, jwtTokenProvider.getClaimsCacheHitCount());
+    }
+
+    @Test
+    void parseAndVerify_shouldCountTokensByResult() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        JwtTokenProvider provider = newProvider(jwtKeys, 60_000L, meterRegistry);
+        String token = provider.generateToken(USER);
+
+        provider.parseAndVerify(token);
+        provider.parseAndVerify(token);
+        provider.parseAndVerify("not.a.token");
+        provider.parseAndVerify(newProvider(jwtKeys, -1_000L).generateToken(USER));
+
+        assertEquals(1, meterRegistry.counter("jwt.validation", "result", "verified").count());
+        assertEquals(1, meterRegistry.counter("jwt.validation", "result", "cached").count());
+        assertEquals(1, meterRegistry.counter("jwt.validation", "result", "invalid").count());
+        assertEquals(1, meterRegistry.counter("jwt.validation", "result", "expired").count());
+    }
+
+    @Test
+    void parseAndVerify_shouldRejectTamperedToken() {
+        String token = jwtTokenProvider.generateToken(USER);
+        // Changes a character in the middle of the signature: the last one partly encodes padding bits.
+        int position = token.lastIndexOf('.') + 10;
+        String tampered = token.substring(0, position) + (token.charAt(position) == 'A' ? 'B' : 'A') + token.substring(position + 1);
+
+        assertTrue(jwtTokenProvider.parseAndVerify(tampered).isEmpty());
+        assertFalse(jwtTokenProvider.validateToken("not.a.token"));
+    }
+
+    @Test
+    void parseAndVerify_shouldRejectExpiredToken() {
+        JwtTokenProvider expiredTokenProvider = newProvider(jwtKeys, -1_000L);
+        String token = expiredTokenProvider.generateToken(USER);
+
+        assertTrue(expiredTokenProvider.parseAndVerify(token).isEmpty());
+        assertTrue(jwtTokenProvider.parseAndVerify(token).isEmpty());
+    }
+
+    @Test
+    void parseAndVerify_shouldAcceptTokensOfFormerKey_afterRotation() {
+        String before = jwtTokenProvider.generateToken(USER);
+        String nextKeyId = nextKeyId();
+
+        // Crosses the end of the slot: the former key verifies for one more token lifetime.
+        clock.advance(Duration.ofMinutes(1));
+        String after = jwtTokenProvider.generateToken(USER);
+
+        assertEquals(nextKeyId, jwtKeys.currentKeyId());
+        assertEquals(nextKeyId, keyId(after));
+        assertNotEquals(keyId(before), keyId(after));
+        assertTrue(jwtTokenProvider.parseAndVerify(before).isPresent());
+        assertTrue(jwtTokenProvider.parseAndVerify(after).isPresent());
+    }
+
+    @Test
+    void parseAndVerify_shouldRejectTokensOfRetiredKey() {
+        JwtKeys shortLivedKeys = newKeys(1L, null, clock);
+        JwtTokenProvider provider = newProvider(shortLivedKeys, 60_000L);
+        String token = provider.generateToken(USER);
+
+        clock.advance(ROTATION_INTERVAL);
+        shortLivedKeys.rotate();
+
+        assertTrue(provider.parseAndVerify(token).isEmpty());
+        assertEquals(2, keySetIds(shortLivedKeys).size());
+    }
+
+    @Test
+    void parseAndVerify_shouldRejectTokensSignedWithUnknownKey() {
+        JwtKeys otherKeys = newKeys(60_000L, null, clock);
+
+        String token = newProvider(otherKeys, 60_000L).generateToken(USER);
+
+        assertTrue(jwtTokenProvider.parseAndVerify(token).isEmpty());
+    }
+
+    @Test
+    void parseAndVerify_shouldAcceptTokensOfAnotherInstanceSharingTheKeyStore() {
+        JwtKeys firstKeys = newKeys(60_000L, keyStore, clock);
+        JwtKeys secondKeys = newKeys(60_000L, keyStore, clock);
+
+        String token = newProvider(firstKeys, 60_000L).generateToken(USER);
+
+        assertEquals(firstKeys.currentKeyId(), secondKeys.currentKeyId());
+        assertEquals(keySetIds(firstKeys), keySetIds(secondKeys));
+        assertTrue(newProvider(secondKeys, 60_000L).parseAndVerify(token).isPresent());
+    }
+
+    @Test
+    void parseAndVerify_shouldAcceptTokensIssuedBeforeARestart() {
+        String token = newProvider(newKeys(60_000L, keyStore, clock), 60_000L).generateToken(USER);
+
+        JwtTokenProvider restarted = newProvider(newKeys(60_000L, keyStore, clock), 60_000L);
+
+        assertTrue(restarted.parseAndVerify(token).isPresent());
+    }
+
+    @Test
+    void parseAndVerify_shouldLoadUnknownKeyFromTheKeyStore() {
+        // The second instance runs behind: it only knows the keys of the first slots.
+        TestClock laggingClock = new TestClock(clock.instant());
+        JwtKeys laggingKeys = newKeys(60_000L, keyStore, laggingClock);
+        JwtKeys keys = newKeys(60_000L, keyStore, clock);
+        clock.advance(ROTATION_INTERVAL.multipliedBy(2));
+        String token = newProvider(keys, 60_000L).generateToken(USER);
+        laggingClock.advance(Duration.ofSeconds(2));
+
+        assertFalse(keySetIds(laggingKeys).contains(keyId(token)));
+        assertTrue(newProvider(laggingKeys, 60_000L).parseAndVerify(token).isPresent());
+    }
+
+    @Test
+    void init_shouldSaveKeysReadableByTheOwnerOnly() throws Exception {
+        newKeys(60_000L, keyStore, clock);
+
+        try (Stream<Path> files = Files.list(keyStore)) {
+            List<Path> keyFiles = files.toList();
+            assertEquals(2, keyFiles.size());
+            if (keyStore.getFileSystem().supportedFileAttributeViews().contains("posix")) {
+                for (Path keyFile : keyFiles) {
+                    assertEquals(Set.of(PosixFilePermission.OWNER_READ, PosixFilePermission.OWNER_WRITE),
+                            Files.getPosixFilePermissions(keyFile));
+                }
+            }
+        }
+    }
+
+    @Test
+    void rotate_shouldDeleteRetiredKeysFromTheKeyStore() throws Exception {
+        JwtKeys keys = newKeys(60_000L, keyStore, clock);
+
+        clock.advance(ROTATION_INTERVAL.multipliedBy(3));
+        keys.rotate();
+
+        try (Stream<Path> files = Files.list(keyStore)) {
+            assertEquals(2, files.count());
+        }
+        assertEquals(2, keySetIds(keys).size());
+    }
+
+    @Test
+    void keySet_shouldPublishCurrentAndNextPublicKeys() {
+        List<Map<String, Object>> keys = keySet(jwtKeys);
+
+        assertEquals(2, keys.size());
+        assertTrue(keySetIds(jwtKeys).contains(jwtKeys.currentKeyId()));
+        keys.forEach(key -> {
+            assertEquals("EC", key.get("kty"));
+            assertEquals("P-256", key.get("crv"));
+            assertEquals("ES256", key.get("alg"));
+            assertEquals(32, Base64.getUrlDecoder().decode((String) key.get("x")).length);
+            assertFalse(key.containsKey("d"));
+        });
+    }
+
+    private String nextKeyId() {
+        return keySetIds(jwtKeys).stream().filter(kid -> !kid.equals(jwtKeys.currentKeyId())).findFirst().orElseThrow();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Map<String, Object>> keySet(JwtKeys keys) {
+        return (List<Map<String, Object>>) keys.keySet().get("keys");
+    }
+
+    private static List<String> keySetIds(JwtKeys keys) {
+        return keySet(keys).stream().map(key -> (String) key.get("kid")).toList();
+    }
+
+    private static String keyId(String token) {
+        String header = new String(Base64.getUrlDecoder().decode(token.substring(0, token.indexOf('.'))));
+        return header.replaceAll(".*\"kid\":\"([^\"]+)\".*", "$1");
+    }
+
+    /**
+     * A clock the tests move forward, to cross the rotation slots without waiting.
+     */
+    private static final class TestClock extends Clock {
+        private volatile Instant instant;
+
+        private TestClock(Instant instant) {
+            this.instant = instant;
+        }
+
+        private void advance(Duration duration) {
+            instant = instant.plus(duration);
+        }
+
+        @Override
+        public Instant instant() {
+            return instant;
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.alten.producttrial;
+
+import com.alten.producttrial.dto.LoginRequest;
+import com.alten.producttrial.entity.User;
+import com.alten.producttrial.repository.RefreshTokenRepository;
+import com.alten.producttrial.repository.UserRepository;
+import com.jayway.jsonpath.JsonPath;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.boot.test.web.server.LocalManagementPort;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Integration tests for the Prometheus scrape endpoint, with metrics export enabled as in production: it is served
+ * without a token on the management port only.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@AutoConfigureMockMvc
+@AutoConfigureObservability(tracing = false)
+class MetricsIT {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @LocalManagementPort
+    private int managementPort;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private RefreshTokenRepository refreshTokenRepository;
+
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+
+    @AfterEach
+    void tearDown() {
+        refreshTokenRepository.deleteAll();
+        userRepository.deleteAll();
+    }
+
+    @Test
+    void shouldExposeEndpointServiceJwtPoolAndHibernateMetricsToPrometheus() throws Exception {
+        userRepository.save(User.builder()
+                .username("metrics_user")
+                .firstname("Metrics")
+                .email("metrics_user@example.com")
+                .password(passwordEncoder.encode("password123"))
+                .build());
+        String login = mockMvc.perform(post("/api/token")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(TestUtil.convertObjectToJsonBytes(new LoginRequest("metrics_user@example.com", "password123"))))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        String token = JsonPath.read(login, "$.token");
+        mockMvc.perform(get("/api/products").header("Authorization", "Bearer " + token)).andExpect(status().isOk());
+        mockMvc.perform(get("/api/products").header("Authorization", "Bearer " + token)).andExpect(status().isOk());
+
+        ResponseEntity<String> scrape = restTemplate.getForEntity(managementUrl("/actuator/prometheus"), String.class);
+
+        assertThat(scrape.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(scrape.getBody())
+                .contains("http_server_requests_seconds_bucket{")
+                .contains("uri=\"/api/products\"")
+                .contains("service_calls_seconds_bucket{")
+                .contains("class=\"com.alten.producttrial.service.ProductService\"")
+                .contains("method=\"getCatalogSnapshot\"")
+                .contains("le=\"+Inf\"")
+                .contains("jwt_validation_total{application=\"producttrial\",result=\"verified\"}")
+                .contains("jwt_validation_total{application=\"producttrial\",result=\"cached\"}")
+                .contains("hikaricp_connections_active{")
+                .contains("hibernate_statements_total{");
+    }
+
+    @Test
+    void shouldOnlyOpenThePrometheusEndpointOnTheManagementPort() {
+        assertThat(restTemplate.getForEntity("/actuator/prometheus", String.class).getStatusCode())
+                .isEqualTo(HttpStatus.UNAUTHORIZED);
+        assertThat(restTemplate.getForEntity(managementUrl("/actuator/metrics"), String.class).getStatusCode())
+                .isEqualTo(HttpStatus.UNAUTHORIZED);
+    }
+
+    private String managementUrl(String path) {
+        return "http://127.0.0.1:" + managementPort + path;
+    }
+}
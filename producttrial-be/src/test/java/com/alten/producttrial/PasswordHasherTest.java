@@ -0,0 +1,81 @@
+package com.alten.producttrial;
+
+import com.alten.producttrial.config.PasswordHasher;
+import com.alten.producttrial.exception.TooManyRequestsException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class PasswordHasherTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private PasswordHasher passwordHasher;
+
+    @AfterEach
+    void tearDown() {
+        passwordHasher.shutdown();
+    }
+
+    @Test
+    void shouldHashAndCheckPasswordsAndRecordTheirDuration() {
+        passwordHasher = new PasswordHasher(new BCryptPasswordEncoder(4), meterRegistry, 4, 1, 1);
+
+        String hash = passwordHasher.encode("secret");
+
+        assertTrue(passwordHasher.matches("secret", hash));
+        assertFalse(passwordHasher.matches("wrong", hash));
+        assertEquals(1, meterRegistry.get("password.hash").tag("operation", "encode").timer().count());
+        assertEquals(2, meterRegistry.get("password.hash").tag("operation", "matches").timer().count());
+    }
+
+    @Test
+    void shouldRequireRehash_whenStrengthDiffersFromConfiguredOne() {
+        passwordHasher = new PasswordHasher(new BCryptPasswordEncoder(5), meterRegistry, 5, 1, 1);
+
+        assertFalse(passwordHasher.needsRehash(new BCryptPasswordEncoder(5).encode("secret")));
+        assertTrue(passwordHasher.needsRehash(new BCryptPasswordEncoder(4).encode("secret")));
+        assertTrue(passwordHasher.needsRehash(new BCryptPasswordEncoder(6).encode("secret")));
+        assertTrue(passwordHasher.needsRehash("plain"));
+    }
+
+    @Test
+    void shouldRejectHash_whenThreadsAndQueueAreFull() throws Exception {
+        CountDownLatch hashing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        PasswordEncoder slowEncoder = mock(PasswordEncoder.class);
+        when(slowEncoder.encode(any())).thenAnswer(invocation -> {
+            hashing.countDown();
+            release.await();
+            return "hash";
+        });
+        passwordHasher = new PasswordHasher(slowEncoder, meterRegistry, 10, 1, 1);
+
+        try (ExecutorService callers = Executors.newFixedThreadPool(2)) {
+            Future<String> running = callers.submit(() -> passwordHasher.encode("first"));
+            assertTrue(hashing.await(5, TimeUnit.SECONDS));
+            Future<String> queued = callers.submit(() -> passwordHasher.encode("second"));
+            while (meterRegistry.get("password.hash.queue").gauge().value() < 1) {
+                Thread.onSpinWait();
+            }
+
+            assertThrows(TooManyRequestsException.class, () -> passwordHasher.encode("third"));
+            assertEquals(1, meterRegistry.get("password.hash.rejected").counter().count());
+
+            release.countDown();
+            assertEquals("hash", running.get(5, TimeUnit.SECONDS));
+            assertEquals("hash", queued.get(5, TimeUnit.SECONDS));
+        }
+    }
+}
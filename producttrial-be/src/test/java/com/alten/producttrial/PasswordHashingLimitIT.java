@@ -0,0 +1,141 @@
+package com.alten.producttrial;
+
+import com.alten.producttrial.config.ConcurrencyLimitedTransactionManager;
+import com.alten.producttrial.dto.UserDto;
+import com.alten.producttrial.entity.Product;
+import com.alten.producttrial.enums.InventoryStatus;
+import com.alten.producttrial.repository.ProductRepository;
+import com.alten.producttrial.repository.UserRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.context.bean.override.mockito.MockitoSpyBean;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.ResultActions;
+
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * Checks that sign-ups waiting for a password hash hold no database transaction: while the only hashing thread is
+ * busy and its queue is full, the other requests still get a connection and the next sign-up is rejected with a 429
+ * rather than waiting for a transaction permit.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "transaction.concurrency.max-concurrent=1",
+        "transaction.concurrency.acquire-timeout=200ms",
+        "password-hashing.threads=1",
+        "password-hashing.queue-capacity=1"
+})
+@AutoConfigureMockMvc(addFilters = false)
+class PasswordHashingLimitIT {
+
+    @MockitoSpyBean
+    private PasswordEncoder passwordEncoder;
+
+    @Autowired
+    private ConcurrencyLimitedTransactionManager transactionManager;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    private Product product;
+
+    @BeforeEach
+    void setUp() {
+        product = productRepository.save(Product.builder()
+                .code("P123")
+                .name("Laptop")
+                .category("Electronics")
+                .price(999.99)
+                .quantity(10)
+                .inventoryStatus(InventoryStatus.INSTOCK)
+                .createdAt(ZonedDateTime.now())
+                .build());
+    }
+
+    @AfterEach
+    void tearDown() {
+        userRepository.deleteAll();
+        productRepository.deleteAll();
+    }
+
+    @Test
+    void waitingHashesShouldHoldNoTransactionPermit() throws Exception {
+        CountDownLatch hashing = new CountDownLatch(1);
+        CountDownLatch hashDone = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            hashing.countDown();
+            assertThat(hashDone.await(10, TimeUnit.SECONDS)).isTrue();
+            return invocation.callRealMethod();
+        }).when(passwordEncoder).encode(any());
+
+        try (ExecutorService executor = Executors.newFixedThreadPool(2)) {
+            List<Future<ResultActions>> signUps = new ArrayList<>();
+            signUps.add(executor.submit(() -> signUp(1)));
+            assertThat(hashing.await(5, TimeUnit.SECONDS)).isTrue();
+            signUps.add(executor.submit(() -> signUp(2)));
+            awaitQueuedHash();
+
+            assertThat(transactionManager.getAvailablePermits()).isEqualTo(1);
+            signUp(3)
+                    .andExpect(status().isTooManyRequests())
+                    .andExpect(header().exists("Retry-After"));
+            mockMvc.perform(get("/api/products/{id}", product.getId()))
+                    .andExpect(status().isOk());
+
+            hashDone.countDown();
+            for (Future<ResultActions> signUp : signUps) {
+                signUp.get(10, TimeUnit.SECONDS).andExpect(status().isCreated());
+            }
+        }
+
+        assertThat(userRepository.findByEmail("user1@example.com")).isPresent();
+        assertThat(userRepository.findByEmail("user2@example.com")).isPresent();
+        assertThat(userRepository.findByEmail("user3@example.com")).isEmpty();
+    }
+
+    private ResultActions signUp(int index) throws Exception {
+        UserDto userDto = UserDto.builder()
+                .username("user" + index)
+                .firstname("User")
+                .email("user" + index + "@example.com")
+                .password("password123")
+                .build();
+        return mockMvc.perform(post("/api/account")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(TestUtil.convertObjectToJsonBytes(userDto)));
+    }
+
+    private void awaitQueuedHash() throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (meterRegistry.get("password.hash.queue").gauge().value() < 1) {
+            assertThat(System.nanoTime()).isLessThan(deadline);
+            Thread.sleep(10);
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package com.alten.producttrial;
+
+import com.alten.producttrial.dto.ProductBulkDeleteRequest;
+import com.alten.producttrial.dto.ProductBulkUpdateRequest;
+import com.alten.producttrial.dto.ProductFilter;
+import com.alten.producttrial.entity.CartItem;
+import com.alten.producttrial.entity.Product;
+import com.alten.producttrial.entity.User;
+import com.alten.producttrial.entity.Wishlist;
+import com.alten.producttrial.enums.InventoryStatus;
+import com.alten.producttrial.repository.CartItemRepository;
+import com.alten.producttrial.repository.ProductRepository;
+import com.alten.producttrial.repository.UserRepository;
+import com.alten.producttrial.repository.WishlistRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.ZonedDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * Integration tests for the bulk product update and delete, against the real set-based statements.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@AutoConfigureMockMvc(addFilters = false)
+class ProductBulkIT {
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private CartItemRepository cartItemRepository;
+
+    @Autowired
+    private WishlistRepository wishlistRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    private Product laptop;
+    private Product mouse;
+    private Product desk;
+
+    @BeforeEach
+    void setUp() {
+        laptop = productRepository.save(product("P1", "Laptop", "Electronics", 1000.0));
+        mouse = productRepository.save(product("P2", "Mouse", "Electronics", 20.0));
+        desk = productRepository.save(product("P3", "Desk", "Furniture", 150.0));
+    }
+
+    @AfterEach
+    void tearDown() {
+        cartItemRepository.deleteAll();
+        wishlistRepository.deleteAll();
+        productRepository.deleteAll();
+        userRepository.deleteAll();
+    }
+
+    private static Product product(String code, String name, String category, double price) {
+        return Product.builder()
+                .code(code)
+                .name(name)
+                .category(category)
+                .price(price)
+                .quantity(10)
+                .inventoryStatus(InventoryStatus.INSTOCK)
+                .createdAt(ZonedDateTime.now())
+                .build();
+    }
+
+    @Test
+    void shouldUpdateProductsMatchingFilterAndRefreshCachedViews() throws Exception {
+        // Loads the products into the second-level cache and the catalog snapshot, which the update must refresh.
+        mockMvc.perform(get("/api/products/{id}", laptop.getId())).andExpect(jsonPath("$.price", is(1000.0)));
+        mockMvc.perform(get("/api/products")).andExpect(jsonPath("$[*].price", contains(1000.0, 20.0, 150.0)));
+        ProductBulkUpdateRequest request = new ProductBulkUpdateRequest(null,
+                ProductFilter.builder().category("Electronics").build(), 9.99, InventoryStatus.LOWSTOCK);
+
+        mockMvc.perform(post("/api/products/bulk-update")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(TestUtil.convertObjectToJsonBytes(request)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.affected", is(2)));
+
+        mockMvc.perform(get("/api/products/{id}", laptop.getId()))
+                .andExpect(jsonPath("$.price", is(9.99)))
+                .andExpect(jsonPath("$.inventoryStatus", is("LOWSTOCK")))
+                .andExpect(jsonPath("$.updatedAt", notNullValue()));
+        mockMvc.perform(get("/api/products"))
+                .andExpect(jsonPath("$[*].price", contains(9.99, 9.99, 150.0)))
+                .andExpect(jsonPath("$[2].inventoryStatus", is("INSTOCK")));
+        mockMvc.perform(get("/api/products/search").param("inventoryStatus", "LOWSTOCK"))
+                .andExpect(jsonPath("$.content[*].code", containsInAnyOrder("P1", "P2")));
+    }
+
+    @Test
+    void shouldUpdateOnlyTheGivenFieldOfListedProducts() throws Exception {
+        ProductBulkUpdateRequest request = new ProductBulkUpdateRequest(List.of(mouse.getId(), desk.getId(), -1L),
+                null, null, InventoryStatus.OUTOFSTOCK);
+
+        mockMvc.perform(post("/api/products/bulk-update")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(TestUtil.convertObjectToJsonBytes(request)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.affected", is(2)));
+
+        Product updated = productRepository.findById(desk.getId()).orElseThrow();
+        assertEquals(InventoryStatus.OUTOFSTOCK, updated.getInventoryStatus());
+        assertEquals(150.0, updated.getPrice());
+        assertEquals(InventoryStatus.INSTOCK, productRepository.findById(laptop.getId()).orElseThrow().getInventoryStatus());
+    }
+
+    @Test
+    void shouldDeleteListedProductsWithTheirCartAndWishlistEntries() throws Exception {
+        User user = userRepository.save(User.builder()
+                .username("bulk_user").firstname("Bulk").email("bulk@example.com").password("password").build());
+        cartItemRepository.save(CartItem.builder().user(user).product(laptop).quantity(1).build());
+        cartItemRepository.save(CartItem.builder().user(user).product(desk).quantity(1).build());
+        Wishlist wishlist = wishlistRepository.save(Wishlist.builder().user(user).products(Set.of(laptop, mouse)).build());
+        mockMvc.perform(get("/api/products/{id}", laptop.getId())).andExpect(status().isOk());
+
+        mockMvc.perform(post("/api/products/bulk-delete")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(TestUtil.convertObjectToJsonBytes(new ProductBulkDeleteRequest(List.of(laptop.getId(), mouse.getId()), null))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.affected", is(2)));
+
+        mockMvc.perform(get("/api/products/{id}", laptop.getId())).andExpect(status().isNotFound());
+        mockMvc.perform(get("/api/products")).andExpect(jsonPath("$[*].code", contains("P3")));
+        assertEquals(List.of(desk.getId()), cartItemRepository.findAll().stream().map(item -> item.getProduct().getId()).toList());
+        assertEquals(List.of(), wishlistRepository.findProductIds(wishlist.getId()));
+    }
+
+    @Test
+    void shouldRejectAmbiguousOrMissingSelection() throws Exception {
+        for (ProductBulkDeleteRequest request : Arrays.asList(
+                new ProductBulkDeleteRequest(null, null),
+                new ProductBulkDeleteRequest(null, new ProductFilter()),
+                new ProductBulkDeleteRequest(List.of(laptop.getId()), ProductFilter.builder().category("Electronics").build()))) {
+            mockMvc.perform(post("/api/products/bulk-delete")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(TestUtil.convertObjectToJsonBytes(request)))
+                    .andExpect(status().isBadRequest());
+        }
+        mockMvc.perform(post("/api/products/bulk-update")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(TestUtil.convertObjectToJsonBytes(new ProductBulkUpdateRequest(List.of(laptop.getId()), null, null, null))))
+                .andExpect(status().isBadRequest());
+
+        assertEquals(3, productRepository.count());
+    }
+}
@@ -0,0 +1,124 @@
+package com.alten.producttrial;
+
+import com.alten.producttrial.dto.ProductDto;
+import com.alten.producttrial.entity.Product;
+import com.alten.producttrial.enums.InventoryStatus;
+import com.alten.producttrial.exception.ResourceNotFoundException;
+import com.alten.producttrial.repository.ProductRepository;
+import com.alten.producttrial.service.ProductService;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.time.ZonedDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Checks that products are served from the second-level cache and that writes are reflected in it.
+ */
+@SpringBootTest
+class ProductCacheIT {
+
+    @Autowired
+    private ProductService productService;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+
+    private Product product;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        product = productRepository.save(Product.builder()
+                .code("P1")
+                .name("Product1")
+                .category("Category1")
+                .price(10.0)
+                .quantity(100)
+                .inventoryStatus(InventoryStatus.INSTOCK)
+                .createdAt(ZonedDateTime.now())
+                .build());
+        statistics.clear();
+    }
+
+    @AfterEach
+    void tearDown() {
+        productRepository.deleteAll();
+    }
+
+    @Test
+    void shouldServeProductFromSecondLevelCache() {
+        productService.getProductById(product.getId());
+        long statementsAfterFirstRead = statistics.getPrepareStatementCount();
+
+        ProductDto result = productService.getProductById(product.getId());
+
+        assertThat(result.getName()).isEqualTo("Product1");
+        assertThat(statistics.getSecondLevelCacheHitCount()).isPositive();
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(statementsAfterFirstRead);
+    }
+
+    @Test
+    void shouldServeProductListFromQueryCache() {
+        productService.getAllProducts();
+        long statementsAfterFirstRead = statistics.getPrepareStatementCount();
+
+        assertThat(productService.getAllProducts()).hasSize(1);
+        assertThat(statistics.getQueryCacheHitCount()).isPositive();
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(statementsAfterFirstRead);
+    }
+
+    @Test
+    void shouldReflectCreationInCachedProductList() {
+        productService.getAllProducts();
+
+        productService.createProduct(ProductDto.builder()
+                .code("P2")
+                .name("Product2")
+                .category("Category1")
+                .price(20.0)
+                .quantity(50)
+                .inventoryStatus(InventoryStatus.INSTOCK)
+                .build());
+
+        assertThat(productService.getAllProducts()).extracting(ProductDto::getName)
+                .containsExactlyInAnyOrder("Product1", "Product2");
+    }
+
+    @Test
+    void shouldReflectUpdateInCachedProduct() {
+        productService.getProductById(product.getId());
+        ProductDto update = productService.getProductById(product.getId());
+        update.setName("Updated");
+
+        productService.updateProduct(product.getId(), update, null);
+
+        assertThat(productService.getProductById(product.getId()).getName()).isEqualTo("Updated");
+        assertThat(productService.getAllProducts()).extracting(ProductDto::getName).containsExactly("Updated");
+    }
+
+    @Test
+    void shouldEvictDeletedProduct() {
+        productService.getProductById(product.getId());
+        productService.getAllProducts();
+
+        productService.deleteProduct(product.getId());
+
+        assertThatThrownBy(() -> productService.getProductById(product.getId()))
+                .isInstanceOf(ResourceNotFoundException.class);
+        assertThat(productService.getAllProducts()).isEmpty();
+    }
+}
@@ -0,0 +1,101 @@
+package com.alten.producttrial;
+
+import com.alten.producttrial.config.ProductCatalogSnapshotCache;
+import com.alten.producttrial.dto.ProductCatalogSnapshot;
+import com.alten.producttrial.dto.ProductDto;
+import com.alten.producttrial.entity.Product;
+import com.alten.producttrial.mapper.ProductMapper;
+import com.alten.producttrial.repository.ProductRepository;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class ProductCatalogSnapshotCacheTest {
+
+    @Mock
+    private ProductRepository productRepository;
+
+    @Mock
+    private ProductMapper productMapper;
+
+    private ProductCatalogSnapshotCache productCatalogSnapshotCache;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        productCatalogSnapshotCache = new ProductCatalogSnapshotCache(productRepository, productMapper,
+                new ObjectMapper().setSerializationInclusion(JsonInclude.Include.NON_NULL));
+        when(productMapper.toDto(any(Product.class))).thenAnswer(invocation -> {
+            Product product = invocation.getArgument(0);
+            return ProductDto.builder().id(product.getId()).code(product.getCode()).build();
+        });
+    }
+
+    @Test
+    void getSnapshot_shouldLoadCatalogOnlyOnce_whenNothingChanged() {
+        when(productRepository.findAll()).thenReturn(List.of(product(1L, "P1"), product(2L, "P2")));
+
+        ProductCatalogSnapshot first = productCatalogSnapshotCache.getSnapshot();
+        ProductCatalogSnapshot second = productCatalogSnapshotCache.getSnapshot();
+
+        assertSame(first, second);
+        assertEquals("[{\"id\":1,\"code\":\"P1\"},{\"id\":2,\"code\":\"P2\"}]", json(first));
+        verify(productRepository, times(1)).findAll();
+    }
+
+    @Test
+    void getSnapshot_shouldReloadOnlyChangedProducts() {
+        when(productRepository.findAll()).thenReturn(List.of(product(1L, "P1"), product(2L, "P2")));
+        when(productRepository.findAllById(List.of(2L))).thenReturn(List.of(product(2L, "P2-updated")));
+        ProductCatalogSnapshot initial = productCatalogSnapshotCache.getSnapshot();
+
+        productCatalogSnapshotCache.markChanged(2L);
+        ProductCatalogSnapshot updated = productCatalogSnapshotCache.getSnapshot();
+
+        assertEquals("[{\"id\":1,\"code\":\"P1\"},{\"id\":2,\"code\":\"P2-updated\"}]", json(updated));
+        assertEquals(initial.getVersion() + 1, updated.getVersion());
+        assertNotEquals(initial.getEtag(), updated.getEtag());
+        verify(productRepository, times(1)).findAll();
+        verify(productMapper, times(3)).toDto(any(Product.class));
+    }
+
+    @Test
+    void getSnapshot_shouldDropDeletedProducts() {
+        when(productRepository.findAll()).thenReturn(List.of(product(1L, "P1"), product(2L, "P2")));
+        when(productRepository.findAllById(List.of(1L))).thenReturn(List.of());
+        productCatalogSnapshotCache.getSnapshot();
+
+        productCatalogSnapshotCache.markChanged(1L);
+
+        assertEquals("[{\"id\":2,\"code\":\"P2\"}]", json(productCatalogSnapshotCache.getSnapshot()));
+    }
+
+    @Test
+    void getSnapshot_shouldReloadWholeCatalog_afterInvalidation() {
+        when(productRepository.findAll()).thenReturn(List.of(product(1L, "P1")), List.of());
+        productCatalogSnapshotCache.getSnapshot();
+
+        productCatalogSnapshotCache.invalidateAll();
+
+        assertEquals("[]", json(productCatalogSnapshotCache.getSnapshot()));
+        verify(productRepository, times(2)).findAll();
+    }
+
+    private static Product product(Long id, String code) {
+        return Product.builder().id(id).code(code).build();
+    }
+
+    private static String json(ProductCatalogSnapshot snapshot) {
+        return new String(snapshot.getJson(), StandardCharsets.UTF_8);
+    }
+}
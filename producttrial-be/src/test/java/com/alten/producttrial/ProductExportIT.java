@@ -0,0 +1,140 @@
+package com.alten.producttrial;
+
+import com.alten.producttrial.dto.ProductDto;
+import com.alten.producttrial.entity.Product;
+import com.alten.producttrial.enums.InventoryStatus;
+import com.alten.producttrial.repository.ProductRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * Integration tests for the catalog export, including a round trip through the bulk import.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@AutoConfigureMockMvc(addFilters = false)
+class ProductExportIT {
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void cleanDatabaseBeforeTest() {
+        productRepository.deleteAll();
+    }
+
+    @AfterEach
+    void cleanDatabaseAfterTest() {
+        productRepository.deleteAll();
+    }
+
+    private List<Product> saveSampleProducts(int count) {
+        List<Product> products = new ArrayList<>();
+        for (int i = 1; i <= count; i++) {
+            products.add(Product.builder()
+                    .code("P" + i)
+                    .name("Product, \"" + i + "\"")
+                    .description(i % 2 == 0 ? null : "Line one\nline two")
+                    .category("Category")
+                    .price(i * 1.5)
+                    .quantity(i)
+                    .inventoryStatus(InventoryStatus.INSTOCK)
+                    .rating(4.0)
+                    .createdAt(ZonedDateTime.now())
+                    .build());
+        }
+        return productRepository.saveAll(products);
+    }
+
+    @Test
+    void shouldExportProductsAsNdjson() throws Exception {
+        List<Product> products = saveSampleProducts(3);
+
+        String body = mockMvc.perform(get("/api/products/export"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON))
+                .andExpect(header().string(HttpHeaders.CONTENT_DISPOSITION, containsString("products.ndjson")))
+                .andReturn().getResponse().getContentAsString();
+
+        assertThat(body, endsWith("\n"));
+        String[] lines = body.split("\n");
+        assertEquals(3, lines.length);
+        for (int i = 0; i < lines.length; i++) {
+            ProductDto exported = objectMapper.readValue(lines[i], ProductDto.class);
+            assertEquals(products.get(i).getId(), exported.getId());
+            assertEquals(products.get(i).getName(), exported.getName());
+        }
+    }
+
+    @Test
+    void shouldExportCsvThatImportsBack() throws Exception {
+        saveSampleProducts(3);
+        String csv = mockMvc.perform(get("/api/products/export").param("format", "CSV"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith("text/csv"))
+                .andReturn().getResponse().getContentAsString();
+        assertThat(csv, startsWith("id,code,name,description,image,category,price,quantity,"));
+
+        productRepository.deleteAll();
+        mockMvc.perform(post("/api/products/import").contentType("text/csv").content(csv))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.rowsImported", is(3)))
+                .andExpect(jsonPath("$.rowsRejected", is(0)));
+
+        mockMvc.perform(get("/api/products"))
+                .andExpect(jsonPath("$[*].code", contains("P1", "P2", "P3")))
+                .andExpect(jsonPath("$[0].name", is("Product, \"1\"")))
+                .andExpect(jsonPath("$[0].description", is("Line one\nline two")))
+                .andExpect(jsonPath("$[2].price", is(4.5)));
+    }
+
+    @Test
+    void shouldNotFillSecondLevelCache_whenExporting() throws Exception {
+        saveSampleProducts(50);
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        long cachePuts = statistics.getSecondLevelCachePutCount();
+
+        mockMvc.perform(get("/api/products/export")).andExpect(status().isOk());
+
+        assertEquals(cachePuts, statistics.getSecondLevelCachePutCount());
+    }
+
+    @Test
+    void shouldReturnBadRequest_whenFormatIsUnknown() throws Exception {
+        mockMvc.perform(get("/api/products/export").param("format", "XML"))
+                .andExpect(status().isBadRequest());
+    }
+
+    private static <T> void assertThat(T actual, org.hamcrest.Matcher<? super T> matcher) {
+        org.hamcrest.MatcherAssert.assertThat(actual, matcher);
+    }
+}
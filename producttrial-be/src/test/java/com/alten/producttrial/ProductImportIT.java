@@ -0,0 +1,160 @@
+package com.alten.producttrial;
+
+import com.alten.producttrial.entity.Product;
+import com.alten.producttrial.enums.InventoryStatus;
+import com.alten.producttrial.repository.ProductImportRepository;
+import com.alten.producttrial.repository.ProductRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * Integration tests for the bulk product import, against the real upsert statement.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@AutoConfigureMockMvc(addFilters = false)
+class ProductImportIT {
+
+    private static final String CSV_HEADER = "code,name,description,category,price,quantity,inventoryStatus,rating\n";
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private ProductImportRepository productImportRepository;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void cleanDatabaseBeforeTest() {
+        productRepository.deleteAll();
+        productImportRepository.deleteAll();
+    }
+
+    @AfterEach
+    void cleanDatabaseAfterTest() {
+        productRepository.deleteAll();
+        productImportRepository.deleteAll();
+    }
+
+    @Test
+    void shouldCreateAndUpdateProductsByCodeFromCsv() throws Exception {
+        // Arrange
+        ZonedDateTime createdAt = ZonedDateTime.now().minusDays(1).truncatedTo(ChronoUnit.SECONDS);
+        Product existing = productRepository.save(Product.builder()
+                .code("P100").name("Old name").category("Old").price(1.0).quantity(1)
+                .inventoryStatus(InventoryStatus.OUTOFSTOCK).createdAt(createdAt).build());
+        // Loads the product into the second-level cache, which the import must evict.
+        mockMvc.perform(get("/api/products/{id}", existing.getId())).andExpect(jsonPath("$.name", is("Old name")));
+        String csv = CSV_HEADER
+                + "P100,Laptop,\"Fast, light laptop\",Electronics,1299.99,5,INSTOCK,4.5\n"
+                + "P101,Mouse,,Electronics,19.5,50,LOWSTOCK,\n";
+
+        // Act & Assert
+        mockMvc.perform(post("/api/products/import").param("importId", "nightly-1")
+                        .contentType("text/csv").content(csv))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.importId", is("nightly-1")))
+                .andExpect(jsonPath("$.status", is("COMPLETED")))
+                .andExpect(jsonPath("$.rowsRead", is(2)))
+                .andExpect(jsonPath("$.rowsImported", is(2)))
+                .andExpect(jsonPath("$.rowsRejected", is(0)))
+                .andExpect(jsonPath("$.errors", empty()));
+
+        mockMvc.perform(get("/api/products/{id}", existing.getId()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.name", is("Laptop")))
+                .andExpect(jsonPath("$.description", is("Fast, light laptop")))
+                .andExpect(jsonPath("$.inventoryStatus", is("INSTOCK")));
+        Product updated = productRepository.findById(existing.getId()).orElseThrow();
+        assertEquals(createdAt.toInstant(), updated.getCreatedAt().toInstant());
+        assertNotNull(updated.getUpdatedAt());
+
+        mockMvc.perform(get("/api/products"))
+                .andExpect(jsonPath("$[*].code", contains("P100", "P101")));
+        mockMvc.perform(get("/api/products/search").param("q", "mouse"))
+                .andExpect(jsonPath("$.content[*].code", contains("P101")));
+    }
+
+    @Test
+    void shouldReportInvalidNdjsonRowsAndImportTheOthers() throws Exception {
+        String ndjson = """
+                {"code":"P200","name":"Desk","category":"Furniture","price":150.0,"quantity":3}
+                {"code":"P201","name":"Chair","category":"Furniture","price":"cheap","quantity":3}
+
+                {"code":"P202","category":"Furniture","price":80.0,"quantity":3}
+                not json
+                {"code":"P203","name":"Lamp","category":"Furniture","price":25.0,"quantity":10}
+                """;
+
+        mockMvc.perform(post("/api/products/import").contentType(MediaType.APPLICATION_NDJSON).content(ndjson))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.importId", notNullValue()))
+                .andExpect(jsonPath("$.rowsRead", is(5)))
+                .andExpect(jsonPath("$.rowsImported", is(2)))
+                .andExpect(jsonPath("$.rowsRejected", is(3)))
+                .andExpect(jsonPath("$.errors[*].row", contains(2, 3, 4)))
+                .andExpect(jsonPath("$.errors[1].code", is("P202")))
+                .andExpect(jsonPath("$.errors[1].message", is("name is required")));
+
+        assertEquals(2, productRepository.count());
+    }
+
+    @Test
+    void shouldReportRatingsOutOfRange() throws Exception {
+        String csv = CSV_HEADER
+                + "P310,Stapler,,Office,9.0,5,INSTOCK,-1\n"
+                + "P311,Folder,,Office,2.0,5,INSTOCK,5.5\n"
+                + "P312,Binder,,Office,3.0,5,INSTOCK,5\n";
+
+        mockMvc.perform(post("/api/products/import").contentType("text/csv").content(csv))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.rowsImported", is(1)))
+                .andExpect(jsonPath("$.errors[*].row", contains(1, 2)))
+                .andExpect(jsonPath("$.errors[0].message", is("rating must be between 0 and 5.0")));
+    }
+
+    @Test
+    void shouldReportCsvRowsThatCannotBeMapped() throws Exception {
+        String csv = CSV_HEADER
+                + "P300,Pen,,Office,abc,5,INSTOCK,\n"
+                + "P301,Pencil,,Office,1.5,5,INSTOCK,\n";
+
+        mockMvc.perform(post("/api/products/import").contentType("text/csv").content(csv))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.rowsImported", is(1)))
+                .andExpect(jsonPath("$.errors[*].row", contains(1)));
+    }
+
+    @Test
+    void shouldRejectCompletedImportAndExposeCheckpoint() throws Exception {
+        String csv = CSV_HEADER + "P400,Cup,,Kitchen,4.0,5,INSTOCK,\n";
+        mockMvc.perform(post("/api/products/import").param("importId", "once").contentType("text/csv").content(csv))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(post("/api/products/import").param("importId", "once").contentType("text/csv").content(csv))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/api/products/import/{importId}", "once"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.status", is("COMPLETED")))
+                .andExpect(jsonPath("$.rowsRead", is(1)));
+        mockMvc.perform(get("/api/products/import/{importId}", "unknown"))
+                .andExpect(status().isNotFound());
+    }
+}
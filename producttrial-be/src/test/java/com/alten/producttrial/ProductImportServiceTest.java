@@ -0,0 +1,151 @@
+package com.alten.producttrial;
+
+import com.alten.producttrial.config.ProductChangeListener;
+import com.alten.producttrial.dto.ProductImportResultDto;
+import com.alten.producttrial.entity.Product;
+import com.alten.producttrial.entity.ProductImport;
+import com.alten.producttrial.enums.ProductImportStatus;
+import com.alten.producttrial.mapper.ProductMapperImpl;
+import com.alten.producttrial.repository.ProductImportRepository;
+import com.alten.producttrial.repository.ProductRepository;
+import com.alten.producttrial.service.ProductImportService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+class ProductImportServiceTest {
+
+    @Mock
+    private ProductRepository productRepository;
+
+    @Mock
+    private ProductImportRepository productImportRepository;
+
+    @Mock
+    private ProductChangeListener productChangeListener;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private ProductImportService productImportService;
+
+    private final List<List<String>> upsertedCodes = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        productImportService = new ProductImportService(productRepository, productImportRepository, new ProductMapperImpl(),
+                productChangeListener, new ObjectMapper(), transactionManager, 2);
+
+        when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+        when(productImportRepository.save(any(ProductImport.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(productRepository.upsertAllByCode(anyList())).thenAnswer(invocation -> {
+            List<Product> products = invocation.getArgument(0);
+            upsertedCodes.add(products.stream().map(Product::getCode).toList());
+            return List.of();
+        });
+    }
+
+    private static String csv(int rows) {
+        StringBuilder csv = new StringBuilder("code,name,category,price,quantity\n");
+        for (int i = 1; i <= rows; i++) {
+            csv.append("P").append(i).append(",Product ").append(i).append(",Category,10.0,1\n");
+        }
+        return csv.toString();
+    }
+
+    @Test
+    void importProducts_shouldUpsertInBatchesAndCheckpointEachOne() throws IOException {
+        ProductImportResultDto result = productImportService.importProducts(
+                new ByteArrayInputStream(csv(5).getBytes(StandardCharsets.UTF_8)), ProductImportService.TEXT_CSV, "sync");
+
+        assertEquals(List.of(List.of("P1", "P2"), List.of("P3", "P4"), List.of("P5")), upsertedCodes);
+        assertEquals(ProductImportStatus.COMPLETED, result.getStatus());
+        assertEquals(5, result.getRowsRead());
+        assertEquals(5, result.getRowsImported());
+        verify(transactionManager, times(3)).commit(any());
+    }
+
+    @Test
+    void importProducts_shouldKeepCheckpointOfLastCommittedBatch_whenStreamIsInterrupted() {
+        String firstRows = csv(3);
+        InputStream interrupted = new SequenceInputStream(new ByteArrayInputStream(firstRows.getBytes(StandardCharsets.UTF_8)),
+                new InputStream() {
+                    @Override
+                    public int read() throws IOException {
+                        throw new IOException("Connection reset");
+                    }
+                });
+
+        assertThrows(IOException.class,
+                () -> productImportService.importProducts(interrupted, ProductImportService.TEXT_CSV, "sync"));
+
+        ArgumentCaptor<ProductImport> checkpoint = ArgumentCaptor.forClass(ProductImport.class);
+        verify(productImportRepository, times(2)).save(checkpoint.capture());
+        assertEquals(2, checkpoint.getValue().getRowsRead());
+        assertEquals(ProductImportStatus.IN_PROGRESS, checkpoint.getValue().getStatus());
+        assertEquals(List.of(List.of("P1", "P2")), upsertedCodes);
+    }
+
+    @Test
+    void importProducts_shouldRejectRowsLongerThanTheirColumns() throws IOException {
+        String csv = csv(3).replace("Product 2", "P".repeat(256));
+
+        ProductImportResultDto result = productImportService.importProducts(
+                new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)), ProductImportService.TEXT_CSV, "sync");
+
+        assertEquals(List.of(List.of("P1", "P3"), List.of()), upsertedCodes);
+        assertEquals(2, result.getRowsImported());
+        assertEquals(1, result.getRowsRejected());
+        assertEquals("name must be at most 255 characters", result.getErrors().getFirst().getMessage());
+    }
+
+    @Test
+    void importProducts_shouldKeepCheckpointCounters_whenBatchFailsToCommit() {
+        ProductImport checkpoint = ProductImport.builder()
+                .id("sync").status(ProductImportStatus.IN_PROGRESS).rowsRead(2).rowsImported(2).build();
+        when(productImportRepository.findById("sync")).thenReturn(Optional.of(checkpoint));
+        when(productRepository.upsertAllByCode(anyList())).thenThrow(new DataIntegrityViolationException("value too long"));
+
+        assertThrows(DataIntegrityViolationException.class, () -> productImportService.importProducts(
+                new ByteArrayInputStream(csv(5).getBytes(StandardCharsets.UTF_8)), ProductImportService.TEXT_CSV, "sync"));
+
+        assertEquals(2, checkpoint.getRowsRead());
+        assertEquals(2, checkpoint.getRowsImported());
+        assertEquals(ProductImportStatus.IN_PROGRESS, checkpoint.getStatus());
+    }
+
+    @Test
+    void importProducts_shouldSkipCommittedRows_whenResumed() throws IOException {
+        ProductImport checkpoint = ProductImport.builder()
+                .id("sync").status(ProductImportStatus.IN_PROGRESS).rowsRead(2).rowsImported(2).build();
+        when(productImportRepository.findById("sync")).thenReturn(Optional.of(checkpoint));
+
+        ProductImportResultDto result = productImportService.importProducts(
+                new ByteArrayInputStream(csv(5).getBytes(StandardCharsets.UTF_8)), ProductImportService.TEXT_CSV, "sync");
+
+        assertEquals(List.of(List.of("P3", "P4"), List.of("P5")), upsertedCodes);
+        assertEquals(5, result.getRowsRead());
+        assertEquals(5, result.getRowsImported());
+    }
+}
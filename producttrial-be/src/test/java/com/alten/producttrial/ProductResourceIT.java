@@ -4,19 +4,33 @@ import com.alten.producttrial.dto.ProductDto;
 import com.alten.producttrial.entity.Product;
 import com.alten.producttrial.enums.InventoryStatus;
 import com.alten.producttrial.repository.ProductRepository;
+import com.jayway.jsonpath.JsonPath;
+import jakarta.persistence.EntityManagerFactory;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.stubbing.Answer;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.bean.override.mockito.MockitoSpyBean;
 import org.springframework.test.web.servlet.MockMvc;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.time.ZonedDateTime;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.zip.GZIPInputStream;
 
+import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.*;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mockingDetails;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
@@ -28,9 +42,15 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 @AutoConfigureMockMvc(addFilters = false)
 class ProductResourceIT {
 
-    @Autowired
+    @MockitoSpyBean
     private ProductRepository productRepository;
 
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
     @Autowired
     private MockMvc mockMvc;
 
@@ -111,6 +131,65 @@ class ProductResourceIT {
                 .andExpect(jsonPath("$[1].name", is(product2.getName())));
     }
 
+    @Test
+    void shouldAnswerNotModifiedWhileCatalogIsUnchanged() throws Exception {
+        // Arrange
+        productRepository.save(createSampleProduct("P126", "Product4", 49.99, 10, InventoryStatus.INSTOCK));
+        String etag = mockMvc.perform(get("/api/products"))
+                .andExpect(status().isOk())
+                .andExpect(header().exists(HttpHeaders.ETAG))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        // Act & Assert
+        mockMvc.perform(get("/api/products").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified())
+                .andExpect(content().bytes(new byte[0]));
+    }
+
+    @Test
+    void shouldServeNewCatalogAfterProductChange() throws Exception {
+        // Arrange
+        Product product = productRepository.save(createSampleProduct("P127", "Product5", 49.99, 10, InventoryStatus.INSTOCK));
+        String etag = mockMvc.perform(get("/api/products"))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        product.setName("Renamed");
+        product = productRepository.save(product);
+        productRepository.save(createSampleProduct("P128", "Product6", 59.99, 10, InventoryStatus.LOWSTOCK));
+
+        // Act & Assert
+        mockMvc.perform(get("/api/products").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, not(etag)))
+                .andExpect(jsonPath("$", hasSize(2)))
+                .andExpect(jsonPath("$[0].name", is("Renamed")))
+                .andExpect(jsonPath("$[1].code", is("P128")));
+
+        productRepository.delete(product);
+        mockMvc.perform(get("/api/products"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$[0].code", is("P128")));
+    }
+
+    @Test
+    void shouldServeGzipCompressedCatalogWhenAccepted() throws Exception {
+        // Arrange
+        productRepository.save(createSampleProduct("P129", "Product7", 49.99, 10, InventoryStatus.INSTOCK));
+
+        // Act
+        byte[] body = mockMvc.perform(get("/api/products").header(HttpHeaders.ACCEPT_ENCODING, "gzip, deflate"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CONTENT_ENCODING, "gzip"))
+                .andExpect(header().string(HttpHeaders.VARY, containsString(HttpHeaders.ACCEPT_ENCODING)))
+                .andReturn().getResponse().getContentAsByteArray();
+
+        // Assert
+        String json = gunzip(body);
+        List<String> codes = JsonPath.read(json, "$[*].code");
+        assertThat(codes, contains("P129"));
+    }
+
     @Test
     void shouldReturnEmptyListWhenNoProductsExist() throws Exception {
         // Act & Assert
@@ -119,6 +198,58 @@ class ProductResourceIT {
                 .andExpect(jsonPath("$", hasSize(0)));
     }
 
+    @Test
+    void shouldPageThroughProductsWithCursor() throws Exception {
+        // Arrange
+        productRepository.saveAll(List.of(
+                createSampleProduct("P201", "Product201", 10.0, 5, InventoryStatus.INSTOCK),
+                createSampleProduct("P202", "Product202", 20.0, 5, InventoryStatus.INSTOCK),
+                createSampleProduct("P203", "Product203", 30.0, 5, InventoryStatus.INSTOCK)));
+
+        // Act & Assert
+        String firstPage = mockMvc.perform(get("/api/products/page").param("size", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content", hasSize(2)))
+                .andExpect(jsonPath("$.content[0].code", is("P201")))
+                .andExpect(jsonPath("$.content[1].code", is("P202")))
+                .andExpect(jsonPath("$.nextCursor", notNullValue()))
+                .andReturn().getResponse().getContentAsString();
+        String cursor = JsonPath.read(firstPage, "$.nextCursor");
+
+        mockMvc.perform(get("/api/products/page").param("size", "2").param("cursor", cursor))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content", hasSize(1)))
+                .andExpect(jsonPath("$.content[0].code", is("P203")))
+                .andExpect(jsonPath("$.nextCursor").doesNotExist());
+    }
+
+    @Test
+    void shouldFilterProductsPageByStatusAndPrice() throws Exception {
+        // Arrange
+        productRepository.saveAll(List.of(
+                createSampleProduct("P301", "Product301", 10.0, 5, InventoryStatus.INSTOCK),
+                createSampleProduct("P302", "Product302", 50.0, 5, InventoryStatus.INSTOCK),
+                createSampleProduct("P303", "Product303", 50.0, 0, InventoryStatus.OUTOFSTOCK)));
+
+        // Act & Assert
+        mockMvc.perform(get("/api/products/page")
+                        .param("inventoryStatus", "INSTOCK")
+                        .param("minPrice", "20")
+                        .param("category", "Sample Category"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content", hasSize(1)))
+                .andExpect(jsonPath("$.content[0].code", is("P302")))
+                .andExpect(jsonPath("$.nextCursor").doesNotExist());
+    }
+
+    @Test
+    void shouldReturn400WhenCursorIsInvalid() throws Exception {
+        // Act & Assert
+        mockMvc.perform(get("/api/products/page").param("cursor", "not-a-cursor"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.errorKey", is("bad_request")));
+    }
+
     @Test
     void shouldRetrieveProductById() throws Exception {
         // Arrange
@@ -165,6 +296,72 @@ class ProductResourceIT {
                 .andExpect(jsonPath("$.inventoryStatus", is(updateDto.getInventoryStatus().name())));
     }
 
+    @Test
+    void shouldUpdateProductWithMatchingVersionAndReturnNewETag() throws Exception {
+        // Arrange
+        Product product = productRepository.save(createSampleProduct("P130", "Product8", 19.99, 5, InventoryStatus.INSTOCK));
+        String etag = mockMvc.perform(get("/api/products/{id}", product.getId()))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"0\""))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        ProductDto updateDto = ProductDto.builder().name("Updated").price(24.99).build();
+
+        // Act & Assert
+        mockMvc.perform(patch("/api/products/{id}", product.getId())
+                        .header(HttpHeaders.IF_MATCH, etag)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(TestUtil.convertObjectToJsonBytes(updateDto)))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"1\""))
+                .andExpect(jsonPath("$.price", is(24.99)));
+    }
+
+    @Test
+    void shouldReturn412WhenUpdatingStaleVersion() throws Exception {
+        // Arrange
+        Product product = productRepository.save(createSampleProduct("P131", "Product9", 19.99, 5, InventoryStatus.INSTOCK));
+        ProductDto updateDto = ProductDto.builder().name("Updated").price(24.99).build();
+        mockMvc.perform(patch("/api/products/{id}", product.getId())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(TestUtil.convertObjectToJsonBytes(updateDto)))
+                .andExpect(status().isOk());
+
+        // Act & Assert
+        mockMvc.perform(patch("/api/products/{id}", product.getId())
+                        .header(HttpHeaders.IF_MATCH, "\"0\"")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(TestUtil.convertObjectToJsonBytes(ProductDto.builder().name("Stale").price(1.0).build())))
+                .andExpect(status().isPreconditionFailed())
+                .andExpect(jsonPath("$.errorKey", is("precondition_failed")));
+        mockMvc.perform(get("/api/products/{id}", product.getId()))
+                .andExpect(jsonPath("$.price", is(24.99)));
+    }
+
+    @Test
+    void shouldKeepQuantityChangedWhileProductIsUpdated() throws Exception {
+        // Arrange
+        Product product = productRepository.save(createSampleProduct("P132", "Product10", 19.99, 5, InventoryStatus.INSTOCK));
+        // The spy of a repository forwards its calls to the repository through its default answer.
+        Answer<?> repository = mockingDetails(productRepository).getMockCreationSettings().getDefaultAnswer();
+        doAnswer(invocation -> {
+            Object read = repository.answer(invocation);
+            // The stock reconciliation writes the quantity between the read and the write of the edit, then evicts
+            // the product from the second-level cache.
+            CompletableFuture.runAsync(() ->
+                    jdbcTemplate.update("update products set quantity = 3 where id = ?", product.getId())).join();
+            entityManagerFactory.getCache().evict(Product.class, product.getId());
+            return read;
+        }).when(productRepository).findById(product.getId());
+
+        // Act
+        mockMvc.perform(patch("/api/products/{id}", product.getId())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(TestUtil.convertObjectToJsonBytes(ProductDto.builder().name("Updated").price(24.99).build())))
+                .andExpect(status().isOk());
+
+        // Assert
+        assertThat(jdbcTemplate.queryForObject("select quantity from products where id = ?", Integer.class, product.getId()), is(3));
+    }
 
     @Test
     void shouldReturn404WhenProductNotFoundForUpdate() throws Exception {
@@ -199,4 +396,10 @@ class ProductResourceIT {
         mockMvc.perform(get("/api/products/{id}", product.getId()))
                 .andExpect(status().isNotFound());
     }
+
+    private static String gunzip(byte[] bytes) throws IOException {
+        try (GZIPInputStream gzip = new GZIPInputStream(new ByteArrayInputStream(bytes))) {
+            return new String(gzip.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
 }
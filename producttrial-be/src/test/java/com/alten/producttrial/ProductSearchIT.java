@@ -0,0 +1,150 @@
+package com.alten.producttrial;
+
+import com.alten.producttrial.entity.Product;
+import com.alten.producttrial.enums.InventoryStatus;
+import com.alten.producttrial.repository.ProductRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.ZonedDateTime;
+import java.util.List;
+
+import static org.hamcrest.Matchers.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * Integration tests for the product search and suggestions, checking ranking, prefix and fuzzy matching,
+ * filters, facets and that product changes are reflected in the results.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@AutoConfigureMockMvc(addFilters = false)
+class ProductSearchIT {
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    private Product laptop;
+    private Product laptopBag;
+    private Product mouse;
+
+    @BeforeEach
+    void setUp() {
+        productRepository.deleteAll();
+        laptop = createSampleProduct("LPT-01", "Laptop Pro", "Fast laptop with 16GB RAM", "Electronics", 1299.99, InventoryStatus.INSTOCK);
+        laptopBag = createSampleProduct("BAG-01", "Messenger Bag", "Padded bag that fits a laptop", "Accessories", 39.99, InventoryStatus.LOWSTOCK);
+        mouse = createSampleProduct("MSE-01", "Wireless Mouse", "Ergonomic mouse", "Electronics", 24.99, InventoryStatus.INSTOCK);
+        productRepository.saveAll(List.of(laptop, laptopBag, mouse));
+    }
+
+    @AfterEach
+    void cleanDatabaseAfterTest() {
+        productRepository.deleteAll();
+    }
+
+    private Product createSampleProduct(String code, String name, String description, String category, double price, InventoryStatus status) {
+        return Product.builder()
+                .code(code)
+                .name(name)
+                .description(description)
+                .image("sample_image_url")
+                .category(category)
+                .price(price)
+                .quantity(10)
+                .internalReference("InternalRef-" + code)
+                .shellId(1L)
+                .inventoryStatus(status)
+                .rating(4.0)
+                .createdAt(ZonedDateTime.now())
+                .build();
+    }
+
+    @Test
+    void shouldRankNameMatchesAboveDescriptionMatches() throws Exception {
+        mockMvc.perform(get("/api/products/search").param("q", "laptop"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.totalHits", is(2)))
+                .andExpect(jsonPath("$.content[*].code", contains(laptop.getCode(), laptopBag.getCode())));
+    }
+
+    @Test
+    void shouldMatchPrefixesAndTypos() throws Exception {
+        mockMvc.perform(get("/api/products/search").param("q", "wirel"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content[*].code", contains(mouse.getCode())));
+
+        mockMvc.perform(get("/api/products/search").param("q", "mosue"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content[*].code", contains(mouse.getCode())));
+    }
+
+    @Test
+    void shouldFilterAndCountFacetsOverAllMatches() throws Exception {
+        mockMvc.perform(get("/api/products/search").param("maxPrice", "100").param("size", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.totalHits", is(2)))
+                .andExpect(jsonPath("$.content", hasSize(1)))
+                .andExpect(jsonPath("$.categories.Electronics", is(1)))
+                .andExpect(jsonPath("$.categories.Accessories", is(1)))
+                .andExpect(jsonPath("$.priceRanges[?(@.label == '10-50')].count", contains(2)))
+                .andExpect(jsonPath("$.priceRanges[?(@.label == '500+')].count", contains(0)));
+
+        mockMvc.perform(get("/api/products/search").param("category", "Electronics").param("inventoryStatus", "INSTOCK"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content[*].code", containsInAnyOrder(laptop.getCode(), mouse.getCode())));
+    }
+
+    @Test
+    void shouldReflectProductUpdatesAndDeletions() throws Exception {
+        mouse.setName("Wireless Trackball");
+        productRepository.save(mouse);
+        productRepository.delete(laptop);
+
+        mockMvc.perform(get("/api/products/search").param("q", "trackball"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content[*].name", contains("Wireless Trackball")));
+
+        mockMvc.perform(get("/api/products/search").param("q", "laptop"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content[*].code", contains(laptopBag.getCode())));
+    }
+
+    @Test
+    void shouldReturnBadRequest_whenPageSizeIsInvalid() throws Exception {
+        mockMvc.perform(get("/api/products/search").param("q", "laptop").param("size", "0"))
+                .andExpect(status().isBadRequest());
+
+        mockMvc.perform(get("/api/products/search").param("q", "laptop").param("page", "100").param("size", "100"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void shouldSuggestProductsBestRatedFirst() throws Exception {
+        laptopBag.setRating(4.9);
+        productRepository.save(laptopBag);
+
+        mockMvc.perform(get("/api/products/suggest").param("q", "lap"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[*].code", contains(laptop.getCode())));
+
+        mockMvc.perform(get("/api/products/suggest").param("q", "m"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[*].code", contains(laptopBag.getCode(), mouse.getCode())))
+                .andExpect(jsonPath("$[0].name", is(laptopBag.getName())))
+                .andExpect(jsonPath("$[0].rating", is(4.9)));
+    }
+
+    @Test
+    void shouldReturnBadRequest_whenSuggestionLimitIsInvalid() throws Exception {
+        mockMvc.perform(get("/api/products/suggest").param("q", "lap").param("limit", "0"))
+                .andExpect(status().isBadRequest());
+    }
+}
@@ -1,18 +1,32 @@
 package com.alten.producttrial;
 
+import com.alten.producttrial.config.OptimisticLockRetry;
+import com.alten.producttrial.config.ProductChangeListener;
+import com.alten.producttrial.dto.ProductBulkDeleteRequest;
+import com.alten.producttrial.dto.ProductBulkUpdateRequest;
 import com.alten.producttrial.dto.ProductDto;
+import com.alten.producttrial.dto.ProductFilter;
 import com.alten.producttrial.entity.Product;
 import com.alten.producttrial.enums.InventoryStatus;
+import com.alten.producttrial.exception.BadRequestException;
+import com.alten.producttrial.exception.ConflictException;
+import com.alten.producttrial.exception.PreconditionFailedException;
 import com.alten.producttrial.exception.ResourceNotFoundException;
 import com.alten.producttrial.mapper.ProductMapper;
 import com.alten.producttrial.repository.ProductRepository;
 import com.alten.producttrial.service.ProductService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.time.Duration;
 import java.time.ZonedDateTime;
 import java.util.List;
 import java.util.Optional;
@@ -29,6 +43,15 @@ class ProductServiceTest {
     @Mock
     private ProductMapper productMapper;
 
+    @Mock
+    private ProductChangeListener productChangeListener;
+
+    @Spy
+    private OptimisticLockRetry optimisticLockRetry = new OptimisticLockRetry(new SimpleMeterRegistry(), 3, Duration.ofMillis(1));
+
+    @Spy
+    private TransactionTemplate transactionTemplate = new TransactionTemplate(mock(PlatformTransactionManager.class));
+
     @InjectMocks
     private ProductService productService;
 
@@ -66,6 +89,16 @@ class ProductServiceTest {
         verify(productRepository, times(1)).save(any(Product.class));
     }
 
+    @Test
+    void createProduct_shouldThrowBadRequestException_whenRatingIsOutOfRange() {
+        productDto.setRating(-0.5);
+
+        BadRequestException exception = assertThrows(BadRequestException.class, () -> productService.createProduct(productDto));
+
+        assertEquals("Rating must be between 0 and " + ProductDto.MAX_RATING, exception.getReason());
+        verifyNoInteractions(productRepository);
+    }
+
     @Test
     void getAllProducts_shouldReturnListOfProductDtos() {
         when(productRepository.findAll()).thenReturn(List.of(product));
@@ -78,6 +111,35 @@ class ProductServiceTest {
         assertEquals(productDto.getName(), result.getFirst().getName());
     }
 
+    @Test
+    void getProductsPage_shouldThrowBadRequestException_whenSizeIsTooLarge() {
+        BadRequestException exception = assertThrows(BadRequestException.class,
+                () -> productService.getProductsPage(new ProductFilter(), null, ProductService.MAX_PAGE_SIZE + 1));
+
+        assertEquals("Page size must be between 1 and " + ProductService.MAX_PAGE_SIZE, exception.getReason());
+        verifyNoInteractions(productRepository);
+    }
+
+    @Test
+    void getProductsPage_shouldThrowBadRequestException_whenCursorIsMalformed() {
+        BadRequestException exception = assertThrows(BadRequestException.class,
+                () -> productService.getProductsPage(new ProductFilter(), "%%%", 10));
+
+        assertEquals("Invalid cursor: %%%", exception.getReason());
+        verifyNoInteractions(productRepository);
+    }
+
+    @Test
+    void searchProducts_shouldThrowBadRequestException_whenPageIsBeyondSearchResultsLimit() {
+        int size = ProductService.MAX_PAGE_SIZE;
+        int page = ProductService.MAX_SEARCH_RESULTS / size;
+
+        BadRequestException exception = assertThrows(BadRequestException.class,
+                () -> productService.searchProducts("laptop", new ProductFilter(), page, size));
+
+        assertEquals("Only the first " + ProductService.MAX_SEARCH_RESULTS + " search results can be paged through", exception.getReason());
+    }
+
     @Test
     void getProductById_shouldReturnProductDto_whenProductExists() {
         when(productRepository.findById(1L)).thenReturn(Optional.of(product));
@@ -102,11 +164,11 @@ class ProductServiceTest {
     void updateProduct_shouldReturnUpdatedProductDto() {
         when(productRepository.findById(1L)).thenReturn(Optional.of(product));
         when(productMapper.toDto(any(Product.class))).thenReturn(productDto);
-        when(productRepository.save(any(Product.class))).thenReturn(product);
+        when(productRepository.saveAndFlush(any(Product.class))).thenReturn(product);
 
         productDto.setName("Updated Product");
 
-        ProductDto result = productService.updateProduct(1L, productDto);
+        ProductDto result = productService.updateProduct(1L, productDto, null);
 
         assertNotNull(result);
         assertEquals("Updated Product", result.getName());
@@ -116,11 +178,32 @@ class ProductServiceTest {
     void updateProduct_shouldThrowResourceNotFoundException_whenProductDoesNotExist() {
         when(productRepository.findById(1L)).thenReturn(Optional.empty());
 
-        ResourceNotFoundException exception = assertThrows(ResourceNotFoundException.class, () -> productService.updateProduct(1L, productDto));
+        ResourceNotFoundException exception = assertThrows(ResourceNotFoundException.class, () -> productService.updateProduct(1L, productDto, null));
 
         assertEquals("Product not found with id: 1", exception.getReason());
     }
 
+    @Test
+    void updateProduct_shouldThrowPreconditionFailedException_whenVersionDoesNotMatch() {
+        product.setVersion(4L);
+        when(productRepository.findById(1L)).thenReturn(Optional.of(product));
+
+        assertThrows(PreconditionFailedException.class, () -> productService.updateProduct(1L, productDto, 3L));
+
+        verify(productRepository, never()).saveAndFlush(any(Product.class));
+    }
+
+    @Test
+    void updateProduct_shouldThrowConflictExceptionWithoutRetrying_whenProductIsUpdatedConcurrently() {
+        product.setVersion(3L);
+        when(productRepository.findById(1L)).thenReturn(Optional.of(product));
+        when(productRepository.saveAndFlush(any(Product.class))).thenThrow(new ObjectOptimisticLockingFailureException(Product.class, 1L));
+
+        assertThrows(ConflictException.class, () -> productService.updateProduct(1L, productDto, 3L));
+
+        verify(productRepository, times(1)).saveAndFlush(any(Product.class));
+    }
+
     @Test
     void deleteProduct_shouldDeleteProduct_whenProductExists() {
         when(productRepository.findById(1L)).thenReturn(Optional.of(product));
@@ -138,4 +221,26 @@ class ProductServiceTest {
 
         assertEquals("Product not found with id: 1", exception.getReason());
     }
-}
\ No newline at end of file
+
+    @Test
+    void bulkUpdateProducts_shouldUpdateMatchingProductsAndReportThem() {
+        ProductFilter filter = ProductFilter.builder().category("Electronics").build();
+        when(productRepository.findIdsMatching(filter)).thenReturn(List.of(1L, 2L));
+        when(productRepository.updatePriceAndInventoryStatus(List.of(1L, 2L), 10.0, null)).thenReturn(2);
+
+        var result = productService.bulkUpdateProducts(new ProductBulkUpdateRequest(null, filter, 10.0, null));
+
+        assertEquals(2, result.getAffected());
+        verify(productChangeListener).productsChanged(List.of(1L, 2L));
+    }
+
+    @Test
+    void bulkDeleteProducts_shouldThrowBadRequestException_whenFilterHasNoCriterion() {
+        ProductBulkDeleteRequest request = new ProductBulkDeleteRequest(null, new ProductFilter());
+
+        assertThrows(BadRequestException.class, () -> productService.bulkDeleteProducts(request));
+
+        verify(productRepository, never()).findIdsMatching(any());
+        verify(productRepository, never()).deleteAllWithCartAndWishlistEntries(any());
+    }
+}
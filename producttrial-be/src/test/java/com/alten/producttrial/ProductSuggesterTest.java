@@ -0,0 +1,106 @@
+package com.alten.producttrial;
+
+import com.alten.producttrial.config.ProductSuggester;
+import com.alten.producttrial.dto.ProductSuggestionDto;
+import com.alten.producttrial.entity.Product;
+import com.alten.producttrial.repository.ProductRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.util.unit.DataSize;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class ProductSuggesterTest {
+
+    @Mock
+    private ProductRepository productRepository;
+
+    private MeterRegistry meterRegistry;
+
+    private ProductSuggester productSuggester;
+
+    private List<Product> products;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        meterRegistry = new SimpleMeterRegistry();
+        productSuggester = new ProductSuggester(productRepository, new ObjectMapper(), meterRegistry, DataSize.ofMegabytes(1));
+
+        products = new ArrayList<>(List.of(
+                product(1L, "LPT-01", "Laptop Pro", 4.1),
+                product(2L, "LPT-02", "Laptop Air", 4.8),
+                product(3L, "BAG-01", "Laptop Sleeve", 3.0),
+                product(4L, "MSE-01", "Wireless Mouse", 4.5)));
+        when(productRepository.findBy(any(Specification.class), any())).thenAnswer(invocation -> List.copyOf(products));
+    }
+
+    private static Product product(Long id, String code, String name, Double rating) {
+        return Product.builder().id(id).code(code).name(name).rating(rating).build();
+    }
+
+    private static List<Long> ids(List<ProductSuggestionDto> suggestions) {
+        return suggestions.stream().map(ProductSuggestionDto::getId).toList();
+    }
+
+    @Test
+    void suggest_shouldRankMatchesByRating() {
+        assertEquals(List.of(2L, 1L, 3L), ids(productSuggester.suggest("lap", 10)));
+        assertEquals(List.of(2L, 1L), ids(productSuggester.suggest("Lap", 2)));
+    }
+
+    @Test
+    void suggest_shouldMatchCodesAndLaterWordsOfNames() {
+        assertEquals(List.of(2L, 1L), ids(productSuggester.suggest("lpt", 10)));
+        assertEquals(List.of(4L), ids(productSuggester.suggest("mou", 10)));
+
+        ProductSuggestionDto suggestion = productSuggester.suggest("mou", 10).getFirst();
+        assertEquals("MSE-01", suggestion.getCode());
+        assertEquals("Wireless Mouse", suggestion.getName());
+        assertEquals(4.5, suggestion.getRating());
+    }
+
+    @Test
+    void suggest_shouldRebuildOnlyAfterInvalidation() {
+        productSuggester.suggest("lap", 10);
+        products.add(product(5L, "LPT-03", "Laptop Max", 5.0));
+
+        assertEquals(List.of(2L, 1L, 3L), ids(productSuggester.suggest("lap", 10)));
+        verify(productRepository, times(1)).findBy(any(Specification.class), any());
+
+        productSuggester.invalidate();
+
+        assertEquals(List.of(5L, 2L, 1L, 3L), ids(productSuggester.suggest("lap", 10)));
+    }
+
+    @Test
+    void suggest_shouldRankRatingsOutOfRangeWithoutFailing() {
+        products.add(product(5L, "LPT-03", "Laptop Min", -1.0));
+        products.add(product(6L, "LPT-04", "Laptop Max", 1e300));
+
+        assertEquals(List.of(6L, 2L, 1L, 3L, 5L), ids(productSuggester.suggest("lap", 10)));
+    }
+
+    @Test
+    void suggest_shouldPublishMemoryUsage() {
+        assertEquals(0, meterRegistry.get("product.suggest.memory").gauge().value());
+
+        productSuggester.suggest("lap", 10);
+
+        assertTrue(meterRegistry.get("product.suggest.memory").gauge().value() > 0);
+        assertEquals(DataSize.ofMegabytes(1).toBytes(), meterRegistry.get("product.suggest.memory.budget").gauge().value());
+        assertEquals(12, meterRegistry.get("product.suggest.entries").gauge().value());
+    }
+}
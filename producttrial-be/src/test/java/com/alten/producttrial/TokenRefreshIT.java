@@ -0,0 +1,189 @@
+package com.alten.producttrial;
+
+import com.alten.producttrial.config.RevokedSessions;
+import com.alten.producttrial.dto.LoginRequest;
+import com.alten.producttrial.dto.RefreshTokenRequest;
+import com.alten.producttrial.dto.UserDto;
+import com.alten.producttrial.dto.UserRolesRequest;
+import com.alten.producttrial.entity.User;
+import com.alten.producttrial.enums.Role;
+import com.alten.producttrial.repository.RefreshTokenRepository;
+import com.alten.producttrial.repository.UserRepository;
+import com.jayway.jsonpath.JsonPath;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.Base64;
+import java.util.Set;
+
+import static org.hamcrest.Matchers.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * Integration tests for the refresh token rotation, the revocation of sessions and the role claims, through the
+ * security filters.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@AutoConfigureMockMvc
+class TokenRefreshIT {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private RefreshTokenRepository refreshTokenRepository;
+
+    @Autowired
+    private RevokedSessions revokedSessions;
+
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+
+    @BeforeEach
+    void setUp() {
+        userRepository.save(User.builder()
+                .username("refresh_user")
+                .firstname("Refresh")
+                .email("refresh_user@example.com")
+                .password(passwordEncoder.encode("password123"))
+                .build());
+    }
+
+    @AfterEach
+    void tearDown() {
+        refreshTokenRepository.deleteAll();
+        userRepository.deleteAll();
+    }
+
+    @Test
+    void shouldRotateRefreshTokenAndRevokeSessionWhenOldOneIsReused() throws Exception {
+        String login = login();
+        String firstRefreshToken = JsonPath.read(login, "$.refreshToken");
+
+        String refreshed = refresh(firstRefreshToken)
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.refreshToken", not(firstRefreshToken)))
+                .andReturn().getResponse().getContentAsString();
+        String accessToken = JsonPath.read(refreshed, "$.token");
+        String secondRefreshToken = JsonPath.read(refreshed, "$.refreshToken");
+        mockMvc.perform(get("/api/cart").header("Authorization", "Bearer " + accessToken))
+                .andExpect(status().isOk());
+
+        refresh(firstRefreshToken)
+                .andExpect(status().isUnauthorized())
+                .andExpect(jsonPath("$.errorKey", is("invalid_credentials")));
+
+        refresh(secondRefreshToken).andExpect(status().isUnauthorized());
+        mockMvc.perform(get("/api/cart").header("Authorization", "Bearer " + accessToken))
+                .andExpect(status().isUnauthorized());
+    }
+
+    @Test
+    void shouldRejectAccessTokensOfLoggedOutSession_afterFilterIsRebuilt() throws Exception {
+        String login = login();
+        String accessToken = JsonPath.read(login, "$.token");
+        String otherAccessToken = JsonPath.read(login(), "$.token");
+
+        mockMvc.perform(post("/api/token/revoke")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(TestUtil.convertObjectToJsonBytes(new RefreshTokenRequest(JsonPath.read(login, "$.refreshToken")))))
+                .andExpect(status().isNoContent());
+        revokedSessions.rebuild();
+
+        mockMvc.perform(get("/api/cart").header("Authorization", "Bearer " + accessToken))
+                .andExpect(status().isUnauthorized());
+        mockMvc.perform(get("/api/cart").header("Authorization", "Bearer " + otherAccessToken))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void shouldRejectTokensWithFormerRoles_andRefreshWithNewOnes() throws Exception {
+        mockMvc.perform(post("/api/account")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(TestUtil.convertObjectToJsonBytes(new UserDto("admin", "Admin", "admin@admin.com", "password456"))))
+                .andExpect(status().isCreated());
+        String adminToken = JsonPath.read(login("admin@admin.com", "password456"), "$.token");
+        String login = login();
+        String userToken = JsonPath.read(login, "$.token");
+        Long userId = userRepository.findByEmail("refresh_user@example.com").orElseThrow().getId();
+        UserRolesRequest grantAdmin = new UserRolesRequest(Set.of(Role.ADMIN));
+
+        mockMvc.perform(put("/api/account/{id}/roles", userId)
+                        .header("Authorization", "Bearer " + userToken)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(TestUtil.convertObjectToJsonBytes(grantAdmin)))
+                .andExpect(status().isUnauthorized())
+                .andExpect(jsonPath("$.cause", is("UNAUTHORIZED")));
+        mockMvc.perform(get("/api/cart").header("Authorization", "Bearer " + userToken))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(put("/api/account/{id}/roles", userId)
+                        .header("Authorization", "Bearer " + adminToken)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(TestUtil.convertObjectToJsonBytes(grantAdmin)))
+                .andExpect(status().isNoContent());
+
+        mockMvc.perform(get("/api/cart").header("Authorization", "Bearer " + userToken))
+                .andExpect(status().isUnauthorized());
+        String refreshed = refresh(JsonPath.read(login, "$.refreshToken"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        mockMvc.perform(put("/api/account/{id}/roles", userId)
+                        .header("Authorization", "Bearer " + JsonPath.read(refreshed, "$.token"))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(TestUtil.convertObjectToJsonBytes(grantAdmin)))
+                .andExpect(status().isNoContent());
+    }
+
+    @Test
+    void shouldServeCacheableKeySetHoldingTheSigningKey() throws Exception {
+        String token = JsonPath.read(login(), "$.token");
+        String header = new String(Base64.getUrlDecoder().decode(token.substring(0, token.indexOf('.'))));
+        String keyId = JsonPath.read(header, "$.kid");
+
+        mockMvc.perform(get("/api/token/keys"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Cache-Control", "max-age=300, public"))
+                // The current and next keys, and the former one for a token lifetime after a rotation.
+                .andExpect(jsonPath("$.keys", hasSize(greaterThanOrEqualTo(2))))
+                .andExpect(jsonPath("$.keys[*].kid", hasItem(keyId)))
+                .andExpect(jsonPath("$.keys[*].alg", everyItem(is("ES256"))));
+    }
+
+    @Test
+    void shouldRejectUnknownRefreshToken() throws Exception {
+        refresh("not-a-refresh-token").andExpect(status().isUnauthorized());
+    }
+
+    private String login() throws Exception {
+        return login("refresh_user@example.com", "password123");
+    }
+
+    private String login(String email, String password) throws Exception {
+        return mockMvc.perform(post("/api/token")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(TestUtil.convertObjectToJsonBytes(new LoginRequest(email, password))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.expiresIn", is(900)))
+                .andReturn().getResponse().getContentAsString();
+    }
+
+    private org.springframework.test.web.servlet.ResultActions refresh(String refreshToken) throws Exception {
+        return mockMvc.perform(post("/api/token/refresh")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(TestUtil.convertObjectToJsonBytes(new RefreshTokenRequest(refreshToken))));
+    }
+}
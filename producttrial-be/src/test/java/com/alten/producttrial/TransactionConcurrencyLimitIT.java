@@ -0,0 +1,119 @@
+package com.alten.producttrial;
+
+import com.alten.producttrial.config.ConcurrencyLimitedTransactionManager;
+import com.alten.producttrial.entity.Product;
+import com.alten.producttrial.enums.InventoryStatus;
+import com.alten.producttrial.enums.ProductExportFormat;
+import com.alten.producttrial.repository.ProductRepository;
+import com.alten.producttrial.service.ProductExportService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.time.ZonedDateTime;
+import java.util.concurrent.*;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * Checks that the concurrency limit only applies to database transactions: while a slow export holds the only
+ * permit, the endpoints served from memory still answer, and only the ones that need a transaction are rejected.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "transaction.concurrency.max-concurrent=1",
+        "transaction.concurrency.acquire-timeout=200ms"
+})
+@AutoConfigureMockMvc(addFilters = false)
+class TransactionConcurrencyLimitIT {
+
+    @Autowired
+    private ConcurrencyLimitedTransactionManager transactionManager;
+
+    @Autowired
+    private ProductExportService productExportService;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    private Product product;
+
+    @BeforeEach
+    void setUp() {
+        product = productRepository.save(Product.builder()
+                .code("P123")
+                .name("Laptop")
+                .category("Electronics")
+                .price(999.99)
+                .quantity(10)
+                .inventoryStatus(InventoryStatus.INSTOCK)
+                .createdAt(ZonedDateTime.now())
+                .build());
+    }
+
+    @AfterEach
+    void tearDown() {
+        productRepository.deleteAll();
+    }
+
+    @Test
+    void slowExportShouldNotBlockEndpointsServedFromMemory() throws Exception {
+        // Build the in-memory catalog, search index and suggestions first.
+        getEndpointsServedFromMemory();
+
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch clientReads = new CountDownLatch(1);
+        OutputStream slowClient = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                writing.countDown();
+                try {
+                    clientReads.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException();
+                }
+            }
+        };
+
+        try (ExecutorService executor = Executors.newSingleThreadExecutor()) {
+            Future<?> export = executor.submit(() -> {
+                productExportService.exportProducts(ProductExportFormat.NDJSON, slowClient);
+                return null;
+            });
+            assertThat(writing.await(5, TimeUnit.SECONDS)).isTrue();
+            assertThat(transactionManager.getAvailablePermits()).isZero();
+
+            getEndpointsServedFromMemory();
+            mockMvc.perform(get("/api/products/{id}", product.getId()))
+                    .andExpect(status().isServiceUnavailable())
+                    .andExpect(header().string("Retry-After", "1"))
+                    .andExpect(jsonPath("$.errorKey").value("server_busy"));
+
+            clientReads.countDown();
+            export.get(5, TimeUnit.SECONDS);
+        }
+
+        assertThat(transactionManager.getAvailablePermits()).isEqualTo(1);
+        mockMvc.perform(get("/api/products/{id}", product.getId()))
+                .andExpect(status().isOk());
+    }
+
+    private void getEndpointsServedFromMemory() throws Exception {
+        mockMvc.perform(get("/api/products")).andExpect(status().isOk());
+        mockMvc.perform(get("/api/products/search").param("q", "laptop")).andExpect(status().isOk());
+        mockMvc.perform(get("/api/products/suggest").param("q", "lap")).andExpect(status().isOk());
+        mockMvc.perform(get("/api/token/keys")).andExpect(status().isOk());
+    }
+}
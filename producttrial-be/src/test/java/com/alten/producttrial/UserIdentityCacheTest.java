@@ -0,0 +1,107 @@
+package com.alten.producttrial;
+
+import com.alten.producttrial.config.UserIdentityCache;
+import com.alten.producttrial.config.UserPrincipal;
+import com.alten.producttrial.entity.User;
+import com.alten.producttrial.enums.Role;
+import com.alten.producttrial.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class UserIdentityCacheTest {
+
+    @Mock
+    private UserRepository userRepository;
+
+    private UserIdentityCache userIdentityCache;
+
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        userIdentityCache = new UserIdentityCache(userRepository, 100, Duration.ofMinutes(5));
+
+        user = new User();
+        user.setId(1L);
+        user.setEmail("testuser@example.com");
+    }
+
+    @Test
+    void findByEmail_shouldQueryDatabaseOnlyOnce_whenCalledRepeatedly() {
+        when(userRepository.findByEmail(user.getEmail())).thenReturn(Optional.of(user));
+
+        Optional<UserPrincipal> first = userIdentityCache.findByEmail(user.getEmail());
+        Optional<UserPrincipal> second = userIdentityCache.findByEmail(user.getEmail());
+
+        assertTrue(first.isPresent());
+        assertSame(first.get(), second.orElseThrow());
+        assertEquals(user.getId(), first.get().getId());
+        assertEquals(List.of(), first.get().getRoles());
+        verify(userRepository, times(1)).findByEmail(user.getEmail());
+    }
+
+    @Test
+    void findByEmail_shouldReloadUser_afterInvalidation() {
+        when(userRepository.findByEmail(user.getEmail())).thenReturn(Optional.of(user));
+
+        userIdentityCache.findByEmail(user.getEmail());
+        userIdentityCache.invalidate(user.getEmail());
+        userIdentityCache.findByEmail(user.getEmail());
+
+        verify(userRepository, times(2)).findByEmail(user.getEmail());
+    }
+
+    @Test
+    void invalidate_shouldApplyOnceTheTransactionCommits() {
+        when(userRepository.findByEmail(user.getEmail())).thenReturn(Optional.of(user));
+        userIdentityCache.findByEmail(user.getEmail());
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            userIdentityCache.invalidate(user.getEmail());
+            // A read before the commit still sees the cached identity rather than caching the former row again.
+            userIdentityCache.findByEmail(user.getEmail());
+            verify(userRepository, times(1)).findByEmail(user.getEmail());
+
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        userIdentityCache.findByEmail(user.getEmail());
+        verify(userRepository, times(2)).findByEmail(user.getEmail());
+    }
+
+    @Test
+    void findByEmail_shouldNotCacheUnknownUsers() {
+        when(userRepository.findByEmail(user.getEmail())).thenReturn(Optional.empty(), Optional.of(user));
+
+        assertTrue(userIdentityCache.findByEmail(user.getEmail()).isEmpty());
+        assertTrue(userIdentityCache.findByEmail(user.getEmail()).isPresent());
+    }
+
+    @Test
+    void findByEmail_shouldGrantAuthorities_ofPersistedRoles() {
+        user.setRoles(EnumSet.of(Role.ADMIN));
+        user.setTokenVersion(2);
+        when(userRepository.findByEmail(user.getEmail())).thenReturn(Optional.of(user));
+
+        UserPrincipal principal = userIdentityCache.findByEmail(user.getEmail()).orElseThrow();
+
+        assertEquals(List.of("ROLE_ADMIN"), principal.getRoles());
+        assertEquals(2, principal.getTokenVersion());
+    }
+}
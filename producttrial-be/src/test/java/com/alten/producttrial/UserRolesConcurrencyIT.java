@@ -0,0 +1,69 @@
+package com.alten.producttrial;
+
+import com.alten.producttrial.entity.User;
+import com.alten.producttrial.enums.Role;
+import com.alten.producttrial.repository.UserRepository;
+import com.alten.producttrial.service.UserService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.stubbing.Answer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.bean.override.mockito.MockitoSpyBean;
+
+import java.util.EnumSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mockingDetails;
+
+/**
+ * Changes the roles of a user while another change of the same user is between its read and its write, to check
+ * that the token version is never set back: the delayed change must start over from the roles and token version
+ * written meanwhile instead of writing the version it computed from its stale read.
+ */
+@SpringBootTest
+class UserRolesConcurrencyIT {
+
+    @Autowired
+    private UserService userService;
+
+    @MockitoSpyBean
+    private UserRepository userRepository;
+
+    @AfterEach
+    void tearDown() {
+        userRepository.deleteAll();
+    }
+
+    @Test
+    void roleChangeShouldStartOverWhenTheUserChangesBeforeItIsWritten() {
+        Long id = userRepository.save(User.builder()
+                .username("test_user")
+                .firstname("Test")
+                .email("testuser@example.com")
+                .password("password").build()).getId();
+        // The spy of a repository forwards its calls to the repository through its default answer.
+        Answer<?> repository = mockingDetails(userRepository).getMockCreationSettings().getDefaultAnswer();
+        AtomicBoolean delayed = new AtomicBoolean();
+        doAnswer(invocation -> {
+            Object read = repository.answer(invocation);
+            if (delayed.compareAndSet(false, true)) {
+                // Two other changes are committed between the read and the write of the first one.
+                CompletableFuture.runAsync(() -> {
+                    userService.updateRoles(id, EnumSet.of(Role.ADMIN));
+                    userService.updateRoles(id, EnumSet.noneOf(Role.class));
+                }).join();
+            }
+            return read;
+        }).when(userRepository).findById(id);
+
+        userService.updateRoles(id, EnumSet.of(Role.ADMIN));
+
+        User user = userRepository.findById(id).orElseThrow();
+        assertThat(user.getRoles()).containsExactly(Role.ADMIN);
+        assertThat(user.getTokenVersion()).isEqualTo(3);
+    }
+}
@@ -0,0 +1,110 @@
+package com.alten.producttrial;
+
+import com.alten.producttrial.config.UserPrincipal;
+import com.alten.producttrial.entity.Product;
+import com.alten.producttrial.entity.User;
+import com.alten.producttrial.entity.Wishlist;
+import com.alten.producttrial.enums.InventoryStatus;
+import com.alten.producttrial.repository.ProductRepository;
+import com.alten.producttrial.repository.UserRepository;
+import com.alten.producttrial.repository.WishlistRepository;
+import com.alten.producttrial.service.WishlistService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Adds the same products to a wishlist from many threads at once, as a double click does, to check that a
+ * product already being added is treated as present rather than failing on the primary key.
+ */
+@SpringBootTest
+class WishlistConcurrencyIT {
+
+    private static final int THREADS = 8;
+    private static final int PRODUCTS = 50;
+
+    @Autowired
+    private WishlistService wishlistService;
+
+    @Autowired
+    private WishlistRepository wishlistRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    private User user;
+
+    private Wishlist wishlist;
+
+    private final List<Long> productIds = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        user = userRepository.save(User.builder()
+                .username("test_user")
+                .firstname("Test")
+                .email("testuser@example.com")
+                .password("password").build());
+        wishlist = wishlistRepository.save(Wishlist.builder().user(user).build());
+
+        for (int i = 0; i < PRODUCTS; i++) {
+            productIds.add(productRepository.save(Product.builder()
+                    .code("P" + i)
+                    .name("Product" + i)
+                    .category("Category1")
+                    .price(9.99)
+                    .quantity(10)
+                    .inventoryStatus(InventoryStatus.INSTOCK)
+                    .createdAt(ZonedDateTime.now())
+                    .build()).getId());
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        wishlistRepository.deleteAll();
+        productRepository.deleteAll();
+        userRepository.deleteAll();
+    }
+
+    @Test
+    void concurrentAddsOfTheSameProductShouldAllSucceed() throws Exception {
+        UserPrincipal principal = new UserPrincipal(user.getId(), user.getEmail(), List.of());
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            for (Long productId : productIds) {
+                CyclicBarrier start = new CyclicBarrier(THREADS);
+                List<Future<?>> futures = new ArrayList<>();
+                for (int i = 0; i < THREADS; i++) {
+                    futures.add(executor.submit(() -> {
+                        SecurityContextHolder.getContext().setAuthentication(
+                                new UsernamePasswordAuthenticationToken(principal, null, List.of()));
+                        start.await();
+                        return wishlistService.addProductToWishlist(productId);
+                    }));
+                }
+                for (Future<?> future : futures) {
+                    future.get(30, TimeUnit.SECONDS);
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertThat(wishlistRepository.findProductIds(wishlist.getId())).containsExactlyElementsOf(productIds);
+    }
+}
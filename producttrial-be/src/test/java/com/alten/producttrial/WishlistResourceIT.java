@@ -22,7 +22,8 @@ import org.springframework.transaction.annotation.Transactional;
 
 import java.time.ZonedDateTime;
 import java.util.Collections;
-import java.util.List;
+import java.util.HashSet;
+import java.util.Set;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.hamcrest.Matchers.*;
@@ -90,7 +91,7 @@ class WishlistResourceIT {
         // Arrange
         Wishlist wishlist = new Wishlist();
         wishlist.setUser(user);
-        wishlist.setProducts(List.of(product));
+        wishlist.setProducts(new HashSet<>(Set.of(product)));
         wishlistRepository.save(wishlist);
 
         // Act & Assert
@@ -119,6 +120,21 @@ class WishlistResourceIT {
                 .andExpect(jsonPath("$.productIds[0]").value(product.getId()));
     }
 
+    @Test
+    void shouldNotDuplicateProductAddedTwice() throws Exception {
+        // Arrange
+        AddProductRequest request = new AddProductRequest(product.getId());
+
+        // Act & Assert
+        for (int i = 0; i < 2; i++) {
+            mockMvc.perform(post("/api/wishlist/add")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(TestUtil.convertObjectToJsonBytes(request)))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.productIds", hasSize(1)));
+        }
+    }
+
     @Test
     void shouldReturn404WhenProductNotFoundForAdd() throws Exception {
         // Arrange
@@ -140,7 +156,7 @@ class WishlistResourceIT {
         // Arrange
         Wishlist wishlist = new Wishlist();
         wishlist.setUser(user);
-        wishlist.setProducts(List.of(product));
+        wishlist.setProducts(new HashSet<>(Set.of(product)));
         wishlistRepository.save(wishlist);
 
         // Act & Assert
@@ -1,5 +1,6 @@
 package com.alten.producttrial;
 
+import com.alten.producttrial.config.UserPrincipal;
 import com.alten.producttrial.dto.WishlistDto;
 import com.alten.producttrial.entity.Product;
 import com.alten.producttrial.entity.User;
@@ -9,19 +10,18 @@ import com.alten.producttrial.exception.UserNotFoundException;
 import com.alten.producttrial.repository.ProductRepository;
 import com.alten.producttrial.repository.UserRepository;
 import com.alten.producttrial.repository.WishlistRepository;
+import com.alten.producttrial.service.CurrentUserService;
 import com.alten.producttrial.service.WishlistService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
-import org.springframework.security.core.Authentication;
-import org.springframework.security.core.context.SecurityContext;
-import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.dao.DataIntegrityViolationException;
 
-import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -34,6 +34,9 @@ class WishlistServiceTest {
     @Mock
     private UserRepository userRepository;
 
+    @Mock
+    private CurrentUserService currentUserService;
+
     @Mock
     private ProductRepository productRepository;
 
@@ -41,6 +44,7 @@ class WishlistServiceTest {
     private WishlistService wishlistService;
 
     private User user;
+    private UserPrincipal principal;
     private Product product;
     private Wishlist wishlist;
 
@@ -60,21 +64,17 @@ class WishlistServiceTest {
         wishlist = new Wishlist();
         wishlist.setId(1L);
         wishlist.setUser(user);
-        wishlist.setProducts(List.of(product));
-
-        Authentication authentication = mock(Authentication.class);
-        when(authentication.getName()).thenReturn(user.getEmail());
-        when(authentication.getPrincipal()).thenReturn(user);
-        SecurityContext context = mock(SecurityContext.class);
-        when(context.getAuthentication()).thenReturn(authentication);
-        SecurityContextHolder.setContext(context);
+        wishlist.setProducts(Set.of(product));
+
+        principal = new UserPrincipal(user.getId(), user.getEmail(), List.of());
     }
 
     @Test
     void getWishlistForCurrentUser_shouldReturnWishlistDto_whenUserExists() {
         // Arrange
-        when(userRepository.findByEmail(user.getEmail())).thenReturn(Optional.of(user));
+        when(currentUserService.getCurrentUser()).thenReturn(principal);
         when(wishlistRepository.findByUserId(user.getId())).thenReturn(Optional.of(wishlist));
+        when(wishlistRepository.findProductIds(wishlist.getId())).thenReturn(List.of(product.getId()));
 
         // Act
         WishlistDto result = wishlistService.getWishlistForCurrentUser();
@@ -86,27 +86,18 @@ class WishlistServiceTest {
         assertEquals(product.getId(), result.getProductIds().getFirst());
 
         // Verify interactions
-        verify(userRepository, times(1)).findByEmail(user.getEmail());
+        verify(userRepository, never()).findByEmail(any());
         verify(wishlistRepository, times(1)).findByUserId(user.getId());
     }
 
     @Test
     void addProductToWishlist_shouldAddProductToWishlist_whenProductExists() {
         // Arrange
-        when(userRepository.findByEmail(user.getEmail())).thenReturn(Optional.of(user));
-        when(productRepository.findById(product.getId())).thenReturn(Optional.of(product));
-
-        Wishlist wishlist = new Wishlist();
-        wishlist.setUser(user);
-        wishlist.setProducts(new ArrayList<>());
+        when(currentUserService.getCurrentUser()).thenReturn(principal);
+        when(productRepository.existsById(product.getId())).thenReturn(true);
         when(wishlistRepository.findByUserId(user.getId())).thenReturn(Optional.of(wishlist));
-
-        WishlistDto wishlistDto = new WishlistDto();
-        wishlistDto.setId(wishlist.getId());
-        wishlistDto.setUserId(user.getId());
-        wishlistDto.setProductIds(List.of(product.getId()));
-
-        when(wishlistRepository.save(any(Wishlist.class))).thenReturn(wishlist);
+        when(wishlistRepository.addProduct(wishlist.getId(), product.getId())).thenReturn(1);
+        when(wishlistRepository.findProductIds(wishlist.getId())).thenReturn(List.of(product.getId()));
 
         // Act
         WishlistDto result = wishlistService.addProductToWishlist(product.getId());
@@ -116,17 +107,35 @@ class WishlistServiceTest {
         assertTrue(result.getProductIds().contains(product.getId()));
         assertEquals(1, result.getProductIds().size());
 
-        // Verify interactions
-        verify(userRepository, times(1)).findByEmail(user.getEmail());
-        verify(productRepository, times(1)).findById(product.getId());
-        verify(wishlistRepository, times(1)).save(any(Wishlist.class));
+        // Verify interactions: a single insert, no collection load or wishlist save
+        verify(userRepository, never()).findByEmail(any());
+        verify(productRepository, never()).findById(any());
+        verify(wishlistRepository, times(1)).addProduct(wishlist.getId(), product.getId());
+        verify(wishlistRepository, never()).save(any(Wishlist.class));
+    }
+
+    @Test
+    void addProductToWishlist_shouldSucceed_whenProductIsAddedConcurrently() {
+        // Arrange
+        when(currentUserService.getCurrentUser()).thenReturn(principal);
+        when(productRepository.existsById(product.getId())).thenReturn(true);
+        when(wishlistRepository.findByUserId(user.getId())).thenReturn(Optional.of(wishlist));
+        when(wishlistRepository.addProduct(wishlist.getId(), product.getId()))
+                .thenThrow(new DataIntegrityViolationException("duplicate key"));
+        when(wishlistRepository.findProductIds(wishlist.getId())).thenReturn(List.of(product.getId()));
+
+        // Act
+        WishlistDto result = wishlistService.addProductToWishlist(product.getId());
+
+        // Assert
+        assertEquals(List.of(product.getId()), result.getProductIds());
     }
 
     @Test
     void addProductToWishlist_shouldThrowResourceNotFoundException_whenProductDoesNotExist() {
         // Arrange
-        when(userRepository.findByEmail(user.getEmail())).thenReturn(Optional.of(user));
-        when(productRepository.findById(product.getId())).thenReturn(Optional.empty());
+        when(currentUserService.getCurrentUser()).thenReturn(principal);
+        when(productRepository.existsById(product.getId())).thenReturn(false);
 
         // Act and Assert
         ResourceNotFoundException exception = assertThrows(ResourceNotFoundException.class, () -> wishlistService.addProductToWishlist(product.getId()));
@@ -136,23 +145,11 @@ class WishlistServiceTest {
     @Test
     void removeProductFromWishlist_shouldRemoveProductFromWishlist_whenProductExists() {
         // Arrange
-        when(userRepository.findByEmail(user.getEmail())).thenReturn(Optional.of(user));
-        when(productRepository.findById(product.getId())).thenReturn(Optional.of(product));
-
-        Wishlist wishlist = new Wishlist();
-        wishlist.setUser(user);
-        List<Product> products = new ArrayList<>();
-        products.add(product);
-        wishlist.setProducts(products);
-
+        when(currentUserService.getCurrentUser()).thenReturn(principal);
+        when(productRepository.existsById(product.getId())).thenReturn(true);
         when(wishlistRepository.findByUserId(user.getId())).thenReturn(Optional.of(wishlist));
-
-        WishlistDto wishlistDto = new WishlistDto();
-        wishlistDto.setId(wishlist.getId());
-        wishlistDto.setUserId(user.getId());
-        wishlistDto.setProductIds(new ArrayList<>());
-
-        when(wishlistRepository.save(any(Wishlist.class))).thenReturn(wishlist); // Mock la sauvegarde de la wishlist
+        when(wishlistRepository.removeProduct(wishlist.getId(), product.getId())).thenReturn(1);
+        when(wishlistRepository.findProductIds(wishlist.getId())).thenReturn(List.of());
 
         // Act
         WishlistDto result = wishlistService.removeProductFromWishlist(product.getId());
@@ -161,17 +158,18 @@ class WishlistServiceTest {
         assertNotNull(result);
         assertTrue(result.getProductIds().isEmpty());
 
-        // Verify interactions
-        verify(userRepository, times(1)).findByEmail(user.getEmail());
-        verify(productRepository, times(1)).findById(product.getId());
-        verify(wishlistRepository, times(1)).save(any(Wishlist.class));
+        // Verify interactions: a single delete, no collection copy or wishlist save
+        verify(userRepository, never()).findByEmail(any());
+        verify(productRepository, never()).findById(any());
+        verify(wishlistRepository, times(1)).removeProduct(wishlist.getId(), product.getId());
+        verify(wishlistRepository, never()).save(any(Wishlist.class));
     }
 
     @Test
     void removeProductFromWishlist_shouldThrowResourceNotFoundException_whenProductDoesNotExist() {
         // Arrange
-        when(userRepository.findByEmail(user.getEmail())).thenReturn(Optional.of(user));
-        when(productRepository.findById(product.getId())).thenReturn(Optional.empty());
+        when(currentUserService.getCurrentUser()).thenReturn(principal);
+        when(productRepository.existsById(product.getId())).thenReturn(false);
 
         // Act and Assert
         ResourceNotFoundException exception = assertThrows(ResourceNotFoundException.class, () -> wishlistService.removeProductFromWishlist(product.getId()));
@@ -181,7 +179,7 @@ class WishlistServiceTest {
     @Test
     void getWishlistForCurrentUser_shouldThrowUserNotFoundException_whenUserDoesNotExist() {
         // Arrange
-        when(userRepository.findByEmail(user.getEmail())).thenReturn(Optional.empty());
+        when(currentUserService.getCurrentUser()).thenThrow(new UserNotFoundException("User not found"));
 
         // Act and Assert
         UserNotFoundException exception = assertThrows(UserNotFoundException.class, () -> wishlistService.getWishlistForCurrentUser());